@@ -5,9 +5,21 @@ package phys2d.collisionLogic.collisionManagers;
 
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.HashSet;
+import java.util.Comparator;
 
+import phys2d.Phys2DMain;
+import phys2d.collisionLogic.integrators.AccelerationField;
+import phys2d.collisionLogic.integrators.BodyBatch;
+import phys2d.collisionLogic.integrators.Integrator;
+import phys2d.collisionLogic.integrators.SemiImplicitEuler;
+import phys2d.collisionLogic.particles.ParticleSystem;
+import phys2d.collisionLogic.spacePartitioning.StaticQuadTree;
+import phys2d.collisionLogic.tools.Contact;
+import phys2d.collisionLogic.tools.Island;
+import phys2d.collisionLogic.tools.IslandBuilder;
+import phys2d.collisionLogic.tools.LevelOfDetail;
 import phys2d.collisionLogic.tools.MiscTools;
+import phys2d.entities.MaterialPairTable;
 import phys2d.entities.Vec2D;
 import phys2d.entities.shapes.Shape;
 import phys2d.entities.shapes.polygons.WorldBound;
@@ -19,24 +31,169 @@ import phys2d.entities.shapes.polygons.WorldBound;
 public abstract class CollisionManager {
 
     /**
-     * Keeps track of all objects which have been moved for the current
-     * timestep.
+     * The stamp of the current timestep. Shapes remember the epoch they were
+     * last moved and last had world forces applied in, so checking if that
+     * already happened this timestep is just a comparison.
      */
-    protected final HashSet<Shape> movedShapes;
+    protected int epoch = 1;
+
+    protected final double dt;
+
+    protected double g = -100.0; // m/s^2
 
     /**
-     * Keeps track of all objects which have had world forces applied to them.
+     * Shapes moving slower than this (px/s) are candidates for sleeping.
      */
-    protected final HashSet<Shape> forcedShapes;
+    protected static final double SLEEP_SPEED_TOL = 5.0;
 
-    protected final double dt;
+    /**
+     * How long (s) a whole island needs to stay slow before it is put to
+     * sleep.
+     */
+    protected static final double TIME_TO_SLEEP = 0.5;
 
-    protected double g = -100.0; // m/s^2
+    protected boolean sleepingEnabled = true;
+
+    /**
+     * Holds all the immovable shapes. Only rebuilt when a static shape is added
+     * or removed, instead of every tick.
+     */
+    protected final StaticQuadTree staticTree;
+
+    /**
+     * Holds all the sleeping shapes. Sleeping shapes don't move, so like the
+     * static shapes, they are only inserted once (when they fall asleep) and
+     * queried by the awake shapes.
+     */
+    protected final StaticQuadTree sleepingTree;
+
+    /**
+     * Sleeping islands which were poked from outside the manager, and need to
+     * be woken up at the start of the next tick.
+     */
+    protected final ArrayList<Island> wakeQueue;
+
+    /**
+     * All the contacts (and impending contacts) found by the narrowphase this
+     * tick.
+     */
+    protected final ArrayList<Contact> contacts;
+
+    protected final IslandBuilder islandBuilder;
+
+    /**
+     * The islands built at the end of the last tick.
+     */
+    protected ArrayList<Island> islands;
+
+    /**
+     * Whether pairs and contacts are always processed in order of their shape
+     * ids, so that every run of the same world gives bit identical results.
+     */
+    protected boolean deterministic = false;
+
+    /**
+     * Orders pairs of shapes by their pair key.
+     */
+    protected final Comparator<Shape[]> canonicalPairOrder = Comparator
+            .comparingLong(pair -> getPairKey(pair[0], pair[1]));
+
+    /**
+     * A hash of the positions and velocities of every dynamic shape, chained
+     * over every tick so far.
+     */
+    private long stateHash;
+
+    /**
+     * Moves the shapes which can be moved all at once.
+     */
+    protected Integrator integrator;
+
+    /**
+     * Any accelerations which depend on the state of the shapes. Null if
+     * there are none.
+     */
+    protected AccelerationField accelerationField;
+
+    /**
+     * The accelerations from the last time the field was sampled by itself.
+     */
+    protected double[] fieldAx = new double[0], fieldAy = new double[0];
+
+    /**
+     * The shapes being integrated, and the list they are gathered into.
+     */
+    protected final BodyBatch bodyBatch;
+    protected final ArrayList<Shape> batchBodies;
+
+    /**
+     * Decides how often each shape is updated.
+     */
+    protected final LevelOfDetail levelOfDetail;
+
+    /**
+     * The particles simulated alongside the shapes. Null if there are none.
+     */
+    protected ParticleSystem particleSystem;
+
+    /**
+     * The number of ticks run so far.
+     */
+    protected long tick;
+
+    /**
+     * Whether any shape takes a longer step or sits out the current tick.
+     * When none do, everything is stepped together as usual.
+     */
+    protected boolean splitSteps;
+
+    /**
+     * Reused buffer for the shapes which are planned to take a longer step
+     * this tick.
+     */
+    private final ArrayList<Shape> stepCandidates;
+
+    /**
+     * Reused buffer for the shapes stepped by the same number of ticks.
+     */
+    private final ArrayList<Shape> stepGroup;
+
+    /**
+     * The last key given to a shape which isn't in a world.
+     */
+    private int lastLocalKey;
+
+    /**
+     * When (ns) the current step started. Used to report the step time to the
+     * level of detail.
+     */
+    private long stepStartTime;
+
+    /**
+     * Reused buffer for the static shapes found by the level of detail
+     * lookahead.
+     */
+    private final ArrayList<Shape> lookaheadCandidates;
 
     public CollisionManager(double dt) {
         this.dt = dt;
-        movedShapes = new HashSet<Shape>();
-        forcedShapes = new HashSet<Shape>();
+
+        staticTree = new StaticQuadTree(new Vec2D[] { new Vec2D(-10, -10),
+                new Vec2D(Phys2DMain.XRES + 10, Phys2DMain.YRES + 10) }, 1);
+        sleepingTree = new StaticQuadTree(new Vec2D[] { new Vec2D(-10, -10),
+                new Vec2D(Phys2DMain.XRES + 10, Phys2DMain.YRES + 10) }, 1);
+        wakeQueue = new ArrayList<Island>();
+        contacts = new ArrayList<Contact>();
+        islandBuilder = new IslandBuilder(wakeQueue);
+        islands = new ArrayList<Island>();
+        levelOfDetail = new LevelOfDetail();
+        integrator = new SemiImplicitEuler();
+        bodyBatch = new BodyBatch();
+        batchBodies = new ArrayList<Shape>();
+        lookaheadCandidates = new ArrayList<Shape>();
+        stepCandidates = new ArrayList<Shape>();
+        stepGroup = new ArrayList<Shape>();
+        tick = 0;
     }
 
     /**
@@ -48,6 +205,533 @@ public abstract class CollisionManager {
 
     public abstract void runManager(ArrayList<Shape> entities);
 
+    /**
+     * Register an immovable shape with this manager's static tree. The shape
+     * should still be kept in the entity list so it gets drawn. <br>
+     * Managers which don't query the static tree simply keep finding static
+     * shapes through the entity list.
+     * 
+     * @param s the static shape to add.
+     */
+    public void addStaticShape(Shape s) {
+        assignKey(s);
+        staticTree.add(s);
+    }
+
+    /**
+     * Unregister an immovable shape from this manager.
+     * 
+     * @param s the static shape to remove.
+     */
+    public void removeStaticShape(Shape s) {
+        staticTree.remove(s);
+    }
+
+    /**
+     * Forget about a shape which has been taken out of the world. Static
+     * shapes leave the static tree, and a sleeping shape wakes its island so
+     * it leaves the sleeping tree. Everything else is rebuilt from the entity
+     * list each tick anyway.
+     *
+     * @param s the shape which was removed.
+     */
+    public void shapeRemoved(Shape s) {
+        if (s.isStatic())
+            removeStaticShape(s);
+        else
+            wakeShape(s);
+    }
+
+    /**
+     * Take a sleeping island out of the sleeping tree without waking it, because
+     * its shapes are being packed away by the world. They won't be seen by the
+     * manager again.
+     *
+     * @param island the sleeping island.
+     */
+    public void forgetSleepingIsland(Island island) {
+        sleepingTree.removeAll(island.getBodies());
+    }
+
+    /**
+     * @return the timestep (s) of one tick.
+     */
+    public double getDt() {
+        return dt;
+    }
+
+    /**
+     * Return the tree holding all the static shapes.
+     * 
+     * @return the static shape quadtree.
+     */
+    public StaticQuadTree getStaticTree() {
+        return staticTree;
+    }
+
+    /**
+     * Turn body sleeping on or off. Turning it off wakes everything up.
+     * 
+     * @param sleepingEnabled whether shapes are allowed to sleep.
+     */
+    public void setSleepingEnabled(boolean sleepingEnabled) {
+        this.sleepingEnabled = sleepingEnabled;
+
+        if (!sleepingEnabled) {
+            for (Shape s : new ArrayList<Shape>(sleepingTree.getStaticShapes())) {
+                wakeShape(s);
+            }
+        }
+    }
+
+    /**
+     * Record a contact found by the narrowphase this tick.
+     * 
+     * @param contact the contact to record.
+     */
+    protected void addContact(Contact contact) {
+        contacts.add(contact);
+
+        // Anything touching something gets checked properly next tick as well,
+        // or once it's caught up, if it's sitting this tick out.
+        keepFullDetail(contact.getS1());
+        keepFullDetail(contact.getS2());
+    }
+
+    /**
+     * Keep a shape stepping a tick at a time from the next tick it's stepped
+     * in.
+     * 
+     * @param s the shape.
+     */
+    private void keepFullDetail(Shape s) {
+        s.keepFullDetailUntil(Math.max(tick + 1, s.getSteppedUntil() + 1));
+    }
+
+    /**
+     * @return the islands of interacting shapes built at the end of the last
+     *         tick.
+     */
+    public ArrayList<Island> getIslands() {
+        return islands;
+    }
+
+    /**
+     * Wake up every island which was poked from outside the manager since the
+     * last tick.
+     */
+    protected void processWakeQueue() {
+        for (int i = 0; i < wakeQueue.size(); i++) {
+            wakeIsland(wakeQueue.get(i));
+        }
+        wakeQueue.clear();
+    }
+
+    /**
+     * If the shape is sleeping, wake up its whole island immediately.
+     * 
+     * @param s the shape to wake.
+     */
+    protected void wakeShape(Shape s) {
+        if (s.isAsleep() && s.getSleepIsland() != null)
+            wakeIsland(s.getSleepIsland());
+    }
+
+    /**
+     * Wake up every shape in the island and take them out of the sleeping
+     * tree.
+     * 
+     * @param island the island to wake up.
+     */
+    protected void wakeIsland(Island island) {
+        if (!island.isAsleep())
+            return;
+
+        island.setAsleep(false);
+
+        for (Shape s : island.getBodies()) {
+            s.setAsleep(false);
+            s.setSleepTime(0);
+            s.setSleepIsland(null);
+            s.thaw();
+        }
+
+        sleepingTree.removeAll(island.getBodies());
+    }
+
+    /**
+     * Put every shape in the island to sleep, and move them into the sleeping
+     * tree.
+     * 
+     * @param island the island to put to sleep.
+     */
+    protected void sleepIsland(Island island) {
+        island.setAsleep(true);
+
+        for (Shape s : island.getBodies()) {
+            s.thaw();
+            s.setAsleep(true);
+            s.setSleepIsland(island);
+            s.getVelocity().setX(0);
+            s.getVelocity().setY(0);
+            s.setNetForce(new Vec2D());
+
+            sleepingTree.add(s);
+        }
+    }
+
+    /**
+     * @return the level of detail used to decide how often each shape is
+     *         updated.
+     */
+    public LevelOfDetail getLevelOfDetail() {
+        return levelOfDetail;
+    }
+
+    /**
+     * Set the particles to simulate alongside the shapes. They're stepped at
+     * the end of every tick, once the shapes have moved.
+     * 
+     * @param particleSystem the particle system, or null for none.
+     */
+    public void setParticleSystem(ParticleSystem particleSystem) {
+        this.particleSystem = particleSystem;
+    }
+
+    /**
+     * @return the particles simulated alongside the shapes, or null if there
+     *         are none.
+     */
+    public ParticleSystem getParticleSystem() {
+        return particleSystem;
+    }
+
+    /**
+     * Save where every shape is at the start of the tick, so drawing can
+     * interpolate between this tick and the next one. <br>
+     * This is just the COM and angle of each shape, not a copy of its points.
+     *
+     * @param entities the entities inside the world.
+     */
+    protected void snapshotTransforms(ArrayList<Shape> entities) {
+        for (Shape s : entities)
+            s.saveTransform();
+    }
+
+    /**
+     * Start a new tick, and plan how far each shape is stepped during it. <br>
+     * A shape in a slower tier is only updated once every update interval.
+     * The update intervals are powers of 2 and the updates happen when the
+     * tick is a multiple of the interval, so all the shapes of a tier are
+     * updated on the same tick, and every slower tier is updated on a tick of
+     * every faster one. On that tick the shape takes a single step for its
+     * whole interval, with the interval's worth of gravity and field forces,
+     * and then sits out the rest of the interval, frozen where the step left
+     * it. Frozen shapes are immovable to whatever touches them, and are never
+     * checked against each other. <br>
+     * Before a shape is allowed the longer step, its swept AABB over the
+     * whole interval (along its velocity and its acceleration) is checked
+     * against the static and sleeping shapes. If it could reach any, it's
+     * stepped a tick at a time until the end of the interval instead. The
+     * checks against the other awake shapes happen in the broadphase, in
+     * {@link #isDetailedPair(Shape, Shape)}. Shapes which touch anything are
+     * also kept at a tick at a time for the next tick they're stepped in.
+     * 
+     * @param entities the entities inside the world.
+     */
+    protected void startStep(ArrayList<Shape> entities) {
+        stepStartTime = System.nanoTime();
+        tick++;
+
+        snapshotTransforms(entities);
+
+        boolean lodEnabled = levelOfDetail.isEnabled();
+
+        splitSteps = false;
+        stepCandidates.clear();
+
+        for (Shape s : entities) {
+            assignKey(s);
+
+            if (s.isStatic() || s.isAsleep())
+                continue;
+
+            // Still ahead from its last step.
+            if (tick <= s.getSteppedUntil()) {
+                s.freeze();
+                splitSteps = true;
+                continue;
+            }
+
+            s.thaw();
+
+            int interval = lodEnabled ? levelOfDetail.getUpdateInterval(s) : 1;
+
+            if (interval > 1 && tick % interval == 0 && tick > s.getFullDetailUntil()) {
+                s.planStep(tick, interval, 0, g);
+                stepCandidates.add(s);
+            }
+            else {
+                s.planStep(tick, 1, 0, g);
+            }
+        }
+
+        if (stepCandidates.isEmpty())
+            return;
+
+        // The field is sampled once, for where the shapes are now.
+        if (accelerationField != null) {
+            batchBodies.clear();
+
+            for (Shape s : entities) {
+                if (!s.isStatic() && !s.isAsleep())
+                    batchBodies.add(s);
+            }
+
+            sampleField(batchBodies);
+
+            for (int i = 0; i < batchBodies.size(); i++) {
+                Shape s = batchBodies.get(i);
+
+                if (!s.isLowDetail())
+                    s.planStep(tick, s.getSweepTicks(), fieldAx[i], g + fieldAy[i]);
+            }
+        }
+
+        for (Shape s : stepCandidates) {
+            int interval = s.getSweepTicks();
+
+            lookaheadCandidates.clear();
+            staticTree.querySwept(s, dt, lookaheadCandidates);
+            sleepingTree.querySwept(s, dt, lookaheadCandidates);
+
+            if (lookaheadCandidates.isEmpty()) {
+                splitSteps = true;
+            }
+            else {
+                s.planStep(tick, 1, 0, g);
+                s.keepFullDetailUntil(tick + interval - 1);
+            }
+        }
+    }
+
+    /**
+     * Give a shape a key if it has none, which only happens when the manager
+     * is run without a world. The keys count up in the order the shapes are
+     * first seen, so they're the same in every run which adds its shapes in
+     * the same order.
+     * 
+     * @param s the shape.
+     */
+    private void assignKey(Shape s) {
+        if (s.getKey() == 0)
+            s.setLocalKey(++lastLocalKey);
+    }
+
+    /**
+     * Step the particles, update the state hash, and let the level of detail
+     * know how long this step took. Should be called at the very end of every
+     * tick. <br>
+     * In deterministic mode the level of detail isn't told, since how long a
+     * step takes depends on the machine, and the tiers would end up depending
+     * on it too. The demotions stay wherever they were when it was turned on.
+     * 
+     * @param entities the entities inside the world.
+     */
+    protected void finishStep(ArrayList<Shape> entities) {
+        if (particleSystem != null)
+            particleSystem.step(entities, g, dt);
+
+        updateStateHash(entities);
+
+        if (!deterministic)
+            levelOfDetail.reportStepTime((System.nanoTime() - stepStartTime) / 1e6);
+    }
+
+    /**
+     * Fold this tick's state into the state hash. Each shape's id, position and
+     * velocity are mixed into a single value, and the values are summed, so
+     * the result doesn't depend on the order of the entities. The sum is then
+     * chained onto last tick's hash, so a difference in any tick shows up in
+     * every hash after it.
+     * 
+     * @param entities the entities inside the world.
+     */
+    private void updateStateHash(ArrayList<Shape> entities) {
+        long tickHash = 0;
+
+        for (Shape s : entities) {
+            if (s.isStatic())
+                continue;
+
+            long h = s.getKey();
+            h = mixHash(h ^ Double.doubleToLongBits(s.getCOM().getX()));
+            h = mixHash(h ^ Double.doubleToLongBits(s.getCOM().getY()));
+            h = mixHash(h ^ Double.doubleToLongBits(s.getVelocity().getX()));
+            h = mixHash(h ^ Double.doubleToLongBits(s.getVelocity().getY()));
+
+            tickHash += h;
+        }
+
+        stateHash = mixHash(stateHash ^ tickHash);
+    }
+
+    /**
+     * The finalizer of splitmix64. Spreads every input bit over the whole
+     * output.
+     * 
+     * @param h the value to mix.
+     * @return the mixed value.
+     */
+    private static long mixHash(long h) {
+        h = (h ^ (h >>> 30)) * 0xbf58476d1ce4e5b9L;
+        h = (h ^ (h >>> 27)) * 0x94d049bb133111ebL;
+        return h ^ (h >>> 31);
+    }
+
+    /**
+     * Return the state hash after the last tick. Two runs of the same world
+     * have the same hash after every tick, as long as they stay bit identical,
+     * so comparing hashes finds a desync on the tick it happens.
+     * 
+     * @return the state hash.
+     */
+    public long getStateHash() {
+        return stateHash;
+    }
+
+    /**
+     * Turn deterministic mode on or off. In deterministic mode, the pairs from
+     * the broadphase are resolved and the contacts are solved in order of
+     * their shape keys ({@link Shape#getKey()}), instead of whatever order the
+     * broadphase (or the thread scheduling) produced them in. The level of
+     * detail also stops reacting to how long the steps take. <br>
+     * Note: The keys are the handles the world hands out, so both runs need
+     * to add and remove their shapes in the same order. Other worlds in the
+     * same JVM don't matter.
+     * 
+     * @param deterministic whether to run in deterministic mode.
+     */
+    public void setDeterministic(boolean deterministic) {
+        this.deterministic = deterministic;
+    }
+
+    /**
+     * Check whether a pair of shapes from the broadphase should go through the
+     * narrowphase this tick, and cut the longer steps of the shapes back to a
+     * single tick if they could meet during them. <br>
+     * Two frozen shapes are skipped, since neither moves this tick. They were
+     * last checked against each other on the tick the slower of the two was
+     * stepped, which is a tick both of them were stepped in. <br>
+     * When either shape takes a longer step, both are swept over the longer of
+     * the two steps, so a shape stepped a tick at a time is checked for the
+     * whole time the other one skips.
+     * 
+     * @param s1 the first shape.
+     * @param s2 the second shape.
+     * @return false if both shapes are sitting this tick out.
+     */
+    protected boolean isDetailedPair(Shape s1, Shape s2) {
+        return isDetailedPair(s1, s2, true, true);
+    }
+
+    /**
+     * Same as {@link #isDetailedPair(Shape, Shape)}, but only cuts the steps
+     * of the shapes it's allowed to. Used when each shape belongs to a
+     * different thread, which checks the same pair and cuts its own shape.
+     * 
+     * @param s1 the first shape.
+     * @param s2 the second shape.
+     * @param cut1 whether the first shape's step can be cut.
+     * @param cut2 whether the second shape's step can be cut.
+     * @return false if both shapes are sitting this tick out.
+     */
+    protected boolean isDetailedPair(Shape s1, Shape s2, boolean cut1, boolean cut2) {
+        if (s1.isLowDetail() && s2.isLowDetail())
+            return false;
+
+        int ticks = Math.max(s1.getSweepTicks(), s2.getSweepTicks());
+
+        if (ticks > 1 && s1.getSweptAABB(dt, ticks).overlaps(s2.getSweptAABB(dt, ticks))) {
+            if (cut1)
+                s1.cutStep();
+            if (cut2)
+                s2.cutStep();
+        }
+
+        return true;
+    }
+
+    /**
+     * Pack the keys of two shapes into a single key, regardless of their
+     * order.
+     * 
+     * @param s1 the first shape.
+     * @param s2 the second shape.
+     * @return the pair key of the two shapes.
+     */
+    protected long getPairKey(Shape s1, Shape s2) {
+        int a = Math.min(s1.getKey(), s2.getKey());
+        int b = Math.max(s1.getKey(), s2.getKey());
+        return ((long) a << 32) | (b & 0xffffffffL);
+    }
+
+    /**
+     * Group all the awake dynamic shapes into islands using the contacts
+     * recorded so far this tick. The recorded contacts are then cleared.
+     * 
+     * @param entities the entities inside the world.
+     */
+    protected void buildIslands(ArrayList<Shape> entities) {
+
+        ArrayList<Shape> awake = new ArrayList<Shape>(entities.size());
+
+        for (Shape s : entities) {
+            if (!s.isStatic() && !s.isAsleep())
+                awake.add(s);
+        }
+
+        if (deterministic)
+            contacts.sort(Comparator.comparingLong(contact -> getPairKey(contact.getS1(), contact.getS2())));
+
+        islands = islandBuilder.build(awake, contacts);
+        contacts.clear();
+    }
+
+    /**
+     * Advance the sleep timers of all the shapes in this tick's islands, and
+     * put to sleep every island whose shapes have all been slow for long
+     * enough. <br>
+     * Should be run once per tick, after the islands have been built and all
+     * the shapes have been moved.
+     */
+    protected void updateSleepStates() {
+        if (!sleepingEnabled)
+            return;
+
+        for (Island island : islands) {
+
+            // An island can only sleep if its least sleepy shape can.
+            double islandSleepTime = Double.POSITIVE_INFINITY;
+
+            for (Shape s : island.getBodies()) {
+                // Frozen shapes only look still, so their timers wait. A longer
+                // step counts for all of its ticks.
+                if (!s.isLowDetail()) {
+                    if (s.getVelocity().getSquaredLength() <= SLEEP_SPEED_TOL * SLEEP_SPEED_TOL)
+                        s.setSleepTime(s.getSleepTime() + (dt * s.getStepTicks()));
+                    else
+                        s.setSleepTime(0);
+                }
+
+                islandSleepTime = Math.min(islandSleepTime, s.getSleepTime());
+            }
+
+            if (islandSleepTime >= TIME_TO_SLEEP)
+                sleepIsland(island);
+        }
+    }
+
     /**
      * Check if item is deeply contained within groups
      * 
@@ -63,31 +747,244 @@ public abstract class CollisionManager {
         return false;
     }
 
+    /**
+     * Start a new epoch. Every shape counts as unmoved and unforced again.
+     */
+    protected void nextEpoch() {
+        epoch++;
+    }
+
+    /**
+     * Mark the shape as moved for this epoch.
+     * 
+     * @param s the shape.
+     * @return true if the shape hadn't been moved yet this epoch.
+     */
+    protected boolean markMoved(Shape s) {
+        if (s.getMovedEpoch() == epoch)
+            return false;
+
+        s.setMovedEpoch(epoch);
+        return true;
+    }
+
+    /**
+     * @param s the shape.
+     * @return true if the shape has been moved this epoch.
+     */
+    protected boolean isMoved(Shape s) {
+        return s.getMovedEpoch() == epoch;
+    }
+
+    /**
+     * Mark the shape as having had its world forces applied this epoch.
+     * 
+     * @param s the shape.
+     */
+    protected void markForced(Shape s) {
+        s.setForcedEpoch(epoch);
+    }
+
+    /**
+     * @param s the shape.
+     * @return true if the shape has had its world forces applied this epoch.
+     */
+    protected boolean isForced(Shape s) {
+        return s.getForcedEpoch() == epoch;
+    }
+
     /**
      * Move all the entities based on their properties and forces.
      * 
      * @param entities the entities to move.
      */
     protected void moveEntities(ArrayList<Shape> entities) {
+        batchBodies.clear();
+
         for (Shape entity : entities) { // move all entities
             if (!(entity instanceof WorldBound)) {
                 // System.out.println("vel: " + entity.getVelocity());
-                entity.move(dt);
+                batchBodies.add(entity);
+            }
+        }
+
+        integrate(batchBodies, dt);
+    }
+
+    /**
+     * Move all the bodies forward by h in a single pass of the integrator,
+     * applying their impending forces and the acceleration field.
+     * 
+     * @param bodies the bodies to move.
+     * @param h the time to move them by.
+     */
+    protected void integrate(ArrayList<Shape> bodies, double h) {
+        integrate(bodies, h, accelerationField);
+    }
+
+    /**
+     * Move all the bodies forward by h in a single pass of the integrator,
+     * applying their impending forces and the given field. <br>
+     * If some shapes take a longer step or sit out the tick (see
+     * {@link #startStep(ArrayList)}), the field is sampled once up front and
+     * added to the forces instead. Each shape taking a longer step is also
+     * given the rest of its step's acceleration, and the shapes are then
+     * integrated in one pass per step length, with h scaled by it. Frozen
+     * shapes aren't moved.
+     * 
+     * @param bodies the bodies to move.
+     * @param h the time to move them by.
+     * @param field the field to sample during the step, or null for none.
+     */
+    protected void integrate(ArrayList<Shape> bodies, double h, AccelerationField field) {
+        if (!splitSteps) {
+            bodyBatch.load(bodies);
+            integrator.integrate(bodyBatch, field, h);
+            bodyBatch.store(h / dt);
+            return;
+        }
+
+        if (field != null)
+            sampleField(bodies, field);
+
+        int maxTicks = 0;
+
+        for (int i = 0; i < bodies.size(); i++) {
+            Shape s = bodies.get(i);
+            int ticks = s.getStepTicks();
+
+            if (ticks == 0)
+                continue;
+
+            // A tick's worth of gravity is already in the forces.
+            double ax = s.getStepAx() * (ticks - 1);
+            double ay = s.getStepAy() * (ticks - 1);
+
+            if (field != null) {
+                ax += fieldAx[i];
+                ay += fieldAy[i];
+            }
+
+            s.addForce(s.getMass() * ax * h, s.getMass() * ay * h);
+            maxTicks = Math.max(maxTicks, ticks);
+        }
+
+        for (int ticks = 1; ticks <= maxTicks; ticks++) {
+            stepGroup.clear();
+
+            for (Shape s : bodies) {
+                if (s.getStepTicks() == ticks)
+                    stepGroup.add(s);
             }
+
+            if (stepGroup.isEmpty())
+                continue;
+
+            bodyBatch.load(stepGroup);
+            integrator.integrate(bodyBatch, null, h * ticks);
+            bodyBatch.store((h * ticks) / dt);
+        }
+    }
+
+    /**
+     * Sample the acceleration field once for the given bodies, as they are
+     * now, into fieldAx and fieldAy. Every body is a source for fields which
+     * depend on the other bodies.
+     * 
+     * @param bodies the bodies to sample the field for.
+     */
+    protected void sampleField(ArrayList<Shape> bodies) {
+        sampleField(bodies, accelerationField);
+    }
+
+    /**
+     * Same as {@link #sampleField(ArrayList)}, for the given field.
+     * 
+     * @param bodies the bodies to sample the field for.
+     * @param field the field to sample.
+     */
+    private void sampleField(ArrayList<Shape> bodies, AccelerationField field) {
+        if (fieldAx.length < bodies.size()) {
+            fieldAx = new double[Math.max(bodies.size(), fieldAx.length * 2)];
+            fieldAy = new double[fieldAx.length];
+        }
+
+        bodyBatch.load(bodies);
+        bodyBatch.computeAccelerations(field, fieldAx, fieldAy);
+    }
+
+    /**
+     * Sample the acceleration field once for every awake dynamic shape, and
+     * add a whole tick of it to the shapes' impending forces, the same way
+     * gravity is added. <br>
+     * This is for managers which move some shapes by themselves during
+     * resolution, so every shape feels the field whichever way it's moved.
+     * Their batch integration has to leave the field out afterwards. Frozen
+     * shapes are still sources, but aren't given anything.
+     * 
+     * @param entities the entities inside the world.
+     */
+    protected void addFieldForces(ArrayList<Shape> entities) {
+        if (accelerationField == null)
+            return;
+
+        batchBodies.clear();
+
+        for (Shape s : entities) {
+            if (!s.isStatic() && !s.isAsleep())
+                batchBodies.add(s);
+        }
+
+        sampleField(batchBodies);
+
+        for (int i = 0; i < batchBodies.size(); i++) {
+            Shape s = batchBodies.get(i);
+
+            if (!s.isLowDetail())
+                s.addForce(s.getMass() * fieldAx[i] * dt, s.getMass() * fieldAy[i] * dt);
         }
     }
 
+    /**
+     * Set the integrator used to move the shapes. Defaults to
+     * {@link SemiImplicitEuler}. Shapes moved by themselves during collision
+     * resolution always use semi-implicit Euler.
+     * 
+     * @param integrator the integrator to use.
+     */
+    public void setIntegrator(Integrator integrator) {
+        this.integrator = integrator;
+    }
+
+    /**
+     * Set the accelerations which depend on the state of the shapes, and which
+     * the integrator should sample over each step. Several fields can be
+     * combined with a {@link phys2d.collisionLogic.forceFields.CompositeField}.
+     * <br>
+     * Managers which move some shapes by themselves during resolution (like
+     * {@link SpeculativeManager2}) sample the field once at the start of the
+     * tick instead, and add it to every awake shape like gravity.
+     * 
+     * @param accelerationField the acceleration field, or null for none.
+     */
+    public void setAccelerationField(AccelerationField accelerationField) {
+        this.accelerationField = accelerationField;
+    }
+
     protected void addForceOfGravity(Shape s) {
         addForceOfGravity(s, 1.0);
     }
 
+    /**
+     * Add a fraction of a tick's gravity to the shape. Frozen shapes don't get
+     * any, since they already had it for the ticks they sit out.
+     * 
+     * @param s the shape.
+     * @param increment the fraction of the tick.
+     */
     protected void addForceOfGravity(Shape s, double increment) {
-
-        Vec2D weightForce = new Vec2D(0, g);
-        weightForce.scaleBy(s.getMass());
-        weightForce.scaleBy(increment);
-        weightForce.scaleBy(dt);
-        s.addForce(weightForce);
+        if (!s.isLowDetail())
+            s.addForce(0, g * s.getMass() * increment * dt);
     }
 
     /**
@@ -124,7 +1021,10 @@ public abstract class CollisionManager {
 
     /**
      * Applies the corresponding forces to the two shapes because of their
-     * collision.
+     * collision. The forces go straight into the velocities, but neither shape
+     * is moved. That's up to the caller, which might only have part of the
+     * tick left to move them by. <br>
+     * A frozen shape is treated as immovable, and isn't given any force.
      * 
      * @param s1 the first shape.
      * @param s2 the second shape.
@@ -142,15 +1042,20 @@ public abstract class CollisionManager {
         double relNormSp = relVel.dotProduct(unitCollAxis);
 
         // This restitution approximation will give pretty believable results.
-        double restitution = Math.min(s1.getMaterial().getRestitution(), s2.getMaterial().getRestitution());
+        double restitution = MaterialPairTable.getRestitution(s1.getMaterial(), s2.getMaterial());
 
         // This formula was made almost a year ago. I'm pretty sure it works.
         Vec2D collForce = Vec2D.getScaled(unitCollAxis, -(1 + restitution) * relNormSp * (1.0 / dt));
 
-        collForce.scaleBy(1.0 / (s1.getInvMass() + s2.getInvMass()));
+        double w1 = s1.isLowDetail() ? 0 : s1.getInvMass();
+        double w2 = s2.isLowDetail() ? 0 : s2.getInvMass();
 
-        s1.addForce(collForce);
-        s2.addForce(collForce.getNegated());
+        collForce.scaleBy(1.0 / (w1 + w2));
+
+        if (!s1.isLowDetail())
+            s1.addForce(collForce);
+        if (!s2.isLowDetail())
+            s2.addForce(collForce.getNegated());
 
         // calculate friction forces
         relVel = Vec2D.sub(s1.getVelocity(), s2.getVelocity());
@@ -162,11 +1067,10 @@ public abstract class CollisionManager {
 
         double fricMag = -Vec2D.dotProduct(relVel, tanVec); //Because opposite direction
 
-        fricMag /= s1.getInvMass() + s2.getInvMass();
+        fricMag /= w1 + w2;
 
-        // Approximate mu using pythagorean theorem
-        double mu = Math.sqrt(Math.pow(s1.getMaterial().getStaticFric(), 2)
-                + Math.pow(s2.getMaterial().getStaticFric(), 2));
+        // Static mu for the pair, from the material table
+        double mu = MaterialPairTable.getStaticFriction(s1.getMaterial(), s2.getMaterial());
 
         Vec2D frictionForce = Vec2D.ORIGIN;
 
@@ -175,7 +1079,7 @@ public abstract class CollisionManager {
                 frictionForce = tanVec.getScaled(-fricMag);
         }
         else {
-            mu = Math.sqrt(Math.pow(s1.getMaterial().getDynFric(), 2) + Math.pow(s2.getMaterial().getDynFric(), 2));
+            mu = MaterialPairTable.getDynamicFriction(s1.getMaterial(), s2.getMaterial());
 
             if (!MiscTools.tolEquals(-fricMag * mu, 0, 1e-6))
                 frictionForce = tanVec.getScaled(-fricMag * mu);
@@ -200,8 +1104,10 @@ public abstract class CollisionManager {
              * We can't just 0 out the velocity along the x or y component. 
              * But very often, 0ing out the x/y component of velocity, IS the correct step. The force application itself might fail 
              * by a miniscule amount (<1e-15), therefore, we must manually 0 out the component. 
+             * The force is applied without moving the shape. Whoever called this moves it, for as much of the
+             * tick as it has left.
              */
-            s1.incrementMove(dt, 1);
+            s1.incrementMove(dt, 0);
 
             if (MiscTools.tolEquals(s1.getVelocity().getX(), 0)) {
                 s1.getVelocity().setX(0);
@@ -209,10 +1115,8 @@ public abstract class CollisionManager {
             if (MiscTools.tolEquals(s1.getVelocity().getY(), 0)) {
                 s1.getVelocity().setY(0);
             }
-
-            movedShapes.add(s1);
         }
-        else { //Friction value high enough, no problemo!
+        else if (!s1.isLowDetail()) { //Friction value high enough, no problemo!
             s1.addForce(frictionForce.getNegated());
         }
 
@@ -225,7 +1129,7 @@ public abstract class CollisionManager {
 
             s2.addForce(velocityKillValue);
 
-            s2.incrementMove(dt, 1);
+            s2.incrementMove(dt, 0);
 
             if (MiscTools.tolEquals(s2.getVelocity().getX(), 0)) {
                 s2.getVelocity().setX(0);
@@ -233,10 +1137,8 @@ public abstract class CollisionManager {
             if (MiscTools.tolEquals(s2.getVelocity().getY(), 0)) {
                 s2.getVelocity().setY(0);
             }
-
-            movedShapes.add(s2);
         }
-        else { //Friction value high enough, no problemo!
+        else if (!s2.isLowDetail()) { //Friction value high enough, no problemo!
             s2.addForce(frictionForce);
         }
 
@@ -257,7 +1159,7 @@ public abstract class CollisionManager {
      */
     private Vec2D getKillVelocityValue(Shape s, Vec2D tanVec) {
 
-        if (s instanceof WorldBound)
+        if (s instanceof WorldBound || s.isLowDetail())
             return Vec2D.ORIGIN;
 
         final double SPEED_TOL = 0.5; //Magic number that works all right
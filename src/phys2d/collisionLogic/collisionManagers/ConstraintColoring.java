@@ -0,0 +1,81 @@
+package phys2d.collisionLogic.collisionManagers;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+
+import phys2d.entities.shapes.Shape;
+
+/**
+ * Partitions a set of contact constraints into colors, such that no two
+ * constraints of the same color share a dynamic shape. All the constraints of
+ * a color can then be solved at the same time, on different threads, without
+ * racing on any shape's velocity. <br>
+ * Static shapes are never written to by the solver, so they don't cause any
+ * conflicts. Otherwise every constraint touching the ground would end up in a
+ * different color.
+ *
+ * @author afsheen
+ */
+final class ConstraintColoring {
+
+    private ConstraintColoring() {
+    }
+
+    /**
+     * Greedily color the constraints. Each constraint gets the lowest color
+     * which neither of its dynamic shapes is already using.
+     *
+     * @param constraints the constraints to color.
+     * @return the constraints grouped by color, starting from color 0.
+     */
+    static ArrayList<ArrayList<ContactConstraint>> color(List<ContactConstraint> constraints) {
+
+        // The colors already used by each dynamic shape.
+        HashMap<Shape, BitSet> usedColors = new HashMap<Shape, BitSet>();
+        ArrayList<ArrayList<ContactConstraint>> batches = new ArrayList<ArrayList<ContactConstraint>>();
+
+        for (ContactConstraint constraint : constraints) {
+            BitSet used1 = getUsedColors(usedColors, constraint.s1);
+            BitSet used2 = getUsedColors(usedColors, constraint.s2);
+
+            int color = 0;
+            while ((used1 != null && used1.get(color)) || (used2 != null && used2.get(color))) {
+                color++;
+            }
+
+            if (used1 != null)
+                used1.set(color);
+            if (used2 != null)
+                used2.set(color);
+
+            while (batches.size() <= color) {
+                batches.add(new ArrayList<ContactConstraint>());
+            }
+            batches.get(color).add(constraint);
+        }
+
+        return batches;
+    }
+
+    /**
+     * Get the colors the shape is already part of.
+     *
+     * @param usedColors the colors used by each shape so far.
+     * @param s the shape.
+     * @return the used colors of s, or null if s is static.
+     */
+    private static BitSet getUsedColors(HashMap<Shape, BitSet> usedColors, Shape s) {
+        if (s.isStatic())
+            return null;
+
+        BitSet used = usedColors.get(s);
+        if (used == null) {
+            used = new BitSet();
+            usedColors.put(s, used);
+        }
+        return used;
+    }
+
+}
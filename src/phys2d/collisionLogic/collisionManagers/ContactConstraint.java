@@ -0,0 +1,182 @@
+package phys2d.collisionLogic.collisionManagers;
+
+import phys2d.collisionLogic.tools.Contact;
+import phys2d.entities.MaterialPairTable;
+import phys2d.entities.Vec2D;
+import phys2d.entities.shapes.Shape;
+
+/**
+ * The contact solver's view of a single contact. Everything which stays the
+ * same over the solver iterations is computed once when the constraint is
+ * created, and the impulses accumulated over the iterations are kept so they
+ * can be clamped as a whole and carried over to the next tick (warm starting).
+ * <br>
+ * The shapes are always ordered by key, so that the same pair of shapes always
+ * produces the same constraint, no matter what order the broadphase found
+ * them in.
+ *
+ * @author afsheen
+ */
+class ContactConstraint {
+
+    final Shape s1, s2;
+
+    /**
+     * The velocities the solver reads and writes. Normally these are just the
+     * velocities of the shapes, but they can be swapped for copies with
+     * {@link #mirror}.
+     */
+    private Vec2D v1, v2;
+
+    /**
+     * The inverse masses of the shapes as seen by the solver. A shape sitting
+     * out the tick can't be pushed, so it counts as static.
+     */
+    private final double w1, w2;
+
+    /**
+     * The ids of both shapes packed into a long. Used to find last tick's
+     * impulses for this pair.
+     */
+    final long pairKey;
+
+    /**
+     * The unit contact normal, pointing from s1 to s2.
+     */
+    double nx, ny;
+
+    /**
+     * The distance between the shapes along the normal. Negative when they
+     * are penetrating.
+     */
+    double separation;
+
+    double normalMass, tangentMass;
+
+    double restitution, friction;
+
+    /**
+     * The normal velocity the solver aims for. Used for both restitution and
+     * pushing penetrating shapes apart.
+     */
+    double velocityBias;
+
+    /**
+     * Whether the shapes weren't touching yet when this constraint was made.
+     * Speculative constraints only allow the shapes to close the gap between
+     * them, and bounce in a separate pass once they actually hit.
+     */
+    final boolean speculative;
+
+    /**
+     * The normal velocity a speculative constraint bounces to once it's hit.
+     */
+    double restitutionTarget;
+
+    /**
+     * The impulses accumulated over the iterations of the current tick.
+     */
+    double normalImpulse, tangentImpulse;
+
+    /**
+     * Create a new constraint from a contact found by the narrowphase.
+     *
+     * @param contact the contact to build the constraint from.
+     */
+    ContactConstraint(Contact contact) {
+        Shape a = contact.getS1();
+        Shape b = contact.getS2();
+
+        Vec2D dir = contact.getDir();
+        double length = dir.getLength();
+
+        if (length > 0) {
+            nx = dir.getX() / length;
+            ny = dir.getY() / length;
+        }
+        else { // Just touching, so fall back on the line between the centers.
+            Vec2D centers = Vec2D.sub(b.getCOM(), a.getCOM()).getNormalized();
+            nx = centers.getX();
+            ny = centers.getY();
+        }
+
+        separation = contact.isPenetrating() ? -length : length;
+        speculative = separation > 0;
+
+        // Keep the shapes ordered by key, flipping the normal if needed.
+        if (a.getKey() > b.getKey()) {
+            Shape t = a;
+            a = b;
+            b = t;
+            nx = -nx;
+            ny = -ny;
+        }
+
+        s1 = a;
+        s2 = b;
+        v1 = s1.getVelocity();
+        v2 = s2.getVelocity();
+        pairKey = ((long) s1.getKey() << 32) | (s2.getKey() & 0xffffffffL);
+
+        w1 = s1.isLowDetail() ? 0 : s1.getInvMass();
+        w2 = s2.isLowDetail() ? 0 : s2.getInvMass();
+
+        double invMassSum = w1 + w2;
+        normalMass = invMassSum > 0 ? 1.0 / invMassSum : 0;
+        tangentMass = normalMass;
+
+        restitution = MaterialPairTable.getRestitution(s1.getMaterial(), s2.getMaterial());
+
+        // Same approximation as the one used for the one-shot friction forces.
+        friction = MaterialPairTable.getDynamicFriction(s1.getMaterial(), s2.getMaterial());
+    }
+
+    /**
+     * @return the speed at which s2 is moving away from s1 along the normal.
+     */
+    double getRelativeNormalSpeed() {
+        return ((v2.getX() - v1.getX()) * nx) + ((v2.getY() - v1.getY()) * ny);
+    }
+
+    /**
+     * @return the speed at which s2 is sliding past s1 along the tangent.
+     */
+    double getRelativeTangentSpeed() {
+        return ((v2.getX() - v1.getX()) * -ny) + ((v2.getY() - v1.getY()) * nx);
+    }
+
+    /**
+     * Apply an impulse of (px, py) to s2 and the opposite impulse to s1. Static
+     * shapes, and shapes sitting out the tick, are left alone.
+     *
+     * @param px the x component of the impulse.
+     * @param py the y component of the impulse.
+     */
+    void applyImpulse(double px, double py) {
+        if (w1 != 0) {
+            v1.setX(v1.getX() - (px * w1));
+            v1.setY(v1.getY() - (py * w1));
+        }
+
+        if (w2 != 0) {
+            v2.setX(v2.getX() + (px * w2));
+            v2.setY(v2.getY() + (py * w2));
+        }
+    }
+
+    /**
+     * Make the solver use a copy of a shape's velocity instead of the real
+     * one, so the shape itself is never touched. Used for shapes which
+     * belong to another thread.
+     *
+     * @param s the shape, which must be one of the two in this constraint.
+     * @param velocity the copy of its velocity.
+     */
+    void mirror(Shape s, Vec2D velocity) {
+        if (s == s1)
+            v1 = velocity;
+        else if (s == s2)
+            v2 = velocity;
+    }
+
+}
@@ -6,6 +6,7 @@ import phys2d.Phys2DMain;
 import phys2d.collisionLogic.collisionCheckers.CollisionCheckerGJKEPA;
 import phys2d.collisionLogic.spacePartitioning.BSPTree;
 import phys2d.collisionLogic.spacePartitioning.SweptBSPTree;
+import phys2d.entities.MaterialPairTable;
 import phys2d.entities.Vec2D;
 import phys2d.entities.shapes.Shape;
 import phys2d.entities.shapes.polygons.WorldBound;
@@ -134,7 +135,7 @@ public final class DiscreteManager extends CollisionManager {
                 return;
             }
 
-            double restitution = Math.min(s1.getMaterial().getRestitution(), s2.getMaterial().getRestitution());
+            double restitution = MaterialPairTable.getRestitution(s1.getMaterial(), s2.getMaterial());
 
             Vec2D force = Vec2D.getScaled(collisionAxis, -(1 + restitution) * normalSpeed);
 
@@ -152,6 +153,7 @@ public final class DiscreteManager extends CollisionManager {
 
     @Override
     public void runManager(ArrayList<Shape> entities) {
+        snapshotTransforms(entities);
 
         addWorldForces(entities);
 
@@ -0,0 +1,51 @@
+package phys2d.collisionLogic.collisionManagers;
+
+import phys2d.entities.Vec2D;
+import phys2d.entities.shapes.Shape;
+
+/**
+ * A predicted impact between two shapes, somewhere inside the current tick.
+ * Events are ordered by their time, so the earliest impact in the world is
+ * always resolved first. <br>
+ * Each event remembers how many impacts both of its shapes had been through
+ * when it was predicted. If either shape has been hit since, the event was
+ * predicted from a path the shape no longer follows, and is thrown away.
+ *
+ * @author afsheen
+ */
+class ImpactEvent implements Comparable<ImpactEvent> {
+
+    final Shape s1, s2;
+
+    /**
+     * The displacement between the shapes, as returned by the collision
+     * checker when the event was predicted.
+     */
+    final Vec2D dir;
+
+    /**
+     * The time of impact, as a fraction of the tick.
+     */
+    final double time;
+
+    /**
+     * The number of impacts each shape had been through when this event was
+     * predicted.
+     */
+    final int stamp1, stamp2;
+
+    ImpactEvent(Shape s1, Shape s2, Vec2D dir, double time, int stamp1, int stamp2) {
+        this.s1 = s1;
+        this.s2 = s2;
+        this.dir = dir;
+        this.time = time;
+        this.stamp1 = stamp1;
+        this.stamp2 = stamp2;
+    }
+
+    @Override
+    public int compareTo(ImpactEvent other) {
+        return Double.compare(time, other.time);
+    }
+
+}
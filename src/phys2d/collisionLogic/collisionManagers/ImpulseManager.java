@@ -0,0 +1,832 @@
+package phys2d.collisionLogic.collisionManagers;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import phys2d.Phys2DMain;
+import phys2d.collisionLogic.collisionCheckers.CollisionChecker;
+import phys2d.collisionLogic.collisionCheckers.CollisionCheckerGJKEPA2;
+import phys2d.collisionLogic.collisionCheckers.CollisionInfo;
+import phys2d.collisionLogic.pipeline.Stage;
+import phys2d.collisionLogic.pipeline.StepPipeline;
+import phys2d.collisionLogic.spacePartitioning.SpacePartitioningTree;
+import phys2d.collisionLogic.spacePartitioning.SweptQuadTree;
+import phys2d.collisionLogic.tools.Contact;
+import phys2d.collisionLogic.tools.Island;
+import phys2d.entities.Vec2D;
+import phys2d.entities.shapes.Shape;
+
+/**
+ * A collision manager which resolves contacts with an iterative sequential
+ * impulse solver, instead of applying a single one-shot force per pair. <br>
+ * Every tick:
+ * <ol>
+ * <li>World forces are folded into the velocities.</li>
+ * <li>The broadphase and narrowphase find all the contacts, including
+ * speculative ones between shapes which aren't touching yet but will close the
+ * gap during the tick.</li>
+ * <li>The contacts are split into islands.</li>
+ * <li>Each island is warm started with last tick's impulses, and then the
+ * velocity constraints are solved over a number of iterations. The
+ * accumulated impulses are clamped, so the result doesn't depend on the order
+ * the pairs were found in. Speculative contacts only allow their shapes to
+ * approach by the gap between them, so fast shapes stop at the point of
+ * contact instead of tunnelling, and then bounce in a final restitution
+ * pass.</li>
+ * <li>The shapes of all the islands are moved with their final velocities, in
+ * a single pass of the integrator.</li>
+ * </ol>
+ * Islands don't share any dynamic shapes, so they are solved in parallel. Small
+ * islands are grouped so each task gets a worthwhile amount of work.
+ * Large islands are also split up internally: their constraints are colored so
+ * that no two constraints of a color share a dynamic shape, and each color is
+ * then solved in parallel. <br>
+ * The tick is run as a {@link StepPipeline} of named stages, so stages which
+ * don't depend on each other (like the static queries and the dynamic
+ * broadphase) run at the same time, and every stage is timed. More stages can
+ * be slotted in through {@link #getPipeline()}. <br>
+ * Note: Shapes currently have no rotational inertia and the narrowphase only
+ * gives a single normal per pair, so each pair produces a single contact and
+ * the contact feature is identified by its normal.
+ *
+ * @author afsheen
+ */
+public class ImpulseManager extends CollisionManager {
+
+    /**
+     * The fraction of the penetration removed every tick.
+     */
+    private static final double BAUMGARTE = 0.2;
+
+    /**
+     * The penetration (px) allowed before shapes are pushed apart. Keeps
+     * resting contacts from jittering in and out of contact.
+     */
+    private static final double PENETRATION_SLOP = 0.5;
+
+    /**
+     * Relative speeds (px/s) slower than this don't bounce.
+     */
+    private static final double RESTITUTION_THRESHOLD = 20;
+
+    /**
+     * How closely (cosine of the angle) a new normal must match last tick's for
+     * the old impulses to be reused.
+     */
+    private static final double WARM_START_NORMAL_TOL = 0.95;
+
+    /**
+     * Islands with fewer constraints than this aren't worth coloring.
+     */
+    private static final int COLORING_THRESHOLD = 256;
+
+    /**
+     * The number of constraints each solver task works through before it
+     * stops splitting itself up. Also how much work goes into each partition
+     * of the partitioned stages, counted in contacts for the solve and in
+     * bodies for the AABB refresh.
+     */
+    private static final int BATCH_GRAIN_SIZE = 64;
+
+    // The names of the stages of the pipeline.
+    public static final String STAGE_BEGIN = "begin";
+    public static final String STAGE_WORLD_FORCES = "world forces";
+    public static final String STAGE_AABB_REFRESH = "AABB refresh";
+    public static final String STAGE_BROADPHASE = "broadphase";
+    public static final String STAGE_PAIRS = "pairs";
+    public static final String STAGE_STATIC_PAIRS = "static pairs";
+    public static final String STAGE_NARROWPHASE = "narrowphase";
+    public static final String STAGE_ISLANDS = "islands";
+    public static final String STAGE_SOLVE = "solve";
+    public static final String STAGE_WARM_START = "warm start";
+    public static final String STAGE_INTEGRATE = "integrate";
+    public static final String STAGE_SLEEP = "sleep";
+    public static final String STAGE_FINISH = "finish";
+
+    private final SpacePartitioningTree collisionTree;
+
+    protected final CollisionChecker collisionSolver;
+
+    /**
+     * The pair keys of all the dynamic pairs checked this tick. Shapes can
+     * share several quadtree leaves, so this stops them being checked twice.
+     */
+    private final HashSet<Long> checkedPairs;
+
+    /**
+     * Reused buffer for the static and sleeping shapes found by each query.
+     */
+    private final ArrayList<Shape> staticCandidates;
+
+    /**
+     * The dynamic pairs found by the broadphase this tick, which still have to
+     * go through the narrowphase.
+     */
+    private final ArrayList<Shape[]> candidatePairs;
+
+    /**
+     * The shapes which queried the static and sleeping trees this tick, and
+     * what each of them found. The hits of query i end at staticHitEnds[i].
+     */
+    private final ArrayList<Shape> staticQueries;
+    private final ArrayList<Shape> staticHits;
+    private int[] staticHitEnds;
+
+    /**
+     * The solved constraints of each island this tick.
+     */
+    private final ArrayList<ArrayList<ContactConstraint>> solvedIslands;
+
+    /**
+     * The entities being stepped by the current run of the pipeline.
+     */
+    protected ArrayList<Shape> stepEntities;
+
+    /**
+     * Built the first time it's needed, so subclasses can build their own.
+     */
+    private StepPipeline pipeline;
+
+    /**
+     * Last tick's constraints, keyed by pair. Used for warm starting.
+     */
+    private HashMap<Long, ContactConstraint> warmStartCache;
+
+    private int iterations;
+
+    private boolean warmStarting = true;
+
+    private boolean parallelIslands = true;
+
+    /**
+     * Where each partition of the solve stage ends in the island list. Small
+     * islands are grouped together until a partition has about
+     * BATCH_GRAIN_SIZE contacts, so each task has enough work to be worth
+     * forking.
+     */
+    private int[] islandPartitionEnds = new int[64];
+    private int islandPartitions;
+
+    private boolean coloring = true;
+
+    protected boolean speculativeContacts = true;
+
+    /**
+     * The pool which solves the color batches of large islands.
+     */
+    private final ForkJoinPool solverPool;
+
+    /**
+     * Create a new impulse manager using {@link CollisionCheckerGJKEPA2} and 8
+     * solver iterations.
+     *
+     * @param dt the timestep of this simulation.
+     */
+    public ImpulseManager(double dt) {
+        this(dt, new CollisionCheckerGJKEPA2(), 8);
+    }
+
+    /**
+     * Create a new impulse manager.
+     *
+     * @param dt the timestep of this simulation.
+     * @param collisionSolver the algorithm set which will be used to compute
+     *            collisions. Must return the penetration vector when shapes
+     *            collide.
+     * @param iterations the number of velocity iterations per tick.
+     */
+    public ImpulseManager(double dt, CollisionChecker collisionSolver, int iterations) {
+        super(dt);
+        collisionTree = new SweptQuadTree(new Vec2D[] { new Vec2D(-10, -10),
+                new Vec2D(Phys2DMain.XRES + 10, Phys2DMain.YRES + 10) }, 1, dt);
+
+        this.collisionSolver = collisionSolver;
+        this.iterations = iterations;
+
+        checkedPairs = new HashSet<Long>();
+        staticCandidates = new ArrayList<Shape>();
+        candidatePairs = new ArrayList<Shape[]>();
+        staticQueries = new ArrayList<Shape>();
+        staticHits = new ArrayList<Shape>();
+        staticHitEnds = new int[64];
+        solvedIslands = new ArrayList<ArrayList<ContactConstraint>>();
+        warmStartCache = new HashMap<Long, ContactConstraint>();
+        solverPool = ForkJoinPool.commonPool();
+    }
+
+    @Override
+    public void runManager(ArrayList<Shape> entities) {
+        stepEntities = entities;
+
+        try {
+            getPipeline().run();
+        }
+        finally {
+            stepEntities = null;
+        }
+    }
+
+    /**
+     * Build the stages of a tick. Called once, the first time the pipeline is
+     * needed.
+     *
+     * @return the pipeline.
+     */
+    protected StepPipeline buildPipeline() {
+        StepPipeline steps = new StepPipeline();
+
+        steps.addStage(new Stage(STAGE_BEGIN, () -> {
+            startStep(stepEntities);
+            processWakeQueue();
+        }));
+        steps.addStage(new Stage(STAGE_WORLD_FORCES, () -> addWorldForces(stepEntities), STAGE_BEGIN));
+        steps.addStage(new Stage(STAGE_AABB_REFRESH, () -> (stepEntities.size() + BATCH_GRAIN_SIZE - 1)
+                / BATCH_GRAIN_SIZE, this::refreshAABBs, STAGE_WORLD_FORCES));
+        steps.addStage(new Stage(STAGE_BROADPHASE, () -> updateBroadphase(stepEntities), STAGE_AABB_REFRESH));
+        steps.addStage(new Stage(STAGE_PAIRS, this::findCandidatePairs, STAGE_BROADPHASE));
+        steps.addStage(new Stage(STAGE_STATIC_PAIRS, () -> queryStaticShapes(stepEntities), STAGE_AABB_REFRESH));
+        steps.addStage(new Stage(STAGE_NARROWPHASE, () -> runNarrowphase(stepEntities), STAGE_PAIRS, STAGE_STATIC_PAIRS));
+        steps.addStage(new Stage(STAGE_ISLANDS, () -> {
+            buildIslands(stepEntities);
+            clearSolvedIslands();
+            partitionIslands();
+        }, STAGE_NARROWPHASE));
+        steps.addStage(new Stage(STAGE_SOLVE, () -> islandPartitions, this::solveIslands, STAGE_ISLANDS));
+        steps.addStage(new Stage(STAGE_WARM_START, () -> keepForWarmStart(solvedIslands), STAGE_SOLVE));
+        steps.addStage(new Stage(STAGE_INTEGRATE, this::moveIslands, STAGE_SOLVE));
+        steps.addStage(new Stage(STAGE_SLEEP, this::updateSleepStates, STAGE_INTEGRATE));
+        steps.addStage(new Stage(STAGE_FINISH, () -> finishStep(stepEntities), STAGE_SLEEP, STAGE_WARM_START));
+
+        return steps;
+    }
+
+    /**
+     * @return the stages run every tick. Can be used to time the stages, or to
+     *         add new ones.
+     */
+    public StepPipeline getPipeline() {
+        if (pipeline == null)
+            pipeline = buildPipeline();
+        return pipeline;
+    }
+
+    /**
+     * Add the world forces to every awake shape, and fold them straight into
+     * the velocities so the solver sees them.
+     */
+    @Override
+    protected void addWorldForces(ArrayList<Shape> entities) {
+        for (Shape s : entities) {
+            if (s.isStatic() || s.isAsleep())
+                continue;
+
+            addForceOfGravity(s);
+
+            s.getVelocity().add(Vec2D.getScaled(s.getNetForce(), s.getInvMass()));
+            s.setNetForce(new Vec2D());
+        }
+    }
+
+    /**
+     * Run the broadphase and narrowphase, and record every contact found.
+     */
+    @Override
+    protected void manageCollisions(ArrayList<Shape> entities) {
+        updateBroadphase(entities);
+        findCandidatePairs();
+        queryStaticShapes(entities);
+        runNarrowphase(entities);
+    }
+
+    /**
+     * Work out the AABB and swept AABB of one partition of the awake dynamic
+     * shapes, now that their velocities are final for the broadphase. Each
+     * shape caches its own, so the partitions don't share anything, and the
+     * broadphase and static queries only read the caches.
+     *
+     * @param partition the partition, BATCH_GRAIN_SIZE shapes from the
+     *            entities of this tick.
+     */
+    private void refreshAABBs(int partition) {
+        int end = Math.min(stepEntities.size(), (partition + 1) * BATCH_GRAIN_SIZE);
+
+        for (int i = partition * BATCH_GRAIN_SIZE; i < end; i++) {
+            Shape s = stepEntities.get(i);
+
+            if (!s.isStatic() && !s.isAsleep())
+                s.getSweptAABB(dt);
+        }
+    }
+
+    /**
+     * Put every awake dynamic shape into a fresh collision tree.
+     *
+     * @param entities the entities inside the world.
+     */
+    private void updateBroadphase(ArrayList<Shape> entities) {
+        collisionTree.refresh();
+
+        for (Shape s : entities) {
+            if (!s.isStatic() && !s.isAsleep())
+                collisionTree.insert(s);
+        }
+    }
+
+    /**
+     * Collect every distinct pair of dynamic shapes the collision tree says
+     * could be touching.
+     */
+    private void findCandidatePairs() {
+        checkedPairs.clear();
+        candidatePairs.clear();
+
+        for (Shape[] group : collisionTree.getPossibleCollisions()) {
+            for (int i = 0; i < group.length; i++) {
+                for (int j = i + 1; j < group.length; j++) {
+                    if (checkedPairs.add(getPairKey(group[i], group[j])) && isDetailedPair(group[i], group[j]))
+                        candidatePairs.add(new Shape[] { group[i], group[j] });
+                }
+            }
+        }
+    }
+
+    /**
+     * Look up the static and sleeping shapes each awake shape could touch.
+     * Only reads the shapes and the trees, so it can run alongside the
+     * dynamic broadphase.
+     *
+     * @param entities the entities inside the world.
+     */
+    private void queryStaticShapes(ArrayList<Shape> entities) {
+        staticQueries.clear();
+        staticHits.clear();
+
+        for (Shape s : entities) {
+            if (s.isStatic() || s.isAsleep() || s.isLowDetail())
+                continue;
+
+            staticCandidates.clear();
+            staticTree.querySwept(s, dt, staticCandidates);
+            sleepingTree.querySwept(s, dt, staticCandidates);
+
+            if (staticQueries.size() == staticHitEnds.length)
+                staticHitEnds = Arrays.copyOf(staticHitEnds, staticHitEnds.length * 2);
+
+            staticHits.addAll(staticCandidates);
+            staticHitEnds[staticQueries.size()] = staticHits.size();
+            staticQueries.add(s);
+        }
+    }
+
+    /**
+     * Run the narrowphase over the dynamic pairs, and then over the static and
+     * sleeping shapes found for each awake shape.
+     *
+     * @param entities the entities inside the world.
+     */
+    private void runNarrowphase(ArrayList<Shape> entities) {
+        for (Shape[] pair : candidatePairs) {
+            findContact(pair[0], pair[1]);
+        }
+
+        int q = 0, start = 0;
+
+        for (Shape s : entities) {
+            if (s.isStatic() || s.isAsleep() || s.isLowDetail())
+                continue;
+
+            staticCandidates.clear();
+
+            if (q < staticQueries.size() && staticQueries.get(q) == s) {
+                int end = staticHitEnds[q++];
+
+                // Sleeping shapes woken up since the query have left the
+                // sleeping tree, so they don't count.
+                for (int i = start; i < end; i++) {
+                    Shape candidate = staticHits.get(i);
+
+                    if (candidate.isStatic() || candidate.isAsleep())
+                        staticCandidates.add(candidate);
+                }
+
+                start = end;
+            }
+            else { // Woken up by an earlier contact, so it wasn't queried yet.
+                staticTree.querySwept(s, dt, staticCandidates);
+                sleepingTree.querySwept(s, dt, staticCandidates);
+            }
+
+            for (Shape staticShape : staticCandidates) {
+                findContact(staticShape, s);
+            }
+        }
+    }
+
+    /**
+     * Run the narrowphase on the two shapes, and record a contact if they are
+     * colliding. Any sleeping shape that gets touched is woken up.
+     *
+     * @param s1 the first shape.
+     * @param s2 the second shape.
+     */
+    private void findContact(Shape s1, Shape s2) {
+        CollisionInfo collisionInfo = collisionSolver.getCollisionResolution(s1, s2);
+
+        if (collisionInfo.isColliding()) {
+            wakeShape(s1);
+            wakeShape(s2);
+            addContact(new Contact(s1, s2, collisionInfo.getDir(), true));
+        }
+        else if (speculativeContacts && isClosing(s1.getVelocity(), s2.getVelocity(), collisionInfo.getDir())) {
+            wakeShape(s1);
+            wakeShape(s2);
+            addContact(new Contact(s1, s2, collisionInfo.getDir(), false));
+        }
+    }
+
+    /**
+     * Check if two separated shapes could close the gap between them during
+     * this tick, at their current velocities. Shapes within the slop of each
+     * other always count, so resting contacts don't flicker in and out.
+     *
+     * @param v1 the velocity of the first shape.
+     * @param v2 the velocity of the second shape.
+     * @param disp the displacement from the first shape to the second, as
+     *            returned by the collision checker.
+     * @return true if a speculative contact should be made between them.
+     */
+    protected boolean isClosing(Vec2D v1, Vec2D v2, Vec2D disp) {
+        double gap = disp.getLength();
+
+        if (gap <= PENETRATION_SLOP)
+            return true;
+
+        Vec2D relVel = Vec2D.sub(v1, v2);
+        double approachSpeed = relVel.dotProduct(disp) / gap;
+
+        return approachSpeed * dt >= gap - PENETRATION_SLOP;
+    }
+
+    /**
+     * Solve one partition of the islands. Each partition only touches its own
+     * islands.
+     *
+     * @param partition the partition to solve.
+     */
+    private void solveIslands(int partition) {
+        int start = partition == 0 ? 0 : islandPartitionEnds[partition - 1];
+
+        for (int i = start; i < islandPartitionEnds[partition]; i++) {
+            solvedIslands.set(i, solveIsland(islands.get(i)));
+        }
+    }
+
+    /**
+     * Split this tick's islands into the partitions of the solve stage. Runs
+     * of consecutive islands are grouped until they have BATCH_GRAIN_SIZE
+     * contacts between them, so a scene full of small islands isn't forked
+     * one island at a time. An island with no contacts still counts as one.
+     */
+    private void partitionIslands() {
+        islandPartitions = 0;
+
+        if (!parallelIslands) {
+            addIslandPartition(islands.size());
+            return;
+        }
+
+        int work = 0;
+
+        for (int i = 0; i < islands.size(); i++) {
+            work += Math.max(1, islands.get(i).getContacts().size());
+
+            if (work >= BATCH_GRAIN_SIZE) {
+                addIslandPartition(i + 1);
+                work = 0;
+            }
+        }
+
+        if (work > 0)
+            addIslandPartition(islands.size());
+    }
+
+    /**
+     * @param end where the new partition of the solve stage ends in the
+     *            island list.
+     */
+    private void addIslandPartition(int end) {
+        if (islandPartitions == islandPartitionEnds.length)
+            islandPartitionEnds = Arrays.copyOf(islandPartitionEnds, islandPartitions * 2);
+
+        islandPartitionEnds[islandPartitions++] = end;
+    }
+
+    /**
+     * Make room for the solved constraints of every island, so the partitions
+     * of the solve can each fill in their own.
+     */
+    private void clearSolvedIslands() {
+        solvedIslands.clear();
+
+        for (int i = 0; i < islands.size(); i++) {
+            solvedIslands.add(null);
+        }
+    }
+
+    /**
+     * @param partition the partition.
+     * @param partitions the number of partitions.
+     * @param n the number of items split over the partitions.
+     * @return the index of the first item of the partition.
+     */
+    protected static int partitionStart(int partition, int partitions, int n) {
+        return (int) (((long) partition * n) / partitions);
+    }
+
+    /**
+     * Replace the warm start cache with this tick's solved constraints.
+     *
+     * @param solved the solved constraints, in groups.
+     */
+    protected void keepForWarmStart(List<ArrayList<ContactConstraint>> solved) {
+        HashMap<Long, ContactConstraint> newCache = new HashMap<Long, ContactConstraint>();
+
+        for (ArrayList<ContactConstraint> constraints : solved) {
+            for (ContactConstraint constraint : constraints) {
+                newCache.put(constraint.pairKey, constraint);
+            }
+        }
+
+        warmStartCache = newCache;
+    }
+
+    /**
+     * Move the shapes of every island with their solved velocities, all in a
+     * single pass of the integrator. <br>
+     * Every awake dynamic shape is in exactly one island, so the batch is
+     * gathered straight from the entities instead. That way its arrays are in
+     * the same order as the world's body list (Morton order, if the world
+     * sorts it), not grouped island by island.
+     */
+    private void moveIslands() {
+        batchBodies.clear();
+
+        for (Shape s : stepEntities) {
+            if (!s.isStatic() && !s.isAsleep())
+                batchBodies.add(s);
+        }
+
+        integrate(batchBodies, dt);
+    }
+
+    /**
+     * Solve all the contacts of a single island. Only touches the shapes of
+     * this island, so islands can be solved concurrently.
+     *
+     * @param island the island to solve.
+     * @return the solved constraints of the island.
+     */
+    private ArrayList<ContactConstraint> solveIsland(Island island) {
+
+        ArrayList<ContactConstraint> constraints = new ArrayList<ContactConstraint>(island.getContacts().size());
+
+        for (Contact contact : island.getContacts()) {
+            constraints.add(prepareConstraint(new ContactConstraint(contact)));
+        }
+
+        solveConstraints(constraints);
+
+        return constraints;
+    }
+
+    /**
+     * Warm start the constraints, run the solver iterations over them, and
+     * then let the speculative ones bounce. Only touches the velocities the
+     * constraints point at.
+     *
+     * @param constraints the prepared constraints.
+     */
+    protected void solveConstraints(ArrayList<ContactConstraint> constraints) {
+        if (warmStarting) {
+            for (ContactConstraint constraint : constraints) {
+                warmStart(constraint);
+            }
+        }
+
+        if (coloring && constraints.size() >= COLORING_THRESHOLD) {
+            ArrayList<ArrayList<ContactConstraint>> batches = ConstraintColoring.color(constraints);
+
+            for (int i = 0; i < iterations; i++) {
+                for (ArrayList<ContactConstraint> batch : batches) {
+                    solverPool.invoke(new BatchSolveTask(batch, 0, batch.size()));
+                }
+            }
+        }
+        else {
+            for (int i = 0; i < iterations; i++) {
+                for (ContactConstraint constraint : constraints) {
+                    solveConstraint(constraint);
+                }
+            }
+        }
+
+        for (ContactConstraint constraint : constraints) {
+            if (constraint.speculative)
+                applyRestitution(constraint);
+        }
+    }
+
+    /**
+     * Compute the velocity bias of a new constraint, and pick up last tick's
+     * impulses if the contact still has the same normal.
+     *
+     * @param constraint the constraint to prepare.
+     * @return the prepared constraint.
+     */
+    protected ContactConstraint prepareConstraint(ContactConstraint constraint) {
+        double normalSpeed = constraint.getRelativeNormalSpeed();
+
+        double restitutionBias = 0;
+        if (normalSpeed < -RESTITUTION_THRESHOLD)
+            restitutionBias = -constraint.restitution * normalSpeed;
+
+        if (constraint.speculative) {
+            // Allowed to approach by the gap, and bounce only once they've hit.
+            constraint.velocityBias = -constraint.separation / dt;
+            constraint.restitutionTarget = restitutionBias;
+        }
+        else {
+            double penetrationBias = (BAUMGARTE / dt) * Math.max(0, -constraint.separation - PENETRATION_SLOP);
+
+            constraint.velocityBias = Math.max(restitutionBias, penetrationBias);
+        }
+
+        ContactConstraint old = warmStartCache.get(constraint.pairKey);
+
+        if (old != null && (old.nx * constraint.nx) + (old.ny * constraint.ny) >= WARM_START_NORMAL_TOL) {
+            constraint.normalImpulse = old.normalImpulse;
+            constraint.tangentImpulse = old.tangentImpulse;
+        }
+
+        return constraint;
+    }
+
+    /**
+     * Apply the impulses carried over from last tick.
+     *
+     * @param constraint the constraint to warm start.
+     */
+    private void warmStart(ContactConstraint constraint) {
+        double px = (constraint.nx * constraint.normalImpulse) - (constraint.ny * constraint.tangentImpulse);
+        double py = (constraint.ny * constraint.normalImpulse) + (constraint.nx * constraint.tangentImpulse);
+
+        constraint.applyImpulse(px, py);
+    }
+
+    /**
+     * Run a single iteration on the constraint. The friction impulse is solved
+     * first, then the normal impulse. Both are clamped on their accumulated
+     * totals, rather than per iteration.
+     *
+     * @param constraint the constraint to solve.
+     */
+    private void solveConstraint(ContactConstraint constraint) {
+
+        // Friction, limited by the normal impulse.
+        double lambda = -constraint.getRelativeTangentSpeed() * constraint.tangentMass;
+        double maxFriction = constraint.friction * constraint.normalImpulse;
+
+        double oldImpulse = constraint.tangentImpulse;
+        constraint.tangentImpulse = Math.max(-maxFriction, Math.min(oldImpulse + lambda, maxFriction));
+        lambda = constraint.tangentImpulse - oldImpulse;
+
+        constraint.applyImpulse(-constraint.ny * lambda, constraint.nx * lambda);
+
+        // Normal, which can only ever push the shapes apart.
+        lambda = (constraint.velocityBias - constraint.getRelativeNormalSpeed()) * constraint.normalMass;
+
+        oldImpulse = constraint.normalImpulse;
+        constraint.normalImpulse = Math.max(oldImpulse + lambda, 0);
+        lambda = constraint.normalImpulse - oldImpulse;
+
+        constraint.applyImpulse(constraint.nx * lambda, constraint.ny * lambda);
+    }
+
+    /**
+     * Make a speculative constraint bounce, if the solver found that its
+     * shapes actually hit this tick.
+     *
+     * @param constraint the speculative constraint.
+     */
+    private void applyRestitution(ContactConstraint constraint) {
+        if (constraint.normalImpulse <= 0 || constraint.restitutionTarget <= 0)
+            return;
+
+        double lambda = (constraint.restitutionTarget - constraint.getRelativeNormalSpeed()) * constraint.normalMass;
+
+        double oldImpulse = constraint.normalImpulse;
+        constraint.normalImpulse = Math.max(oldImpulse + lambda, 0);
+        lambda = constraint.normalImpulse - oldImpulse;
+
+        constraint.applyImpulse(constraint.nx * lambda, constraint.ny * lambda);
+    }
+
+    /**
+     * @param speculativeContacts whether constraints should also be made for
+     *            shapes that aren't touching yet, but will close the gap
+     *            during the tick.
+     */
+    public void setSpeculativeContacts(boolean speculativeContacts) {
+        this.speculativeContacts = speculativeContacts;
+    }
+
+    /**
+     * @param iterations the number of velocity iterations to run per tick.
+     */
+    public void setIterations(int iterations) {
+        this.iterations = iterations;
+    }
+
+    /**
+     * @return the number of velocity iterations run per tick.
+     */
+    public int getIterations() {
+        return iterations;
+    }
+
+    /**
+     * @param warmStarting whether last tick's impulses should be reused.
+     */
+    public void setWarmStarting(boolean warmStarting) {
+        this.warmStarting = warmStarting;
+    }
+
+    /**
+     * @param parallelIslands whether islands should be solved on multiple
+     *            threads.
+     */
+    public void setParallelIslands(boolean parallelIslands) {
+        this.parallelIslands = parallelIslands;
+    }
+
+    /**
+     * @param coloring whether large islands should be colored and solved in
+     *            parallel.
+     */
+    public void setColoring(boolean coloring) {
+        this.coloring = coloring;
+    }
+
+    /**
+     * Return the collision tree being used to partition the entities.
+     *
+     * @return the space partitioning tree.
+     */
+    public SpacePartitioningTree getCollisionTree() {
+        return collisionTree;
+    }
+
+    /**
+     * Solves a range of constraints from a single color batch. Since none of
+     * the constraints in a batch share a dynamic shape, the range is split in
+     * half until it is small enough, and the halves are solved in parallel.
+     *
+     * @author afsheen
+     */
+    @SuppressWarnings("serial")
+    private class BatchSolveTask extends RecursiveAction {
+
+        private final ArrayList<ContactConstraint> batch;
+        private final int start, end;
+
+        /**
+         * @param batch the color batch to solve.
+         * @param start the first constraint to solve (inclusive).
+         * @param end the last constraint to solve (exclusive).
+         */
+        BatchSolveTask(ArrayList<ContactConstraint> batch, int start, int end) {
+            this.batch = batch;
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        protected void compute() {
+            if (end - start <= BATCH_GRAIN_SIZE) {
+                for (int i = start; i < end; i++) {
+                    solveConstraint(batch.get(i));
+                }
+            }
+            else {
+                int mid = (start + end) >>> 1;
+                invokeAll(new BatchSolveTask(batch, start, mid), new BatchSolveTask(batch, mid, end));
+            }
+        }
+    }
+
+}
@@ -6,6 +6,7 @@ import phys2d.Phys2DMain;
 import phys2d.collisionLogic.collisionCheckers.CollisionCheckerGJKEPA;
 import phys2d.collisionLogic.spacePartitioning.BSPTree;
 import phys2d.collisionLogic.spacePartitioning.SweptBSPTree;
+import phys2d.entities.MaterialPairTable;
 import phys2d.entities.Vec2D;
 import phys2d.entities.shapes.Shape;
 import phys2d.entities.shapes.polygons.WorldBound;
@@ -58,7 +59,7 @@ public final class SpeculativeManager extends CollisionManager {
         // double overSpeed = Math.abs(relNormSpeed) - disp.getLength();
 
         // react to the collision with forces.
-        double restitution = Math.min(s1.getMaterial().getRestitution(), s2.getMaterial().getRestitution());
+        double restitution = MaterialPairTable.getRestitution(s1.getMaterial(), s2.getMaterial());
 
         // relVel.scaleBy(1.0 / dt);
         Vec2D force = Vec2D.getScaled(dispUnit, -(1 + restitution) * relNormSpeed * (1.0 / dt));
@@ -267,6 +268,7 @@ public final class SpeculativeManager extends CollisionManager {
 
     @Override
     public void runManager(ArrayList<Shape> entities) {
+        snapshotTransforms(entities);
 
         // addWorldForces(entities);
 
@@ -4,7 +4,10 @@
 package phys2d.collisionLogic.collisionManagers;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Map;
+import java.util.PriorityQueue;
 
 import phys2d.Phys2DMain;
 import phys2d.collisionLogic.collisionCheckers.CollisionChecker;
@@ -13,7 +16,7 @@ import phys2d.collisionLogic.collisionCheckers.CollisionInfo;
 import phys2d.collisionLogic.collisionCheckers.SweptCapable;
 import phys2d.collisionLogic.spacePartitioning.SpacePartitioningTree;
 import phys2d.collisionLogic.spacePartitioning.SweptQuadTree;
-import phys2d.collisionLogic.tools.CollisionPair;
+import phys2d.collisionLogic.tools.Contact;
 import phys2d.entities.Vec2D;
 import phys2d.entities.shapes.Shape;
 import phys2d.entities.shapes.polygons.WorldBound;
@@ -33,10 +36,21 @@ public class SpeculativeManager2 extends CollisionManager {
     private final SpacePartitioningTree collisionTree;
 
     /**
-     * Keeps track of all pairs of shapes on which collision resolution has been
-     * computed.
+     * Reused buffer for the static shapes found by each static tree query.
      */
-    private final HashSet<CollisionPair> collidedPairs;
+    private final ArrayList<Shape> staticCandidates;
+
+    /**
+     * Keeps track of the pair keys of all pairs of shapes on which collision
+     * resolution has been computed. Keyed by shape keys rather than hash
+     * codes, so that the same pairs are found on every run.
+     */
+    private final HashSet<Long> collidedPairs;
+
+    /**
+     * The pairs put aside to be resolved in order, in deterministic mode.
+     */
+    private final ArrayList<Shape[]> deferredPairs;
 
     /**
      * A list of all shape groups which could collide in the current frame.
@@ -61,6 +75,46 @@ public class SpeculativeManager2 extends CollisionManager {
      */
     private SweptCapable sweptSolver;
 
+    /**
+     * Pairs of shapes which travel further relative to each other than this
+     * fraction of the smallest AABB extent of either in a tick use continuous
+     * collision detection.
+     */
+    private double continuousThreshold = 0.5;
+
+    /**
+     * The predicted impacts of the current tick, earliest first.
+     */
+    private final PriorityQueue<ImpactEvent> impactQueue;
+
+    /**
+     * The shapes each shape was checked against through the swept path this
+     * tick.
+     */
+    private final HashMap<Shape, ArrayList<Shape>> impactPartners;
+
+    /**
+     * The number of impacts each shape has been through this tick.
+     */
+    private final HashMap<Shape, Integer> impactCounts;
+
+    /**
+     * How far into the tick each shape taking part in an impact has been
+     * moved, as a fraction of the tick.
+     */
+    private final HashMap<Shape, Double> localTimes;
+
+    /**
+     * The shapes held at their earliest impact for the rest of the tick,
+     * because the impact queue ran out of impacts to resolve.
+     */
+    private final HashSet<Shape> heldShapes;
+
+    /**
+     * The most impacts resolved in a single tick.
+     */
+    private int maxImpactsPerTick = 256;
+
     /**
      * Create a new manager which uses {@link CollisionCheckerGJKEPA2} and swept
      * detection.
@@ -94,7 +148,16 @@ public class SpeculativeManager2 extends CollisionManager {
         //collisionTree = new SweptBSPTree(new Vec2D[] { new Vec2D(-10, -10),
         //       new Vec2D(Phys2DMain.XRES + 10, Phys2DMain.YRES + 10) }, BSPTree.HORIZONTAL_SPLIT, 1, dt);
 
-        collidedPairs = new HashSet<CollisionPair>();
+        staticCandidates = new ArrayList<Shape>();
+
+        collidedPairs = new HashSet<Long>();
+        deferredPairs = new ArrayList<Shape[]>();
+
+        impactQueue = new PriorityQueue<ImpactEvent>();
+        impactPartners = new HashMap<Shape, ArrayList<Shape>>();
+        impactCounts = new HashMap<Shape, Integer>();
+        localTimes = new HashMap<Shape, Double>();
+        heldShapes = new HashSet<Shape>();
 
         this.collisionSolver = collisionSolver;
 
@@ -108,14 +171,20 @@ public class SpeculativeManager2 extends CollisionManager {
     @Override
     protected void manageCollisions(ArrayList<Shape> entities) {
 
+        processWakeQueue();
+
+        // Shapes moved by the discrete and swept paths never see the integrator, so the field goes in up front.
+        addFieldForces(entities);
+
         collisionTree.refresh();
 
         collidedPairs.clear();
-        movedShapes.clear();
-        forcedShapes.clear();
+        nextEpoch();
 
+        // Static and sleeping shapes live in their own trees, so only the awake dynamic ones get re-inserted.
         for (Shape s : entities) {
-            collisionTree.insert(s);
+            if (!s.isStatic() && !s.isAsleep())
+                collisionTree.insert(s);
         }
 
         collisionGroups = collisionTree.getPossibleCollisions();
@@ -129,14 +198,39 @@ public class SpeculativeManager2 extends CollisionManager {
              */
             for (int i = 0; i < group.length; i++) {
                 for (int j = i + 1; j < group.length; j++) {
-                    if (!(group[i] instanceof WorldBound && group[j] instanceof WorldBound)
-                            && collidedPairs.add(new CollisionPair(group[i], group[j]))) {
-                        resolveCollision(group[i], group[j]);
+                    if (collidedPairs.add(getPairKey(group[i], group[j])) && isDetailedPair(group[i], group[j])) {
+                        resolvePair(group[i], group[j]);
                     }
                 }
             }
         }
 
+        // Now check every awake shape against the static and sleeping shapes it could reach this tick.
+        for (Shape s : entities) {
+            if (s.isStatic() || s.isAsleep() || s.isLowDetail())
+                continue;
+
+            staticCandidates.clear();
+            staticTree.querySwept(s, dt, staticCandidates);
+            sleepingTree.querySwept(s, dt, staticCandidates);
+
+            for (Shape staticShape : staticCandidates) {
+                resolvePair(staticShape, s);
+            }
+        }
+
+        // In deterministic mode the pairs were only gathered, so resolve them now in a fixed order.
+        if (deterministic) {
+            deferredPairs.sort(canonicalPairOrder);
+
+            for (Shape[] pair : deferredPairs) {
+                resolveCollision(pair[0], pair[1]);
+            }
+            deferredPairs.clear();
+        }
+
+        processImpacts();
+
         // The following is just to simulate full brute force without space partitioning
         //        for (int i = 0; i < entities.size(); i++) {
         //            for (int j = i + 1; j < entities.size(); j++) {
@@ -149,6 +243,20 @@ public class SpeculativeManager2 extends CollisionManager {
 
     }
 
+    /**
+     * Resolve the pair straight away, or in deterministic mode, put it aside
+     * to be resolved in order of shape keys.
+     * 
+     * @param s1 the first shape.
+     * @param s2 the second shape.
+     */
+    private void resolvePair(Shape s1, Shape s2) {
+        if (deterministic)
+            deferredPairs.add(new Shape[] { s1, s2 });
+        else
+            resolveCollision(s1, s2);
+    }
+
     /**
      * 
      * @param s1
@@ -166,11 +274,15 @@ public class SpeculativeManager2 extends CollisionManager {
              */
             //System.out.println("disc");
 
+            wakeShape(s1);
+            wakeShape(s2);
+            addContact(new Contact(s1, s2, collisionInfo.getDir(), true));
+
             addWorldForcesTo(s1, 1.0);
             addWorldForcesTo(s2, 1.0);
 
-            forcedShapes.add(s1);
-            forcedShapes.add(s2);
+            markForced(s1);
+            markForced(s2);
 
             unstickShapes(s1, s2, collisionInfo.getDir());
             applyCollisionForces(s1, s2, collisionInfo.getDir());
@@ -178,68 +290,268 @@ public class SpeculativeManager2 extends CollisionManager {
             s1.move(dt);
             s2.move(dt);
 
-            movedShapes.add(s1);
-            movedShapes.add(s2);
+            markMoved(s1);
+            markMoved(s2);
         }
-        else if (isSweptCapable) {
+        else if (isSweptCapable && needsContinuous(s1, s2)) {
             /*
-             * apply pre collision world forces
-             * move till in contact
-             * add collision forces
-             * add post collision world forces
-             * move for remainder of frame
+             * Don't resolve the impact here. It goes into the impact queue, so
+             * that every impact in the world is resolved in order of time.
              */
+            addPartners(s1, s2);
+
             double collisionTime = sweptSolver.getImpendingCollisionTime(s1, s2, collisionInfo, dt);
             if (collisionTime >= 0) { // Impending coll.
-                //System.out.println("full swept");
+                impactQueue.add(new ImpactEvent(s1, s2, collisionInfo.getDir(), collisionTime, getImpactCount(s1),
+                        getImpactCount(s2)));
+            }
+            else { // otherwise, just add all world forces
+                addWorldForcesTo(s1, 1.0);
+                addWorldForcesTo(s2, 1.0);
+                markForced(s1);
+                markForced(s2);
+            }
 
-                // Apply pre-collision world forces
-                addWorldForcesTo(s1, collisionTime);
-                addWorldForcesTo(s2, collisionTime);
+        }
+    }
 
-                // First, move the shapes till they are just in contact.
-                s1.incrementMove(dt, collisionTime);
-                s2.incrementMove(dt, collisionTime);
+    /**
+     * Resolve the predicted impacts in order of time. <br>
+     * Each impact moves its two shapes up to the time of impact, applies the
+     * collision forces and then predicts new impacts for both shapes against
+     * everything they were paired with, over the rest of the tick. Any other
+     * shape is only brought up to the same time when it's needed for a new
+     * prediction. Since the events are resolved in order, nothing can hit it
+     * before that anyway. <br>
+     * At most maxImpactsPerTick impacts are resolved with predictions. After
+     * that, each shape that still has an impact left only has its earliest
+     * one resolved, and is then held there for the rest of the tick, so it
+     * can't pass through anything it was about to hit. Finally, every other
+     * shape that took part is moved to the end of the tick.
+     */
+    private void processImpacts() {
+        int resolved = 0;
 
-                // Now the shapes should be in contact.
+        while (!impactQueue.isEmpty() && resolved < maxImpactsPerTick) {
+            ImpactEvent event = impactQueue.poll();
 
-                // Percent of frame left to simulate.
-                collisionTime = 1.0 - collisionTime;
+            // Stale, one of the shapes has been hit since this was predicted.
+            if (event.stamp1 != getImpactCount(event.s1) || event.stamp2 != getImpactCount(event.s2))
+                continue;
 
-                // Add collision forces
-                //gjkInfo.getDir().negate(); // Expected by the force computer.
-                applyCollisionForces(s1, s2, collisionInfo.getDir());
-                //gjkInfo.getDir().negate();
+            // Already moved for the whole tick by the discrete path.
+            if (isFullyMoved(event.s1) || isFullyMoved(event.s2))
+                continue;
 
-                // Add post-collision world forces.
-                addWorldForcesTo(s1, collisionTime);
-                addWorldForcesTo(s2, collisionTime);
+            resolveImpact(event);
+            resolved++;
 
-                forcedShapes.add(s1);
-                forcedShapes.add(s2);
+            predictImpacts(event.s1, event.time);
+            predictImpacts(event.s2, event.time);
+        }
 
-                // Now move the shapes by the time left in the frame.
-                s1.incrementMove(dt, collisionTime);
-                s2.incrementMove(dt, collisionTime);
+        // Out of impacts, so resolve the earliest impact of each shape that's
+        // left without predicting any more, and hold it there.
+        while (!impactQueue.isEmpty()) {
+            ImpactEvent event = impactQueue.poll();
 
-                movedShapes.add(s1);
-                movedShapes.add(s2);
-            }
-            else { // otherwise, just add all world forces
-                addWorldForcesTo(s1, 1.0);
-                addWorldForcesTo(s2, 1.0);
-                forcedShapes.add(s1);
-                forcedShapes.add(s2);
+            if (isFullyMoved(event.s1) || isFullyMoved(event.s2))
+                continue;
+
+            boolean stale = event.stamp1 != getImpactCount(event.s1) || event.stamp2 != getImpactCount(event.s2);
+
+            if (!stale && !heldShapes.contains(event.s1) && !heldShapes.contains(event.s2))
+                resolveImpact(event);
+
+            holdAt(event.s1, event.time);
+            holdAt(event.s2, event.time);
+        }
+
+        // Move everything else that took part to the end of the tick.
+        for (Map.Entry<Shape, Double> e : localTimes.entrySet()) {
+            Shape s = e.getKey();
+
+            if (!heldShapes.contains(s))
+                advanceTo(s, 1.0);
+            else if (!isForced(s))
+                addForceOfGravity(s, 1.0 - e.getValue()); // the rest of the tick's gravity, for next tick
+
+            markForced(s);
+            markMoved(s);
+        }
+
+        impactQueue.clear();
+        impactPartners.clear();
+        impactCounts.clear();
+        localTimes.clear();
+        heldShapes.clear();
+    }
+
+    /**
+     * Move the two shapes of an impact up to its time and apply the collision
+     * forces.
+     * 
+     * @param event the impact.
+     */
+    private void resolveImpact(ImpactEvent event) {
+        advanceTo(event.s1, event.time);
+        advanceTo(event.s2, event.time);
+
+        wakeShape(event.s1);
+        wakeShape(event.s2);
+        addContact(new Contact(event.s1, event.s2, event.dir, false));
+
+        applyCollisionForces(event.s1, event.s2, event.dir);
+
+        impactCounts.put(event.s1, getImpactCount(event.s1) + 1);
+        impactCounts.put(event.s2, getImpactCount(event.s2) + 1);
+    }
+
+    /**
+     * Predict the impacts of a shape which has just been hit, against every
+     * shape it was paired with this tick.
+     * 
+     * @param s the shape that was just hit.
+     * @param time the time of the hit, as a fraction of the tick.
+     */
+    private void predictImpacts(Shape s, double time) {
+        ArrayList<Shape> partners = impactPartners.get(s);
+
+        if (partners == null || s.isStatic())
+            return;
+
+        double timeLeft = 1.0 - time;
+
+        for (Shape partner : partners) {
+            if (isFullyMoved(partner))
+                continue;
+
+            advanceTo(partner, time);
+
+            CollisionInfo info = collisionSolver.getCollisionResolution(s, partner);
+
+            // Already overlapping, so leave it for the discrete path next tick.
+            if (info.isColliding())
+                continue;
+
+            double collisionTime = sweptSolver.getImpendingCollisionTime(s, partner, info, dt * timeLeft);
+
+            if (collisionTime >= 0) {
+                impactQueue.add(new ImpactEvent(s, partner, info.getDir(), time + (collisionTime * timeLeft),
+                        getImpactCount(s), getImpactCount(partner)));
             }
+        }
+    }
 
+    /**
+     * Move a shape forward from its current time to the given time, along with
+     * its share of the world forces. Static shapes are left alone.
+     * 
+     * @param s the shape to move.
+     * @param time the time to move it to, as a fraction of the tick.
+     */
+    private void advanceTo(Shape s, double time) {
+        if (s.isStatic())
+            return;
+
+        Double current = localTimes.get(s);
+        double increment = time - (current == null ? 0 : current);
+
+        if (increment > 0) {
+            // Shapes that have already had the whole tick's world forces added take them in their first move.
+            if (!isForced(s))
+                addForceOfGravity(s, increment);
+
+            s.incrementMove(dt, increment);
         }
+
+        localTimes.put(s, Math.max(time, current == null ? 0 : current));
+    }
+
+    /**
+     * Move a shape up to the given time, and keep it there for the rest of the
+     * tick. A shape which is already held stays where it is, since its
+     * earliest impact came first.
+     * 
+     * @param s the shape to hold.
+     * @param time the time to hold it at, as a fraction of the tick.
+     */
+    private void holdAt(Shape s, double time) {
+        if (s.isStatic() || !heldShapes.add(s))
+            return;
+
+        advanceTo(s, time);
+    }
+
+    /**
+     * @param s the shape.
+     * @return true if the shape has already been moved for the whole tick
+     *         outside of the impact queue.
+     */
+    private boolean isFullyMoved(Shape s) {
+        return isMoved(s) && !localTimes.containsKey(s);
+    }
+
+    /**
+     * @param s the shape.
+     * @return the number of impacts the shape has been through this tick.
+     */
+    private int getImpactCount(Shape s) {
+        Integer count = impactCounts.get(s);
+        return count == null ? 0 : count;
+    }
+
+    /**
+     * Remember that the two shapes were checked against each other through
+     * the swept path, so they can be checked again after either is hit.
+     * 
+     * @param s1 the first shape.
+     * @param s2 the second shape.
+     */
+    private void addPartners(Shape s1, Shape s2) {
+        impactPartners.computeIfAbsent(s1, k -> new ArrayList<Shape>()).add(s2);
+        impactPartners.computeIfAbsent(s2, k -> new ArrayList<Shape>()).add(s1);
+    }
+
+    /**
+     * Check if a pair of shapes closes in fast enough this tick to need the
+     * swept path. Everything else takes the cheap discrete path, and any
+     * collision it has gets picked up once the shapes overlap. <br>
+     * It's decided per pair, since what gets tunnelled through is the thinner
+     * of the two. A small shape moving slowly can still pass through a thin
+     * wall, static or not, in a single tick.
+     * 
+     * @param s1 the first shape.
+     * @param s2 the second shape.
+     * @return true if either shape is a bullet, or they travel further
+     *         relative to each other than continuousThreshold of the smallest
+     *         extent of either in a tick.
+     */
+    private boolean needsContinuous(Shape s1, Shape s2) {
+        if (s1.isBullet() || s2.isBullet())
+            return true;
+
+        double extent = Math.min(getSmallestExtent(s1), getSmallestExtent(s2));
+        double travel = continuousThreshold * extent;
+
+        Vec2D relVel = Vec2D.sub(s1.getVelocity(), s2.getVelocity());
+
+        return relVel.getSquaredLength() * dt * dt > travel * travel;
+    }
+
+    /**
+     * @param s the shape.
+     * @return the smaller side of the shape's AABB.
+     */
+    private static double getSmallestExtent(Shape s) {
+        return Math.min(s.getAABBMaxX() - s.getAABBMinX(), s.getAABBMaxY() - s.getAABBMinY());
     }
 
     /**
      * If a collision is detected, translate the shapes out of each other. <br>
      * The translation is distributed between each shape depending on mass. This
      * should be very small anyways because deep collisions will be prevented by
-     * the swept checker.
+     * the swept checker. Frozen shapes stay put, like the world bounds.
      * 
      * @param s1 the first shape.
      * @param s2 the second shape.
@@ -252,11 +564,11 @@ public class SpeculativeManager2 extends CollisionManager {
         double s1ratio, s2ratio;
 
         // Logically distribute the translations.
-        if (s1 instanceof WorldBound) {
+        if (s1 instanceof WorldBound || s1.isLowDetail()) {
             s1ratio = 0;
             s2ratio = 1;
         }
-        else if (s2 instanceof WorldBound) {
+        else if (s2 instanceof WorldBound || s2.isLowDetail()) {
             s1ratio = 1;
             s2ratio = 0;
         }
@@ -280,40 +592,76 @@ public class SpeculativeManager2 extends CollisionManager {
     @Override
     public void runManager(ArrayList<Shape> entities) {
 
+        startStep(entities);
+
         manageCollisions(entities);
 
         addWorldForces(entities);
 
         moveEntities(entities);
 
+        buildIslands(entities);
+
+        updateSleepStates();
+
+        finishStep(entities);
+
     }
 
     @Override
     protected void moveEntities(ArrayList<Shape> entities) {
+        batchBodies.clear();
+
         for (Shape s : entities) {
-            if (movedShapes.add(s)) {
-                s.move(dt);
+            if (!s.isStatic() && !s.isAsleep() && markMoved(s)) {
+                batchBodies.add(s);
             }
         }
+
+        integrate(batchBodies, dt, null); // the field was added in manageCollisions
     }
 
     @Override
     protected void addWorldForces(ArrayList<Shape> entities) {
         for (Shape s : entities) {
-            if (!forcedShapes.contains(s)) {
+            if (!s.isStatic() && !s.isAsleep() && !isForced(s)) {
                 addWorldForcesTo(s, 1.0);
-                forcedShapes.add(s);
+                markForced(s);
             }
         }
     }
 
     @Override
     protected void addWorldForcesTo(Shape entity, double increment) {
-        if (!forcedShapes.contains(entity)) {
+        if (!isForced(entity)) {
             addForceOfGravity(entity, increment);
         }
     }
 
+    /**
+     * Set how far a pair of shapes has to travel relative to each other in a
+     * single tick, as a fraction of the smallest AABB extent of either, before
+     * it uses continuous collision detection. Pairs with a bullet always use
+     * it. <br>
+     * Set this to 0 to use continuous detection for every moving pair.
+     * 
+     * @param continuousThreshold the fraction of the smallest extent.
+     */
+    public void setContinuousThreshold(double continuousThreshold) {
+        this.continuousThreshold = continuousThreshold;
+    }
+
+    /**
+     * Set the most impacts the impact queue resolves in a single tick with
+     * predictions. Past this, a shape only has its earliest impact resolved,
+     * and is held there until the next tick.
+     * 
+     * @param maxImpactsPerTick the most impacts resolved per tick.
+     */
+    public void setMaxImpactsPerTick(int maxImpactsPerTick) {
+        this.maxImpactsPerTick = maxImpactsPerTick;
+    }
+
     /**
      * Return the collision tree being used to partition the entities.
      * 
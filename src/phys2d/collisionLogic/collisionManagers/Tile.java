@@ -0,0 +1,176 @@
+package phys2d.collisionLogic.collisionManagers;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+
+import phys2d.collisionLogic.integrators.BodyBatch;
+import phys2d.collisionLogic.tools.Contact;
+import phys2d.entities.Vec2D;
+import phys2d.entities.shapes.Shape;
+
+/**
+ * One rectangular piece of the world, and everything the thread working on it
+ * needs. <br>
+ * A tile owns the awake shapes whose centers are inside its bounds, and is the
+ * only thing allowed to change them during a tick. Shapes owned by other tiles
+ * which could touch one of its own are copied in as ghosts. The tile can read
+ * where a ghost is, but it solves against a copy of the ghost's velocity, so
+ * the ghost itself is never written to.
+ *
+ * @author afsheen
+ */
+class Tile {
+
+    /**
+     * The area this tile covers, <b>in MIN-MAX notation</b>. Shapes are owned
+     * by the tile their center is in.
+     */
+    final Vec2D[] bounds;
+
+    /**
+     * The shapes this tile owns, and their swept AABBs for this tick.
+     */
+    final ArrayList<Shape> owned;
+    final ArrayList<Vec2D[]> ownedAABBs;
+
+    /**
+     * The box around all the swept AABBs of the owned shapes. Anything outside
+     * of it can't touch anything in this tile.
+     */
+    double reachMinX, reachMinY, reachMaxX, reachMaxY;
+
+    /**
+     * Shapes from other tiles which reach into this one, and their swept
+     * AABBs.
+     */
+    final ArrayList<Shape> ghosts;
+    final ArrayList<Vec2D[]> ghostAABBs;
+
+    /**
+     * The copies of the velocities of the ghosts, and of any sleeping shapes
+     * touched this tick.
+     */
+    final IdentityHashMap<Shape, Vec2D> mirrors;
+
+    /**
+     * The contacts found by this tile this tick, and the constraints solved
+     * for them.
+     */
+    final ArrayList<Contact> contacts;
+    final ArrayList<ContactConstraint> constraints;
+
+    /**
+     * Sleeping shapes which were touched this tick, and need to be woken up
+     * once all the tiles are done.
+     */
+    final ArrayList<Shape> toWake;
+
+    /**
+     * Reused buffer for the static and sleeping shapes found by each query.
+     */
+    final ArrayList<Shape> staticCandidates;
+
+    /**
+     * Integrates the owned shapes.
+     */
+    final BodyBatch bodyBatch;
+
+    /**
+     * @param bounds the area this tile covers, in min-max notation.
+     */
+    Tile(Vec2D[] bounds) {
+        this.bounds = bounds;
+
+        owned = new ArrayList<Shape>();
+        ownedAABBs = new ArrayList<Vec2D[]>();
+        ghosts = new ArrayList<Shape>();
+        ghostAABBs = new ArrayList<Vec2D[]>();
+        mirrors = new IdentityHashMap<Shape, Vec2D>();
+        contacts = new ArrayList<Contact>();
+        constraints = new ArrayList<ContactConstraint>();
+        toWake = new ArrayList<Shape>();
+        staticCandidates = new ArrayList<Shape>();
+        bodyBatch = new BodyBatch();
+    }
+
+    /**
+     * Work out the swept AABBs of the owned shapes, and the reach of the tile.
+     *
+     * @param dt the timestep.
+     */
+    void computeReach(double dt) {
+        ownedAABBs.clear();
+
+        reachMinX = Double.POSITIVE_INFINITY;
+        reachMinY = Double.POSITIVE_INFINITY;
+        reachMaxX = Double.NEGATIVE_INFINITY;
+        reachMaxY = Double.NEGATIVE_INFINITY;
+
+        for (Shape s : owned) {
+            Vec2D[] aabb = s.getSweptAABBbounds(dt);
+            ownedAABBs.add(aabb);
+
+            reachMinX = Math.min(reachMinX, aabb[0].getX());
+            reachMinY = Math.min(reachMinY, aabb[0].getY());
+            reachMaxX = Math.max(reachMaxX, aabb[1].getX());
+            reachMaxY = Math.max(reachMaxY, aabb[1].getY());
+        }
+    }
+
+    /**
+     * @param minX the min x of the box.
+     * @param minY the min y of the box.
+     * @param maxX the max x of the box.
+     * @param maxY the max y of the box.
+     * @return true if the box overlaps the reach of this tile.
+     */
+    boolean reaches(double minX, double minY, double maxX, double maxY) {
+        return !(minX > reachMaxX || maxX < reachMinX || minY > reachMaxY || maxY < reachMinY);
+    }
+
+    /**
+     * Take a copy of every shape in another tile which reaches into this one.
+     *
+     * @param other the other tile.
+     */
+    void gatherGhostsFrom(Tile other) {
+        if (other == this || other.owned.isEmpty() || owned.isEmpty()
+                || !reaches(other.reachMinX, other.reachMinY, other.reachMaxX, other.reachMaxY))
+            return;
+
+        for (int i = 0; i < other.owned.size(); i++) {
+            Vec2D[] aabb = other.ownedAABBs.get(i);
+
+            if (reaches(aabb[0].getX(), aabb[0].getY(), aabb[1].getX(), aabb[1].getY())) {
+                Shape ghost = other.owned.get(i);
+
+                ghosts.add(ghost);
+                ghostAABBs.add(aabb);
+                mirrors.put(ghost, ghost.getVelocity().getCopy());
+            }
+        }
+    }
+
+    /**
+     * Forget everything from the last tick, except for the owned shapes.
+     */
+    void clearTick() {
+        ghosts.clear();
+        ghostAABBs.clear();
+        mirrors.clear();
+        contacts.clear();
+        constraints.clear();
+        toWake.clear();
+    }
+
+    /**
+     * @param s the shape.
+     * @return the velocity this tile should use for the shape. Either a
+     *         mirrored copy, or the shape's real velocity.
+     */
+    Vec2D getVelocity(Shape s) {
+        Vec2D mirror = mirrors.get(s);
+        return mirror != null ? mirror : s.getVelocity();
+    }
+
+}
@@ -0,0 +1,519 @@
+package phys2d.collisionLogic.collisionManagers;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
+
+import phys2d.Phys2DMain;
+import phys2d.collisionLogic.collisionCheckers.CollisionChecker;
+import phys2d.collisionLogic.collisionCheckers.CollisionCheckerGJKEPA2;
+import phys2d.collisionLogic.collisionCheckers.CollisionInfo;
+import phys2d.collisionLogic.pipeline.Stage;
+import phys2d.collisionLogic.pipeline.StepPipeline;
+import phys2d.collisionLogic.tools.Contact;
+import phys2d.entities.Vec2D;
+import phys2d.entities.shapes.Shape;
+
+/**
+ * An impulse manager which splits the world into a grid of tiles, and gives
+ * each tile to its own thread for the whole tick. <br>
+ * Every tick:
+ * <ol>
+ * <li>World forces are folded into the velocities, and any shapes which woke
+ * up are given to the tile their center is in.</li>
+ * <li>Each tile works out the swept AABBs of its shapes, and copies in every
+ * shape from another tile which reaches into it as a read only ghost.</li>
+ * <li>Each tile runs its own broadphase (sort and sweep) and narrowphase over
+ * its shapes and ghosts, and its own queries against the static and sleeping
+ * shapes.</li>
+ * <li>Each tile solves its contacts with the impulse solver. Ghosts are solved
+ * against a copy of their velocity, so a tile only ever writes to the shapes
+ * it owns. A pair which crosses a border is solved by both tiles, and each
+ * keeps the result for its own shape.</li>
+ * <li>Each tile integrates its own shapes.</li>
+ * <li>Islands and sleeping are worked out for the whole world, and any shape
+ * which has crossed a border migrates to its new tile.</li>
+ * </ol>
+ * The tiles only wait on each other between these stages, so there is very
+ * little synchronization. Each of the per tile stages is a partitioned stage
+ * of the pipeline, with a partition per tile. Pairs across borders only see each other's
+ * velocities from the start of the tick, so large stacks which straddle a
+ * border are a bit softer than with the plain {@link ImpulseManager}. <br>
+ * Level of detail isn't used, since deciding it reads the velocities of
+ * shapes which other tiles are writing to.
+ *
+ * @author afsheen
+ */
+public class TiledManager extends ImpulseManager {
+
+    private final Tile[] tiles;
+    private final int tilesX, tilesY;
+
+    /**
+     * The bounds of the whole tiled area, and the size of each tile.
+     */
+    private final double minX, minY, tileWidth, tileHeight;
+
+    /**
+     * The tile which owns each awake shape.
+     */
+    private final IdentityHashMap<Shape, Tile> owners;
+
+    private boolean parallelTiles = true;
+
+    /**
+     * The number of shapes which moved to a different tile at the end of the
+     * last tick.
+     */
+    private int migrations;
+
+    /**
+     * Create a new tiled manager with a roughly square grid of about one tile
+     * per processor.
+     *
+     * @param dt the timestep of this simulation.
+     */
+    public TiledManager(double dt) {
+        this(dt, (int) Math.ceil(Math.sqrt(Runtime.getRuntime().availableProcessors())),
+                (int) Math.ceil(Runtime.getRuntime().availableProcessors()
+                        / Math.ceil(Math.sqrt(Runtime.getRuntime().availableProcessors()))));
+    }
+
+    /**
+     * Create a new tiled manager using {@link CollisionCheckerGJKEPA2} and 8
+     * solver iterations.
+     *
+     * @param dt the timestep of this simulation.
+     * @param tilesX the number of tiles across.
+     * @param tilesY the number of tiles down.
+     */
+    public TiledManager(double dt, int tilesX, int tilesY) {
+        this(dt, new CollisionCheckerGJKEPA2(), 8, tilesX, tilesY);
+    }
+
+    /**
+     * Create a new tiled manager.
+     *
+     * @param dt the timestep of this simulation.
+     * @param collisionSolver the algorithm set which will be used to compute
+     *            collisions. Must return the penetration vector when shapes
+     *            collide, and must be safe to use from several threads.
+     * @param iterations the number of velocity iterations per tick.
+     * @param tilesX the number of tiles across.
+     * @param tilesY the number of tiles down.
+     */
+    public TiledManager(double dt, CollisionChecker collisionSolver, int iterations, int tilesX, int tilesY) {
+        super(dt, collisionSolver, iterations);
+
+        this.tilesX = Math.max(1, tilesX);
+        this.tilesY = Math.max(1, tilesY);
+
+        // Same area as the collision trees.
+        minX = -10;
+        minY = -10;
+        tileWidth = (Phys2DMain.XRES + 20) / (double) this.tilesX;
+        tileHeight = (Phys2DMain.YRES + 20) / (double) this.tilesY;
+
+        tiles = new Tile[this.tilesX * this.tilesY];
+
+        for (int ty = 0; ty < this.tilesY; ty++) {
+            for (int tx = 0; tx < this.tilesX; tx++) {
+                Vec2D min = new Vec2D(minX + (tx * tileWidth), minY + (ty * tileHeight));
+                Vec2D max = new Vec2D(min.getX() + tileWidth, min.getY() + tileHeight);
+
+                tiles[(ty * this.tilesX) + tx] = new Tile(new Vec2D[] { min, max });
+            }
+        }
+
+        owners = new IdentityHashMap<Shape, Tile>();
+    }
+
+    // The names of the stages which only the tiled manager has.
+    public static final String STAGE_ADOPT = "adopt";
+    public static final String STAGE_REACH = "reach";
+    public static final String STAGE_GHOSTS = "ghosts";
+    public static final String STAGE_GATHER = "gather";
+    public static final String STAGE_MIGRATE = "migrate";
+
+    @Override
+    protected StepPipeline buildPipeline() {
+        StepPipeline steps = new StepPipeline();
+
+        steps.addStage(new Stage(STAGE_BEGIN, () -> {
+            startStep(stepEntities);
+            processWakeQueue();
+        }));
+        steps.addStage(new Stage(STAGE_WORLD_FORCES, () -> addWorldForces(stepEntities), STAGE_BEGIN));
+        steps.addStage(new Stage(STAGE_ADOPT, () -> adoptShapes(stepEntities), STAGE_WORLD_FORCES));
+        steps.addStage(tileStage(STAGE_REACH, tile -> {
+            tile.clearTick();
+            tile.computeReach(dt);
+        }, STAGE_ADOPT));
+        steps.addStage(tileStage(STAGE_GHOSTS, tile -> {
+            for (Tile other : tiles) {
+                tile.gatherGhostsFrom(other);
+            }
+        }, STAGE_REACH));
+        steps.addStage(tileStage(STAGE_NARROWPHASE, this::findTileContacts, STAGE_GHOSTS));
+        steps.addStage(tileStage(STAGE_SOLVE, this::solveTile, STAGE_NARROWPHASE));
+        steps.addStage(new Stage(STAGE_GATHER, this::gatherTiles, STAGE_SOLVE));
+        steps.addStage(new Stage(STAGE_INTEGRATE,
+                () -> accelerationField == null && !splitSteps && parallelTiles ? tiles.length : 1, this::moveTiles,
+                STAGE_SOLVE));
+        steps.addStage(new Stage(STAGE_ISLANDS, () -> buildIslands(stepEntities), STAGE_GATHER, STAGE_INTEGRATE));
+        steps.addStage(new Stage(STAGE_SLEEP, this::updateSleepStates, STAGE_ISLANDS));
+        steps.addStage(new Stage(STAGE_MIGRATE, () -> migrateShapes(stepEntities), STAGE_SLEEP));
+        steps.addStage(new Stage(STAGE_FINISH, () -> finishStep(stepEntities), STAGE_MIGRATE));
+
+        return steps;
+    }
+
+    /**
+     * Make a stage which runs an action on every tile. The tiles are split
+     * evenly over the partitions of the stage, which is a partition per tile
+     * unless the tiles aren't allowed to run in parallel.
+     *
+     * @param name the name of the stage.
+     * @param action the action to run on each tile.
+     * @param dependencies the stages it has to wait for.
+     * @return the stage.
+     */
+    private Stage tileStage(String name, Consumer<Tile> action, String... dependencies) {
+        IntConsumer partitionAction = partition -> {
+            int partitions = parallelTiles ? tiles.length : 1;
+
+            for (int i = partitionStart(partition, partitions, tiles.length); i < partitionStart(partition + 1,
+                    partitions, tiles.length); i++) {
+                action.accept(tiles[i]);
+            }
+        };
+
+        return new Stage(name, () -> parallelTiles ? tiles.length : 1, partitionAction, dependencies);
+    }
+
+    /**
+     * Find the ghosts of every tile, and then run each tile's broadphase and
+     * narrowphase.
+     */
+    @Override
+    protected void manageCollisions(ArrayList<Shape> entities) {
+        for (Tile tile : tiles) {
+            tile.clearTick();
+            tile.computeReach(dt);
+        }
+
+        for (Tile tile : tiles) {
+            for (Tile other : tiles) {
+                tile.gatherGhostsFrom(other);
+            }
+        }
+
+        for (Tile tile : tiles) {
+            findTileContacts(tile);
+        }
+    }
+
+    /**
+     * Run the broadphase and narrowphase of a single tile. Pairs of ghosts are
+     * left to the tiles which own them. A pair across a border is checked by
+     * both tiles, and each one only cuts the step of the shape it owns.
+     *
+     * @param tile the tile.
+     */
+    private void findTileContacts(Tile tile) {
+        int ownedCount = tile.owned.size();
+        int total = ownedCount + tile.ghosts.size();
+
+        Integer[] order = new Integer[total];
+        for (int i = 0; i < total; i++) {
+            order[i] = i;
+        }
+
+        Arrays.sort(order, Comparator.comparingDouble(i -> getAABB(tile, i)[0].getX()));
+
+        // Sort and sweep along x.
+        for (int a = 0; a < total; a++) {
+            int i = order[a];
+            Vec2D[] aabbI = getAABB(tile, i);
+
+            for (int b = a + 1; b < total; b++) {
+                int j = order[b];
+                Vec2D[] aabbJ = getAABB(tile, j);
+
+                if (aabbJ[0].getX() > aabbI[1].getX())
+                    break;
+
+                if ((i >= ownedCount && j >= ownedCount) || aabbJ[0].getY() > aabbI[1].getY()
+                        || aabbJ[1].getY() < aabbI[0].getY())
+                    continue;
+
+                Shape s1 = getShape(tile, i);
+                Shape s2 = getShape(tile, j);
+
+                if (!isDetailedPair(s1, s2, i < ownedCount, j < ownedCount))
+                    continue;
+
+                // Both tiles of a pair across a border have to get the same answer.
+                if (s1.getKey() < s2.getKey())
+                    findTileContact(tile, s1, s2);
+                else
+                    findTileContact(tile, s2, s1);
+            }
+        }
+
+        for (int i = 0; i < ownedCount; i++) {
+            Shape s = tile.owned.get(i);
+            Vec2D[] sweptAABB = tile.ownedAABBs.get(i);
+
+            if (s.isLowDetail())
+                continue;
+
+            tile.staticCandidates.clear();
+            staticTree.query(sweptAABB, tile.staticCandidates);
+            sleepingTree.query(sweptAABB, tile.staticCandidates);
+
+            for (Shape staticShape : tile.staticCandidates) {
+                // Sleeping shapes might get pushed, but they aren't ours.
+                if (!staticShape.isStatic() && !tile.mirrors.containsKey(staticShape))
+                    tile.mirrors.put(staticShape, staticShape.getVelocity().getCopy());
+
+                if (findTileContact(tile, staticShape, s) && !staticShape.isStatic())
+                    tile.toWake.add(staticShape);
+            }
+        }
+    }
+
+    /**
+     * Run the narrowphase on the two shapes, and record a contact in the tile
+     * if they are colliding or about to.
+     *
+     * @param tile the tile.
+     * @param s1 the first shape.
+     * @param s2 the second shape.
+     * @return true if a contact was recorded.
+     */
+    private boolean findTileContact(Tile tile, Shape s1, Shape s2) {
+        CollisionInfo collisionInfo = collisionSolver.getCollisionResolution(s1, s2);
+
+        if (collisionInfo.isColliding()) {
+            tile.contacts.add(new Contact(s1, s2, collisionInfo.getDir(), true));
+            return true;
+        }
+        else if (speculativeContacts
+                && isClosing(tile.getVelocity(s1), tile.getVelocity(s2), collisionInfo.getDir())) {
+            tile.contacts.add(new Contact(s1, s2, collisionInfo.getDir(), false));
+            return true;
+        }
+
+        return false;
+    }
+
+    /**
+     * Solve the contacts of a single tile. Only writes to the shapes the tile
+     * owns.
+     *
+     * @param tile the tile.
+     */
+    private void solveTile(Tile tile) {
+        for (Contact contact : tile.contacts) {
+            ContactConstraint constraint = new ContactConstraint(contact);
+
+            Vec2D mirror = tile.mirrors.get(constraint.s1);
+            if (mirror != null)
+                constraint.mirror(constraint.s1, mirror);
+
+            mirror = tile.mirrors.get(constraint.s2);
+            if (mirror != null)
+                constraint.mirror(constraint.s2, mirror);
+
+            tile.constraints.add(prepareConstraint(constraint));
+        }
+
+        solveConstraints(tile.constraints);
+    }
+
+    /**
+     * Gather up what the tiles found for the whole world: the contacts, the
+     * impulses for next tick's warm start, and the sleeping shapes to wake.
+     */
+    private void gatherTiles() {
+        ArrayList<ArrayList<ContactConstraint>> solved = new ArrayList<ArrayList<ContactConstraint>>(tiles.length);
+
+        for (Tile tile : tiles) {
+            ArrayList<ContactConstraint> kept = new ArrayList<ContactConstraint>(tile.constraints.size());
+
+            // A pair across a border is in both tiles, so only the tile which
+            // owns its first shape keeps it.
+            for (int i = 0; i < tile.contacts.size(); i++) {
+                ContactConstraint constraint = tile.constraints.get(i);
+                Tile owner = owners.get(constraint.s1);
+
+                if (owner == tile || owner == null) {
+                    addContact(tile.contacts.get(i));
+                    kept.add(constraint);
+                }
+            }
+
+            solved.add(kept);
+
+            for (Shape s : tile.toWake) {
+                wakeShape(s);
+            }
+        }
+
+        keepForWarmStart(solved);
+    }
+
+    /**
+     * Integrate the shapes of one partition of the tiles. An acceleration
+     * field might depend on every shape at once, so with a field there is a
+     * single partition, and the shapes are all integrated together instead.
+     * The same goes for a tick where some shapes are stepped by more than
+     * one tick or sit it out.
+     *
+     * @param partition the partition to integrate.
+     */
+    private void moveTiles(int partition) {
+        if (accelerationField == null && !splitSteps) {
+            int partitions = parallelTiles ? tiles.length : 1;
+
+            for (int i = partitionStart(partition, partitions, tiles.length); i < partitionStart(partition + 1,
+                    partitions, tiles.length); i++) {
+                Tile tile = tiles[i];
+
+                tile.bodyBatch.load(tile.owned);
+                integrator.integrate(tile.bodyBatch, null, dt);
+                tile.bodyBatch.store();
+            }
+        }
+        else {
+            batchBodies.clear();
+
+            for (Tile tile : tiles) {
+                batchBodies.addAll(tile.owned);
+            }
+
+            integrate(batchBodies, dt);
+        }
+    }
+
+    /**
+     * Give every awake shape without a tile to the tile its center is in.
+     * Picks up new shapes and shapes which were just woken up.
+     *
+     * @param entities the entities inside the world.
+     */
+    private void adoptShapes(ArrayList<Shape> entities) {
+        for (Shape s : entities) {
+            if (s.isStatic() || s.isAsleep() || owners.containsKey(s))
+                continue;
+
+            Tile tile = getTileAt(s.getCOM());
+            tile.owned.add(s);
+            owners.put(s, tile);
+        }
+    }
+
+    /**
+     * Also take the shape away from the tile which owns it, since tiles keep
+     * their shapes between ticks.
+     */
+    @Override
+    public void shapeRemoved(Shape s) {
+        super.shapeRemoved(s);
+
+        Tile owner = owners.remove(s);
+        if (owner != null)
+            owner.owned.remove(s);
+    }
+
+    /**
+     * Hand every shape to the tile its center is in now, and drop the shapes
+     * which went to sleep or were removed.
+     *
+     * @param entities the entities inside the world.
+     */
+    private void migrateShapes(ArrayList<Shape> entities) {
+        migrations = 0;
+
+        for (Tile tile : tiles) {
+            tile.owned.clear();
+        }
+
+        IdentityHashMap<Shape, Tile> previous = new IdentityHashMap<Shape, Tile>(owners);
+        owners.clear();
+
+        for (Shape s : entities) {
+            if (s.isStatic() || s.isAsleep())
+                continue;
+
+            Tile tile = getTileAt(s.getCOM());
+            Tile old = previous.get(s);
+
+            if (old != null && old != tile)
+                migrations++;
+
+            tile.owned.add(s);
+            owners.put(s, tile);
+        }
+    }
+
+    /**
+     * @param p the point.
+     * @return the tile the point is in. Points outside the tiled area go to
+     *         the closest tile.
+     */
+    private Tile getTileAt(Vec2D p) {
+        int tx = (int) Math.floor((p.getX() - minX) / tileWidth);
+        int ty = (int) Math.floor((p.getY() - minY) / tileHeight);
+
+        tx = Math.max(0, Math.min(tilesX - 1, tx));
+        ty = Math.max(0, Math.min(tilesY - 1, ty));
+
+        return tiles[(ty * tilesX) + tx];
+    }
+
+    /**
+     * @return the shape at index i of the tile's owned shapes followed by its
+     *         ghosts.
+     */
+    private Shape getShape(Tile tile, int i) {
+        int ownedCount = tile.owned.size();
+        return i < ownedCount ? tile.owned.get(i) : tile.ghosts.get(i - ownedCount);
+    }
+
+    /**
+     * @return the swept AABB of the shape at index i of the tile's owned
+     *         shapes followed by its ghosts.
+     */
+    private Vec2D[] getAABB(Tile tile, int i) {
+        int ownedCount = tile.ownedAABBs.size();
+        return i < ownedCount ? tile.ownedAABBs.get(i) : tile.ghostAABBs.get(i - ownedCount);
+    }
+
+    /**
+     * @param parallelTiles whether the tiles should run on multiple threads.
+     */
+    public void setParallelTiles(boolean parallelTiles) {
+        this.parallelTiles = parallelTiles;
+    }
+
+    /**
+     * @return the number of shapes which moved to a different tile at the end
+     *         of the last tick.
+     */
+    public int getMigrationCount() {
+        return migrations;
+    }
+
+    /**
+     * @return the number of tiles across and down.
+     */
+    public int[] getTileCounts() {
+        return new int[] { tilesX, tilesY };
+    }
+
+}
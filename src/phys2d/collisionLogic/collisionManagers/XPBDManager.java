@@ -0,0 +1,431 @@
+package phys2d.collisionLogic.collisionManagers;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+
+import phys2d.Phys2DMain;
+import phys2d.collisionLogic.collisionCheckers.CollisionChecker;
+import phys2d.collisionLogic.collisionCheckers.CollisionCheckerGJKEPA2;
+import phys2d.collisionLogic.collisionCheckers.CollisionInfo;
+import phys2d.collisionLogic.spacePartitioning.SpacePartitioningTree;
+import phys2d.collisionLogic.spacePartitioning.SweptQuadTree;
+import phys2d.collisionLogic.tools.Contact;
+import phys2d.collisionLogic.tools.Island;
+import phys2d.entities.MaterialPairTable;
+import phys2d.entities.Vec2D;
+import phys2d.entities.shapes.Shape;
+
+/**
+ * A collision manager based on extended position based dynamics (XPBD). <br>
+ * Instead of working out forces or impulses, contacts are solved directly as
+ * position constraints: overlapping shapes are simply moved apart along the
+ * penetration vector from the collision checker (the same one used to unstick
+ * shapes in {@link SpeculativeManager2}). The velocities are then derived from
+ * how far the shapes actually moved. <br>
+ * Every tick is split into a number of substeps. Each substep:
+ * <ol>
+ * <li>Moves every awake shape with its velocity and the world forces.</li>
+ * <li>Pushes every overlapping pair of shapes apart.</li>
+ * <li>Sets each velocity to the distance moved over the substep.</li>
+ * <li>Applies restitution and dynamic friction to the pairs which were pushed
+ * apart.</li>
+ * </ol>
+ * The broadphase only runs once per tick, using the AABBs swept over the whole
+ * tick. <br>
+ * Since friction here only ever removes tangential velocity up to what the
+ * normal correction allows, resting shapes come to a stop on their own and
+ * don't need the "kill velocity" routine used by the force based managers.
+ *
+ * @author afsheen
+ */
+public class XPBDManager extends CollisionManager {
+
+    /**
+     * Relative normal speeds (px/s) slower than this don't bounce. Stops
+     * resting shapes from buzzing. Same as the impulse manager's.
+     */
+    private static final double RESTITUTION_THRESHOLD = 20;
+
+    private final SpacePartitioningTree collisionTree;
+
+    private final CollisionChecker collisionSolver;
+
+    /**
+     * The pair keys of all the dynamic pairs found this tick.
+     */
+    private final HashSet<Long> checkedPairs;
+
+    /**
+     * The pair keys of all the pairs recorded as contacts this tick.
+     */
+    private final HashSet<Long> contactPairs;
+
+    /**
+     * Every pair which could touch during this tick.
+     */
+    private final ArrayList<Shape[]> candidatePairs;
+
+    /**
+     * Reused buffer for the static and sleeping shapes found by each query.
+     */
+    private final ArrayList<Shape> staticCandidates;
+
+    /**
+     * The awake shapes being stepped this tick, and their positions at the
+     * start of the current substep.
+     */
+    private final ArrayList<Shape> bodies;
+    private final ArrayList<Vec2D> substepStarts;
+
+    /**
+     * The pairs pushed apart during the current substep.
+     */
+    private final ArrayList<PositionContact> substepContacts;
+
+    private int substeps;
+
+    /**
+     * The compliance (inverse stiffness) of the contacts. 0 gives perfectly
+     * rigid contacts.
+     */
+    private double contactCompliance = 0;
+
+    /**
+     * Create a new XPBD manager using {@link CollisionCheckerGJKEPA2} and 4
+     * substeps.
+     *
+     * @param dt the timestep of this simulation.
+     */
+    public XPBDManager(double dt) {
+        this(dt, new CollisionCheckerGJKEPA2(), 4);
+    }
+
+    /**
+     * Create a new XPBD manager.
+     *
+     * @param dt the timestep of this simulation.
+     * @param collisionSolver the algorithm set which will be used to compute
+     *            collisions. Must return the penetration vector when shapes
+     *            collide.
+     * @param substeps the number of substeps per tick.
+     */
+    public XPBDManager(double dt, CollisionChecker collisionSolver, int substeps) {
+        super(dt);
+        collisionTree = new SweptQuadTree(new Vec2D[] { new Vec2D(-10, -10),
+                new Vec2D(Phys2DMain.XRES + 10, Phys2DMain.YRES + 10) }, 1, dt);
+
+        this.collisionSolver = collisionSolver;
+        this.substeps = substeps;
+
+        checkedPairs = new HashSet<Long>();
+        contactPairs = new HashSet<Long>();
+        candidatePairs = new ArrayList<Shape[]>();
+        staticCandidates = new ArrayList<Shape>();
+        bodies = new ArrayList<Shape>();
+        substepStarts = new ArrayList<Vec2D>();
+        substepContacts = new ArrayList<PositionContact>();
+    }
+
+    @Override
+    public void runManager(ArrayList<Shape> entities) {
+
+        startStep(entities);
+
+        processWakeQueue();
+
+        manageCollisions(entities);
+
+        // Shapes sitting out the tick stay where they are.
+        bodies.clear();
+        for (Shape s : entities) {
+            if (!s.isStatic() && !s.isAsleep() && !s.isLowDetail())
+                bodies.add(s);
+        }
+
+        double h = dt / substeps;
+
+        for (int i = 0; i < substeps; i++) {
+            substep(h);
+        }
+
+        buildIslands(entities);
+
+        updateSleepStates();
+
+        finishStep(entities);
+    }
+
+    /**
+     * Run the broadphase, and keep every pair which could touch during this
+     * tick. The narrowphase runs on them once per substep.
+     */
+    @Override
+    protected void manageCollisions(ArrayList<Shape> entities) {
+
+        collisionTree.refresh();
+        checkedPairs.clear();
+        contactPairs.clear();
+        candidatePairs.clear();
+
+        for (Shape s : entities) {
+            if (!s.isStatic() && !s.isAsleep())
+                collisionTree.insert(s);
+        }
+
+        for (Shape[] group : collisionTree.getPossibleCollisions()) {
+            for (int i = 0; i < group.length; i++) {
+                for (int j = i + 1; j < group.length; j++) {
+                    if (checkedPairs.add(getPairKey(group[i], group[j])) && isDetailedPair(group[i], group[j]))
+                        candidatePairs.add(new Shape[] { group[i], group[j] });
+                }
+            }
+        }
+
+        for (Shape s : entities) {
+            if (s.isStatic() || s.isAsleep() || s.isLowDetail())
+                continue;
+
+            staticCandidates.clear();
+            staticTree.querySwept(s, dt, staticCandidates);
+            sleepingTree.querySwept(s, dt, staticCandidates);
+
+            for (Shape staticShape : staticCandidates) {
+                candidatePairs.add(new Shape[] { staticShape, s });
+            }
+        }
+
+        if (deterministic)
+            candidatePairs.sort(canonicalPairOrder);
+    }
+
+    /**
+     * Run a single substep of length h.
+     *
+     * @param h the length of the substep.
+     */
+    private void substep(double h) {
+
+        // Predict the new positions.
+        substepStarts.clear();
+        for (Shape s : bodies) {
+            substepStarts.add(s.getCOM().getCopy());
+
+            addForceOfGravity(s, 1.0 / substeps);
+        }
+
+        integrate(bodies, h);
+
+        // Push apart anything that overlaps.
+        substepContacts.clear();
+        for (Shape[] pair : candidatePairs) {
+            solvePosition(pair[0], pair[1], h);
+        }
+
+        // Derive the velocities from the distance moved, over however many ticks the shape was stepped by.
+        for (int i = 0; i < bodies.size(); i++) {
+            Shape s = bodies.get(i);
+            Vec2D moved = Vec2D.sub(s.getCOM(), substepStarts.get(i));
+            double time = h * s.getStepTicks();
+
+            s.getVelocity().setX(moved.getX() / time);
+            s.getVelocity().setY(moved.getY() / time);
+        }
+
+        for (PositionContact contact : substepContacts) {
+            solveVelocity(contact, h);
+        }
+    }
+
+    /**
+     * If the shapes overlap, move them apart along the penetration vector,
+     * sharing the correction by inverse mass.
+     *
+     * @param s1 the first shape.
+     * @param s2 the second shape.
+     * @param h the length of the substep.
+     */
+    private void solvePosition(Shape s1, Shape s2, double h) {
+        CollisionInfo collisionInfo = collisionSolver.getCollisionResolution(s1, s2);
+
+        if (!collisionInfo.isColliding())
+            return;
+
+        Vec2D dir = collisionInfo.getDir();
+        double depth = dir.getLength();
+
+        if (contactPairs.add(getPairKey(s1, s2))) {
+            wakeIntoSubstep(s1);
+            wakeIntoSubstep(s2);
+            addContact(new Contact(s1, s2, dir, true));
+        }
+
+        double w1 = getSolverInvMass(s1);
+        double w2 = getSolverInvMass(s2);
+        double w = w1 + w2 + (contactCompliance / (h * h));
+
+        if (depth == 0 || w == 0)
+            return;
+
+        PositionContact contact = new PositionContact(s1, s2, dir.getX() / depth, dir.getY() / depth, w1, w2);
+
+        // The normal speed before the shapes were pushed apart, for restitution.
+        contact.preNormalSpeed = contact.getRelativeNormalSpeed();
+
+        // dir is the translation s2 needs to get out of s1.
+        contact.lambda = depth / w;
+
+        if (w1 != 0)
+            s1.translate(dir.getScaled(-w1 / w));
+        if (w2 != 0)
+            s2.translate(dir.getScaled(w2 / w));
+
+        substepContacts.add(contact);
+    }
+
+    /**
+     * Wake up a sleeping shape's island in the middle of a substep. The woken
+     * shapes join the bodies straight away, starting from where they are now,
+     * so they can be pushed this substep, get a velocity from how far they
+     * were pushed, and are integrated from the next substep on.
+     *
+     * @param s the shape which was touched.
+     */
+    private void wakeIntoSubstep(Shape s) {
+        if (!s.isAsleep() || s.getSleepIsland() == null)
+            return;
+
+        Island island = s.getSleepIsland();
+        wakeIsland(island);
+
+        for (Shape woken : island.getBodies()) {
+            bodies.add(woken);
+            substepStarts.add(woken.getCOM().getCopy());
+        }
+    }
+
+    /**
+     * Apply restitution and dynamic friction to a pair which was pushed apart
+     * this substep.
+     *
+     * @param contact the contact.
+     * @param h the length of the substep.
+     */
+    private void solveVelocity(PositionContact contact, double h) {
+        Shape s1 = contact.s1;
+        Shape s2 = contact.s2;
+
+        double w = contact.w1 + contact.w2;
+
+        // Friction, which can take away up to the tangential speed the normal correction allows.
+        double vt = contact.getRelativeTangentSpeed();
+        double mu = MaterialPairTable.getDynamicFriction(s1.getMaterial(), s2.getMaterial());
+        double maxFriction = (mu * contact.lambda * w) / h;
+
+        double dvt = -Math.signum(vt) * Math.min(Math.abs(vt), maxFriction);
+
+        // Restitution, only for shapes hitting fast enough.
+        double vn = contact.getRelativeNormalSpeed();
+        double restitution = MaterialPairTable.getRestitution(s1.getMaterial(), s2.getMaterial());
+
+        if (Math.abs(contact.preNormalSpeed) <= RESTITUTION_THRESHOLD)
+            restitution = 0;
+
+        double dvn = -vn + Math.max(-restitution * contact.preNormalSpeed, 0);
+
+        // Back into world space, along the normal and the tangent.
+        double dvx = (contact.nx * dvn) - (contact.ny * dvt);
+        double dvy = (contact.ny * dvn) + (contact.nx * dvt);
+
+        if (contact.w1 != 0) {
+            Vec2D v1 = s1.getVelocity();
+            v1.setX(v1.getX() - (dvx * contact.w1 / w));
+            v1.setY(v1.getY() - (dvy * contact.w1 / w));
+        }
+
+        if (contact.w2 != 0) {
+            Vec2D v2 = s2.getVelocity();
+            v2.setX(v2.getX() + (dvx * contact.w2 / w));
+            v2.setY(v2.getY() + (dvy * contact.w2 / w));
+        }
+    }
+
+    /**
+     * Static and sleeping shapes, and shapes sitting out the tick, don't move
+     * during the tick, so the solver treats them as infinitely heavy.
+     *
+     * @param s the shape.
+     * @return the inverse mass of the shape as seen by the solver.
+     */
+    private double getSolverInvMass(Shape s) {
+        return (s.isStatic() || s.isAsleep() || s.isLowDetail()) ? 0 : s.getInvMass();
+    }
+
+    /**
+     * @param substeps the number of substeps to split each tick into.
+     */
+    public void setSubsteps(int substeps) {
+        this.substeps = substeps;
+    }
+
+    /**
+     * @param contactCompliance the compliance (inverse stiffness) of the
+     *            contacts. 0 gives perfectly rigid contacts.
+     */
+    public void setContactCompliance(double contactCompliance) {
+        this.contactCompliance = contactCompliance;
+    }
+
+    /**
+     * A pair of shapes pushed apart during the current substep.
+     */
+    private static class PositionContact {
+
+        final Shape s1, s2;
+
+        /**
+         * The unit normal, pointing from s1 to s2.
+         */
+        final double nx, ny;
+
+        /**
+         * The inverse masses of the shapes, as seen by the solver.
+         */
+        final double w1, w2;
+
+        /**
+         * The size of the position correction.
+         */
+        double lambda;
+
+        double preNormalSpeed;
+
+        PositionContact(Shape s1, Shape s2, double nx, double ny, double w1, double w2) {
+            this.s1 = s1;
+            this.s2 = s2;
+            this.nx = nx;
+            this.ny = ny;
+            this.w1 = w1;
+            this.w2 = w2;
+        }
+
+        /**
+         * @return the speed at which s2 is moving away from s1 along the
+         *         normal.
+         */
+        double getRelativeNormalSpeed() {
+            Vec2D v1 = s1.getVelocity();
+            Vec2D v2 = s2.getVelocity();
+            return ((v2.getX() - v1.getX()) * nx) + ((v2.getY() - v1.getY()) * ny);
+        }
+
+        /**
+         * @return the speed at which s2 is sliding past s1 along the tangent.
+         */
+        double getRelativeTangentSpeed() {
+            Vec2D v1 = s1.getVelocity();
+            Vec2D v2 = s2.getVelocity();
+            return ((v2.getX() - v1.getX()) * -ny) + ((v2.getY() - v1.getY()) * nx);
+        }
+    }
+
+}
@@ -0,0 +1,65 @@
+package phys2d.collisionLogic.forceFields;
+
+import java.util.ArrayList;
+
+import phys2d.collisionLogic.integrators.AccelerationField;
+import phys2d.collisionLogic.integrators.BodyBatch;
+
+/**
+ * Several fields acting at once. The accelerations of every field are just
+ * added together.
+ *
+ * @author afsheen
+ */
+public class CompositeField implements AccelerationField {
+
+    private final ArrayList<AccelerationField> fields;
+
+    private double[] fieldAx, fieldAy;
+
+    public CompositeField() {
+        fields = new ArrayList<AccelerationField>();
+        fieldAx = new double[0];
+        fieldAy = new double[0];
+    }
+
+    /**
+     * @param field the field to add.
+     */
+    public void addField(AccelerationField field) {
+        fields.add(field);
+    }
+
+    /**
+     * @param field the field to remove.
+     */
+    public void removeField(AccelerationField field) {
+        fields.remove(field);
+    }
+
+    @Override
+    public void computeAccelerations(BodyBatch batch, double[] x, double[] y, double[] vx, double[] vy, double[] ax,
+            double[] ay) {
+        int n = batch.size();
+
+        if (fieldAx.length < n) {
+            fieldAx = new double[ax.length];
+            fieldAy = new double[ay.length];
+        }
+
+        for (int i = 0; i < n; i++) {
+            ax[i] = 0;
+            ay[i] = 0;
+        }
+
+        for (AccelerationField field : fields) {
+            field.computeAccelerations(batch, x, y, vx, vy, fieldAx, fieldAy);
+
+            for (int i = 0; i < n; i++) {
+                ax[i] += fieldAx[i];
+                ay[i] += fieldAy[i];
+            }
+        }
+    }
+
+}
@@ -0,0 +1,371 @@
+package phys2d.collisionLogic.forceFields;
+
+import phys2d.collisionLogic.integrators.AccelerationField;
+import phys2d.collisionLogic.integrators.BodyBatch;
+
+/**
+ * Every body pulls on every other body, with a strength proportional to its
+ * mass and falling off with the square of the distance. <br>
+ * Rather than summing over every pair, the bodies are put into a Barnes-Hut
+ * quadtree each time the field is sampled. Each node keeps the total mass and
+ * center of mass of the bodies under it. A body far enough away from a node
+ * only feels the node as a whole, so the cost drops from O(n^2) to O(n log n).
+ * <br>
+ * The tree is laid out the same way as the broadphase
+ * {@link phys2d.collisionLogic.spacePartitioning.QuadTree} (square nodes split
+ * into four children, bottom left first and then clockwise), but kept in flat
+ * arrays so it can be rebuilt every sample without allocating. <br>
+ * Only the bodies being integrated pull on each other, so static and sleeping
+ * shapes have no effect on the field.
+ *
+ * @author afsheen
+ */
+public class NBodyField implements AccelerationField {
+
+    /**
+     * Bodies which end up in the same node at this depth are just summed
+     * directly. Stops coincident bodies from splitting forever.
+     */
+    private static final int MAX_DEPTH = 32;
+
+    private double gravConstant;
+
+    /**
+     * How close a node can be before it has to be opened up. 0 opens every
+     * node, which gives the exact O(n^2) sum.
+     */
+    private double openingAngle;
+
+    private double softening2;
+
+    // The nodes of the tree.
+    private int nodeCount;
+    private double[] minX, minY, size;
+    private double[] mass, comX, comY;
+    /**
+     * The index of the first of the four children of each node, or -1 if the
+     * node is a leaf.
+     */
+    private int[] firstChild;
+    /**
+     * The first body in each leaf, or -1 if the leaf is empty.
+     */
+    private int[] leafBody;
+
+    /**
+     * Links the bodies which share a leaf at the maximum depth.
+     */
+    private int[] nextBody;
+
+    private double[] bodyMass;
+
+    private int[] stack;
+
+    /**
+     * @param gravConstant scales the pull between every pair of bodies.
+     * @param openingAngle the Barnes-Hut opening angle. Around 0.5 is usual.
+     * @param softening the softening length, which keeps the pull between
+     *            close bodies finite.
+     */
+    public NBodyField(double gravConstant, double openingAngle, double softening) {
+        this.gravConstant = gravConstant;
+        this.openingAngle = openingAngle;
+        this.softening2 = softening * softening;
+
+        ensureNodeCapacity(64);
+        nextBody = new int[0];
+        bodyMass = new double[0];
+        stack = new int[(3 * MAX_DEPTH) + 4];
+    }
+
+    @Override
+    public void computeAccelerations(BodyBatch batch, double[] x, double[] y, double[] vx, double[] vy, double[] ax,
+            double[] ay) {
+        int n = batch.size();
+
+        if (n == 0)
+            return;
+
+        buildTree(batch, x, y, n);
+
+        for (int i = 0; i < n; i++) {
+            accumulate(i, x, y, ax, ay);
+        }
+    }
+
+    /**
+     * Put every body into a fresh tree, and work out the mass and center of
+     * mass of every node.
+     *
+     * @param batch the bodies.
+     * @param x the x positions of the bodies.
+     * @param y the y positions of the bodies.
+     * @param n the number of bodies.
+     */
+    private void buildTree(BodyBatch batch, double[] x, double[] y, int n) {
+        if (nextBody.length < n) {
+            nextBody = new int[x.length];
+            bodyMass = new double[x.length];
+        }
+
+        double loX = Double.POSITIVE_INFINITY, loY = Double.POSITIVE_INFINITY;
+        double hiX = Double.NEGATIVE_INFINITY, hiY = Double.NEGATIVE_INFINITY;
+
+        for (int i = 0; i < n; i++) {
+            double invMass = batch.getInvMass(i);
+            bodyMass[i] = invMass > 0 ? 1.0 / invMass : 0;
+
+            loX = Math.min(loX, x[i]);
+            loY = Math.min(loY, y[i]);
+            hiX = Math.max(hiX, x[i]);
+            hiY = Math.max(hiY, y[i]);
+        }
+
+        nodeCount = 0;
+        // Pad it out a bit so the bodies on the edge are strictly inside.
+        int root = newNode(loX, loY, Math.max(hiX - loX, hiY - loY) + 1);
+
+        for (int i = 0; i < n; i++) {
+            if (bodyMass[i] > 0)
+                insert(root, i, x, y);
+        }
+
+        // Turn the mass weighted sums into actual centers of mass.
+        for (int k = 0; k < nodeCount; k++) {
+            if (mass[k] > 0) {
+                comX[k] /= mass[k];
+                comY[k] /= mass[k];
+            }
+        }
+    }
+
+    /**
+     * Insert body i into the tree, adding its mass to every node on the way
+     * down.
+     *
+     * @param root the root node.
+     * @param i the body to insert.
+     * @param x the x positions of the bodies.
+     * @param y the y positions of the bodies.
+     */
+    private void insert(int root, int i, double[] x, double[] y) {
+        int node = root;
+        int depth = 0;
+
+        while (true) {
+            mass[node] += bodyMass[i];
+            comX[node] += bodyMass[i] * x[i];
+            comY[node] += bodyMass[i] * y[i];
+
+            if (firstChild[node] >= 0) {
+                node = firstChild[node] + getQuadrant(node, x[i], y[i]);
+                depth++;
+                continue;
+            }
+
+            if (leafBody[node] < 0) {
+                leafBody[node] = i;
+                nextBody[i] = -1;
+                return;
+            }
+
+            if (depth >= MAX_DEPTH) {
+                nextBody[i] = leafBody[node];
+                leafBody[node] = i;
+                return;
+            }
+
+            // The leaf is taken, so split it and push the old body down.
+            int j = leafBody[node];
+            leafBody[node] = -1;
+            split(node);
+
+            int child = firstChild[node] + getQuadrant(node, x[j], y[j]);
+            leafBody[child] = j;
+            nextBody[j] = -1;
+            mass[child] = bodyMass[j];
+            comX[child] = bodyMass[j] * x[j];
+            comY[child] = bodyMass[j] * y[j];
+
+            node = firstChild[node] + getQuadrant(node, x[i], y[i]);
+            depth++;
+        }
+    }
+
+    /**
+     * Add the pull of every other body on body i to its acceleration.
+     *
+     * @param i the body.
+     * @param x the x positions of the bodies.
+     * @param y the y positions of the bodies.
+     * @param ax the x accelerations of the bodies.
+     * @param ay the y accelerations of the bodies.
+     */
+    private void accumulate(int i, double[] x, double[] y, double[] ax, double[] ay) {
+        double px = x[i], py = y[i];
+        double sumX = 0, sumY = 0;
+        double theta2 = openingAngle * openingAngle;
+
+        int top = 0;
+        stack[top++] = 0;
+
+        while (top > 0) {
+            int k = stack[--top];
+
+            if (mass[k] == 0)
+                continue;
+
+            if (firstChild[k] < 0) {
+                for (int j = leafBody[k]; j >= 0; j = nextBody[j]) {
+                    if (j == i)
+                        continue;
+
+                    double dx = x[j] - px;
+                    double dy = y[j] - py;
+                    double r2 = (dx * dx) + (dy * dy) + softening2;
+                    double scale = bodyMass[j] / (r2 * Math.sqrt(r2));
+
+                    sumX += dx * scale;
+                    sumY += dy * scale;
+                }
+                continue;
+            }
+
+            double dx = comX[k] - px;
+            double dy = comY[k] - py;
+            double d2 = (dx * dx) + (dy * dy);
+
+            // A node holding the body itself always has to be opened.
+            boolean contains = px >= minX[k] && px < minX[k] + size[k] && py >= minY[k] && py < minY[k] + size[k];
+
+            if (!contains && size[k] * size[k] < theta2 * d2) {
+                double r2 = d2 + softening2;
+                double scale = mass[k] / (r2 * Math.sqrt(r2));
+
+                sumX += dx * scale;
+                sumY += dy * scale;
+            }
+            else {
+                for (int c = 0; c < 4; c++) {
+                    stack[top++] = firstChild[k] + c;
+                }
+            }
+        }
+
+        ax[i] = sumX * gravConstant;
+        ay[i] = sumY * gravConstant;
+    }
+
+    /**
+     * Split the node into four children.
+     *
+     * @param node the node to split.
+     */
+    private void split(int node) {
+        double half = size[node] / 2.0;
+        double x0 = minX[node], y0 = minY[node];
+
+        int first = newNode(x0, y0, half); //BL
+        newNode(x0, y0 + half, half); //TL
+        newNode(x0 + half, y0 + half, half); //TR
+        newNode(x0 + half, y0, half); //BR
+
+        firstChild[node] = first;
+    }
+
+    /**
+     * @param node the node.
+     * @param px the x position of the point.
+     * @param py the y position of the point.
+     * @return the child of the node the point falls into.
+     */
+    private int getQuadrant(int node, double px, double py) {
+        double half = size[node] / 2.0;
+        boolean right = px >= minX[node] + half;
+        boolean top = py >= minY[node] + half;
+
+        if (right)
+            return top ? 2 : 3;
+        else
+            return top ? 1 : 0;
+    }
+
+    /**
+     * @param x0 the min x of the node.
+     * @param y0 the min y of the node.
+     * @param side the side length of the node.
+     * @return the index of the new, empty node.
+     */
+    private int newNode(double x0, double y0, double side) {
+        ensureNodeCapacity(nodeCount + 1);
+
+        int k = nodeCount++;
+        minX[k] = x0;
+        minY[k] = y0;
+        size[k] = side;
+        mass[k] = 0;
+        comX[k] = 0;
+        comY[k] = 0;
+        firstChild[k] = -1;
+        leafBody[k] = -1;
+
+        return k;
+    }
+
+    /**
+     * Make sure there's room for at least n nodes.
+     *
+     * @param n the number of nodes.
+     */
+    private void ensureNodeCapacity(int n) {
+        if (minX != null && minX.length >= n)
+            return;
+
+        int capacity = Math.max(n, minX == null ? 0 : minX.length * 2);
+
+        minX = grow(minX, capacity);
+        minY = grow(minY, capacity);
+        size = grow(size, capacity);
+        mass = grow(mass, capacity);
+        comX = grow(comX, capacity);
+        comY = grow(comY, capacity);
+
+        int[] grownChild = new int[capacity];
+        int[] grownLeaf = new int[capacity];
+        if (firstChild != null) {
+            System.arraycopy(firstChild, 0, grownChild, 0, nodeCount);
+            System.arraycopy(leafBody, 0, grownLeaf, 0, nodeCount);
+        }
+        firstChild = grownChild;
+        leafBody = grownLeaf;
+    }
+
+    private double[] grow(double[] array, int capacity) {
+        double[] grown = new double[capacity];
+        if (array != null)
+            System.arraycopy(array, 0, grown, 0, nodeCount);
+        return grown;
+    }
+
+    /**
+     * @param gravConstant scales the pull between every pair of bodies.
+     */
+    public void setGravConstant(double gravConstant) {
+        this.gravConstant = gravConstant;
+    }
+
+    /**
+     * @param openingAngle the Barnes-Hut opening angle. 0 gives the exact sum.
+     */
+    public void setOpeningAngle(double openingAngle) {
+        this.openingAngle = openingAngle;
+    }
+
+    /**
+     * @param softening the softening length.
+     */
+    public void setSoftening(double softening) {
+        this.softening2 = softening * softening;
+    }
+
+}
@@ -0,0 +1,67 @@
+package phys2d.collisionLogic.forceFields;
+
+import phys2d.collisionLogic.integrators.AccelerationField;
+import phys2d.collisionLogic.integrators.BodyBatch;
+import phys2d.entities.Vec2D;
+
+/**
+ * Pulls every body towards a fixed point, falling off with the square of the
+ * distance, like a planet or an attractor. A negative strength pushes bodies
+ * away instead. <br>
+ * The softening length keeps the pull finite when a body passes right over the
+ * center.
+ *
+ * @author afsheen
+ */
+public class RadialField implements AccelerationField {
+
+    private double cx, cy;
+    private double strength;
+    private double softening2;
+
+    /**
+     * @param center the point bodies are pulled towards.
+     * @param strength the acceleration at a distance of 1, ignoring softening.
+     * @param softening the softening length.
+     */
+    public RadialField(Vec2D center, double strength, double softening) {
+        this.cx = center.getX();
+        this.cy = center.getY();
+        this.strength = strength;
+        this.softening2 = softening * softening;
+    }
+
+    @Override
+    public void computeAccelerations(BodyBatch batch, double[] x, double[] y, double[] vx, double[] vy, double[] ax,
+            double[] ay) {
+        int n = batch.size();
+
+        for (int i = 0; i < n; i++) {
+            double dx = cx - x[i];
+            double dy = cy - y[i];
+            double r2 = (dx * dx) + (dy * dy) + softening2;
+
+            // strength / r^2, times the unit vector towards the center.
+            double scale = strength / (r2 * Math.sqrt(r2));
+
+            ax[i] = dx * scale;
+            ay[i] = dy * scale;
+        }
+    }
+
+    /**
+     * @param center the point bodies are pulled towards.
+     */
+    public void setCenter(Vec2D center) {
+        this.cx = center.getX();
+        this.cy = center.getY();
+    }
+
+    /**
+     * @param strength the acceleration at a distance of 1, ignoring softening.
+     */
+    public void setStrength(double strength) {
+        this.strength = strength;
+    }
+
+}
@@ -0,0 +1,45 @@
+package phys2d.collisionLogic.forceFields;
+
+import phys2d.collisionLogic.integrators.AccelerationField;
+import phys2d.collisionLogic.integrators.BodyBatch;
+
+/**
+ * The same acceleration everywhere, like gravity near the ground or a steady
+ * wind.
+ *
+ * @author afsheen
+ */
+public class UniformField implements AccelerationField {
+
+    private double ax, ay;
+
+    /**
+     * @param ax the x component of the acceleration.
+     * @param ay the y component of the acceleration.
+     */
+    public UniformField(double ax, double ay) {
+        this.ax = ax;
+        this.ay = ay;
+    }
+
+    @Override
+    public void computeAccelerations(BodyBatch batch, double[] x, double[] y, double[] vx, double[] vy, double[] ax,
+            double[] ay) {
+        int n = batch.size();
+
+        for (int i = 0; i < n; i++) {
+            ax[i] = this.ax;
+            ay[i] = this.ay;
+        }
+    }
+
+    /**
+     * @param ax the x component of the acceleration.
+     * @param ay the y component of the acceleration.
+     */
+    public void setAcceleration(double ax, double ay) {
+        this.ax = ax;
+        this.ay = ay;
+    }
+
+}
@@ -0,0 +1,65 @@
+package phys2d.collisionLogic.forceFields;
+
+import phys2d.collisionLogic.integrators.AccelerationField;
+import phys2d.collisionLogic.integrators.BodyBatch;
+import phys2d.entities.Vec2D;
+
+/**
+ * Swirls bodies around a fixed point. The push is perpendicular to the line
+ * from the center, anticlockwise for a positive strength, and falls off with
+ * the distance. <br>
+ * The softening length keeps the push finite near the center.
+ *
+ * @author afsheen
+ */
+public class VortexField implements AccelerationField {
+
+    private double cx, cy;
+    private double strength;
+    private double softening2;
+
+    /**
+     * @param center the point bodies swirl around.
+     * @param strength the acceleration at a distance of 1, ignoring softening.
+     * @param softening the softening length.
+     */
+    public VortexField(Vec2D center, double strength, double softening) {
+        this.cx = center.getX();
+        this.cy = center.getY();
+        this.strength = strength;
+        this.softening2 = softening * softening;
+    }
+
+    @Override
+    public void computeAccelerations(BodyBatch batch, double[] x, double[] y, double[] vx, double[] vy, double[] ax,
+            double[] ay) {
+        int n = batch.size();
+
+        for (int i = 0; i < n; i++) {
+            double dx = x[i] - cx;
+            double dy = y[i] - cy;
+
+            // strength / r, along the unit tangent.
+            double scale = strength / ((dx * dx) + (dy * dy) + softening2);
+
+            ax[i] = -dy * scale;
+            ay[i] = dx * scale;
+        }
+    }
+
+    /**
+     * @param center the point bodies swirl around.
+     */
+    public void setCenter(Vec2D center) {
+        this.cx = center.getX();
+        this.cy = center.getY();
+    }
+
+    /**
+     * @param strength the acceleration at a distance of 1, ignoring softening.
+     */
+    public void setStrength(double strength) {
+        this.strength = strength;
+    }
+
+}
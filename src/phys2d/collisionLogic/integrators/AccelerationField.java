@@ -0,0 +1,28 @@
+package phys2d.collisionLogic.integrators;
+
+/**
+ * An acceleration which depends on where the bodies are and how they're
+ * moving, such as a force field. Integrators sample it as many times per step
+ * as their scheme needs.
+ *
+ * @author afsheen
+ */
+public interface AccelerationField {
+
+    /**
+     * Compute the acceleration of every body in the batch, given the state
+     * passed in. The state isn't necessarily the one stored in the batch,
+     * since integrators also sample in between.
+     *
+     * @param batch the bodies being integrated.
+     * @param x the x positions of the bodies.
+     * @param y the y positions of the bodies.
+     * @param vx the x velocities of the bodies.
+     * @param vy the y velocities of the bodies.
+     * @param ax filled with the x accelerations of the bodies.
+     * @param ay filled with the y accelerations of the bodies.
+     */
+    public void computeAccelerations(BodyBatch batch, double[] x, double[] y, double[] vx, double[] vy, double[] ax,
+            double[] ay);
+
+}
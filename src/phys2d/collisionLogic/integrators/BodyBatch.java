@@ -0,0 +1,168 @@
+package phys2d.collisionLogic.integrators;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import phys2d.entities.Vec2D;
+import phys2d.entities.shapes.Shape;
+
+/**
+ * The state of a batch of bodies, laid out in flat arrays so integrators can
+ * run over all of them in a single loop. <br>
+ * A batch is loaded from a list of shapes, integrated, and then stored back
+ * into the same shapes. The arrays only ever grow, so a batch can be reused
+ * every tick without allocating.
+ *
+ * @author afsheen
+ */
+public class BodyBatch {
+
+    private final ArrayList<Shape> bodies;
+
+    private int count;
+
+    double[] x, y;
+    double[] vx, vy;
+
+    /**
+     * The velocity change from the impulses each body gathered before the
+     * step.
+     */
+    double[] dvx, dvy;
+
+    double[] invMass;
+
+    /**
+     * Scratch space for the integrators.
+     */
+    double[][] scratch;
+
+    public BodyBatch() {
+        bodies = new ArrayList<Shape>();
+        ensureCapacity(16);
+    }
+
+    /**
+     * Load the state of the shapes into the batch, replacing what was there.
+     *
+     * @param shapes the shapes to integrate.
+     */
+    public void load(List<Shape> shapes) {
+        bodies.clear();
+        bodies.addAll(shapes);
+        count = bodies.size();
+
+        ensureCapacity(count);
+
+        for (int i = 0; i < count; i++) {
+            Shape s = bodies.get(i);
+            Vec2D com = s.getCOM();
+            Vec2D vel = s.getVelocity();
+            Vec2D netForce = s.getNetForce();
+
+            x[i] = com.getX();
+            y[i] = com.getY();
+            vx[i] = vel.getX();
+            vy[i] = vel.getY();
+            invMass[i] = s.getInvMass();
+            dvx[i] = netForce.getX() * invMass[i];
+            dvy[i] = netForce.getY() * invMass[i];
+        }
+    }
+
+    /**
+     * Write the integrated state back into the shapes the batch was loaded
+     * from, after a step of a whole tick.
+     */
+    public void store() {
+        store(1.0);
+    }
+
+    /**
+     * Write the integrated state back into the shapes the batch was loaded
+     * from.
+     *
+     * @param ticks how many ticks the step covered, see
+     *            {@link Shape#setIntegratedState(double, double, double, double, double)}.
+     */
+    public void store(double ticks) {
+        for (int i = 0; i < count; i++) {
+            bodies.get(i).setIntegratedState(x[i], y[i], vx[i], vy[i], ticks);
+        }
+    }
+
+    /**
+     * Sample a field at the state the batch was loaded with.
+     *
+     * @param field the field to sample.
+     * @param ax filled with the x accelerations of the bodies.
+     * @param ay filled with the y accelerations of the bodies.
+     */
+    public void computeAccelerations(AccelerationField field, double[] ax, double[] ay) {
+        field.computeAccelerations(this, x, y, vx, vy, ax, ay);
+    }
+
+    /**
+     * @return the number of bodies in the batch.
+     */
+    public int size() {
+        return count;
+    }
+
+    /**
+     * @param i the index of the body.
+     * @return the shape at index i of the batch.
+     */
+    public Shape getBody(int i) {
+        return bodies.get(i);
+    }
+
+    /**
+     * @param i the index of the body.
+     * @return the inverse mass of the body at index i.
+     */
+    public double getInvMass(int i) {
+        return invMass[i];
+    }
+
+    /**
+     * Get a scratch array which is at least as long as the batch.
+     *
+     * @param index which scratch array to get.
+     * @return the scratch array.
+     */
+    double[] getScratch(int index) {
+        if (scratch.length <= index) {
+            double[][] grown = new double[index + 1][];
+            System.arraycopy(scratch, 0, grown, 0, scratch.length);
+            scratch = grown;
+        }
+
+        if (scratch[index] == null || scratch[index].length < x.length)
+            scratch[index] = new double[x.length];
+
+        return scratch[index];
+    }
+
+    /**
+     * Make sure every array can hold at least n bodies.
+     *
+     * @param n the number of bodies.
+     */
+    private void ensureCapacity(int n) {
+        if (x != null && x.length >= n)
+            return;
+
+        int capacity = Math.max(n, x == null ? 0 : x.length * 2);
+
+        x = new double[capacity];
+        y = new double[capacity];
+        vx = new double[capacity];
+        vy = new double[capacity];
+        dvx = new double[capacity];
+        dvy = new double[capacity];
+        invMass = new double[capacity];
+        scratch = new double[0][];
+    }
+
+}
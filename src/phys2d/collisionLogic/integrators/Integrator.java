@@ -0,0 +1,23 @@
+package phys2d.collisionLogic.integrators;
+
+/**
+ * Moves a whole batch of bodies forward in time. <br>
+ * The impulses already gathered by each body are applied at the start of the
+ * step. The acceleration field (if any) is then integrated over the step using
+ * whichever scheme the integrator implements.
+ *
+ * @author afsheen
+ */
+public interface Integrator {
+
+    /**
+     * Integrate every body in the batch by dt.
+     *
+     * @param batch the bodies to integrate.
+     * @param field the accelerations acting on the bodies during the step. May
+     *            be null if there are none.
+     * @param dt the time to integrate by.
+     */
+    public void integrate(BodyBatch batch, AccelerationField field, double dt);
+
+}
@@ -0,0 +1,89 @@
+package phys2d.collisionLogic.integrators;
+
+/**
+ * The classic 4th order Runge-Kutta method. Samples the acceleration field 4
+ * times per step, so it's the most expensive, but also by far the most
+ * accurate for fields which change quickly over space. <br>
+ * Without an acceleration field this is the same as semi-implicit Euler.
+ *
+ * @author afsheen
+ */
+public class RungeKutta4 implements Integrator {
+
+    @Override
+    public void integrate(BodyBatch batch, AccelerationField field, double dt) {
+        int n = batch.size();
+
+        double[] x = batch.x, y = batch.y, vx = batch.vx, vy = batch.vy;
+        double[] dvx = batch.dvx, dvy = batch.dvy;
+
+        // The impulses act at the very start of the step.
+        for (int i = 0; i < n; i++) {
+            vx[i] += dvx[i];
+            vy[i] += dvy[i];
+        }
+
+        if (field == null) {
+            for (int i = 0; i < n; i++) {
+                x[i] += vx[i] * dt;
+                y[i] += vy[i] * dt;
+            }
+            return;
+        }
+
+        // The intermediate state, and the sums of the weighted derivatives.
+        double[] sx = batch.getScratch(0), sy = batch.getScratch(1);
+        double[] svx = batch.getScratch(2), svy = batch.getScratch(3);
+        double[] ax = batch.getScratch(4), ay = batch.getScratch(5);
+        double[] sumVx = batch.getScratch(6), sumVy = batch.getScratch(7);
+        double[] sumAx = batch.getScratch(8), sumAy = batch.getScratch(9);
+
+        // k1, at the start of the step.
+        field.computeAccelerations(batch, x, y, vx, vy, ax, ay);
+
+        for (int i = 0; i < n; i++) {
+            sumVx[i] = vx[i];
+            sumVy[i] = vy[i];
+            sumAx[i] = ax[i];
+            sumAy[i] = ay[i];
+        }
+
+        // k2 and k3, both halfway through the step. Then k4 at the end.
+        double[] weights = { 0.5, 0.5, 1.0 };
+        double[] sumWeights = { 2.0, 2.0, 1.0 };
+
+        for (int k = 0; k < weights.length; k++) {
+            double h = dt * weights[k];
+
+            // ax, ay and svx, svy still hold the previous derivative.
+            for (int i = 0; i < n; i++) {
+                double prevVx = (k == 0) ? vx[i] : svx[i];
+                double prevVy = (k == 0) ? vy[i] : svy[i];
+
+                sx[i] = x[i] + (prevVx * h);
+                sy[i] = y[i] + (prevVy * h);
+                svx[i] = vx[i] + (ax[i] * h);
+                svy[i] = vy[i] + (ay[i] * h);
+            }
+
+            field.computeAccelerations(batch, sx, sy, svx, svy, ax, ay);
+
+            for (int i = 0; i < n; i++) {
+                sumVx[i] += svx[i] * sumWeights[k];
+                sumVy[i] += svy[i] * sumWeights[k];
+                sumAx[i] += ax[i] * sumWeights[k];
+                sumAy[i] += ay[i] * sumWeights[k];
+            }
+        }
+
+        double sixthDt = dt / 6.0;
+
+        for (int i = 0; i < n; i++) {
+            x[i] += sumVx[i] * sixthDt;
+            y[i] += sumVy[i] * sixthDt;
+            vx[i] += sumAx[i] * sixthDt;
+            vy[i] += sumAy[i] * sixthDt;
+        }
+    }
+
+}
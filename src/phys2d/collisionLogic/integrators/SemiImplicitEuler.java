@@ -0,0 +1,40 @@
+package phys2d.collisionLogic.integrators;
+
+/**
+ * Semi-implicit (symplectic) Euler. The velocity is updated first, and the
+ * new velocity is then used to move the body. This is what the shapes have
+ * always used.
+ *
+ * @author afsheen
+ */
+public class SemiImplicitEuler implements Integrator {
+
+    @Override
+    public void integrate(BodyBatch batch, AccelerationField field, double dt) {
+        int n = batch.size();
+
+        double[] x = batch.x, y = batch.y, vx = batch.vx, vy = batch.vy;
+        double[] dvx = batch.dvx, dvy = batch.dvy;
+
+        if (field != null) {
+            double[] ax = batch.getScratch(0), ay = batch.getScratch(1);
+            field.computeAccelerations(batch, x, y, vx, vy, ax, ay);
+
+            for (int i = 0; i < n; i++) {
+                vx[i] += dvx[i] + (ax[i] * dt);
+                vy[i] += dvy[i] + (ay[i] * dt);
+                x[i] += vx[i] * dt;
+                y[i] += vy[i] * dt;
+            }
+        }
+        else {
+            for (int i = 0; i < n; i++) {
+                vx[i] += dvx[i];
+                vy[i] += dvy[i];
+                x[i] += vx[i] * dt;
+                y[i] += vy[i] * dt;
+            }
+        }
+    }
+
+}
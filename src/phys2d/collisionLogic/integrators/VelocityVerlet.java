@@ -0,0 +1,57 @@
+package phys2d.collisionLogic.integrators;
+
+/**
+ * Velocity Verlet. The position is advanced with the acceleration at the start
+ * of the step, and the velocity with the average of the accelerations at the
+ * start and end of the step. Second order accurate, and keeps orbits and
+ * springs from gaining energy. <br>
+ * Without an acceleration field this is the same as semi-implicit Euler.
+ *
+ * @author afsheen
+ */
+public class VelocityVerlet implements Integrator {
+
+    @Override
+    public void integrate(BodyBatch batch, AccelerationField field, double dt) {
+        int n = batch.size();
+
+        double[] x = batch.x, y = batch.y, vx = batch.vx, vy = batch.vy;
+        double[] dvx = batch.dvx, dvy = batch.dvy;
+
+        // The impulses act at the very start of the step.
+        for (int i = 0; i < n; i++) {
+            vx[i] += dvx[i];
+            vy[i] += dvy[i];
+        }
+
+        if (field == null) {
+            for (int i = 0; i < n; i++) {
+                x[i] += vx[i] * dt;
+                y[i] += vy[i] * dt;
+            }
+            return;
+        }
+
+        double[] ax0 = batch.getScratch(0), ay0 = batch.getScratch(1);
+        double[] ax1 = batch.getScratch(2), ay1 = batch.getScratch(3);
+
+        field.computeAccelerations(batch, x, y, vx, vy, ax0, ay0);
+
+        double halfDt2 = 0.5 * dt * dt;
+
+        for (int i = 0; i < n; i++) {
+            x[i] += (vx[i] * dt) + (ax0[i] * halfDt2);
+            y[i] += (vy[i] * dt) + (ay0[i] * halfDt2);
+        }
+
+        field.computeAccelerations(batch, x, y, vx, vy, ax1, ay1);
+
+        double halfDt = 0.5 * dt;
+
+        for (int i = 0; i < n; i++) {
+            vx[i] += (ax0[i] + ax1[i]) * halfDt;
+            vy[i] += (ay0[i] + ay1[i]) * halfDt;
+        }
+    }
+
+}
@@ -0,0 +1,787 @@
+package phys2d.collisionLogic.particles;
+
+import java.awt.Graphics2D;
+import java.util.ArrayList;
+
+import phys2d.Phys2DMain;
+import phys2d.entities.Material;
+import phys2d.entities.MaterialPairTable;
+import phys2d.entities.Vec2D;
+import phys2d.entities.shapes.Circle;
+import phys2d.entities.shapes.Shape;
+
+/**
+ * A large number of small circular grains, simulated alongside the rigid
+ * bodies. <br>
+ * Particles aren't shapes. They're just rows in flat arrays, with no
+ * vertices, AABBs or support functions, so there can be far more of them.
+ * Every particle is made of the same material. <br>
+ * Each step, the particles are binned into a uniform grid with a counting
+ * sort, and the arrays themselves are reordered by cell, so neighbouring
+ * particles sit next to each other in memory. Because of this, the index of
+ * a particle is only valid until the next step. <br>
+ * Particles collide with each other using a plain radius test, and with the
+ * rigid bodies using a closed form circle or convex polygon test. Awake
+ * bodies are pushed back by the particles. Static and sleeping bodies are
+ * treated as immovable.
+ *
+ * @author afsheen
+ */
+public class ParticleSystem {
+
+    private final Material material;
+
+    /**
+     * The largest radius a particle can have. Sets the size of the grid cells.
+     */
+    private final double maxRadius;
+
+    private int count;
+
+    private double[] x, y, vx, vy;
+    private double[] prevX, prevY;
+    private double[] radius, invMass;
+
+    /**
+     * Where the particles are copied to while they're sorted. Swapped with the
+     * arrays above after each sort.
+     */
+    private double[] sortX, sortY, sortVX, sortVY;
+    private double[] sortPrevX, sortPrevY;
+    private double[] sortRadius, sortInvMass;
+
+    // The grid.
+    private double gridMinX, gridMinY, cellSize;
+    private int cellsX, cellsY;
+    private int[] cellOf;
+    /**
+     * The particles in cell c are the ones from cellStart[c] up to, but not
+     * including, cellStart[c + 1].
+     */
+    private int[] cellStart;
+    private int[] cellCursor;
+
+    /**
+     * The rigid bodies which overlap the particle grid this step.
+     */
+    private final ArrayList<BodyProxy> proxies;
+    private int proxyCount;
+
+    private int iterations = 2;
+
+    /**
+     * The direction of the sliding, as found by {@link #computeFriction}.
+     */
+    private double frictionX, frictionY;
+
+    /**
+     * Create an empty particle system.
+     *
+     * @param material the material every particle is made of.
+     * @param maxRadius the largest radius a particle can have.
+     */
+    public ParticleSystem(Material material, double maxRadius) {
+        this.material = material;
+        this.maxRadius = maxRadius;
+
+        proxies = new ArrayList<BodyProxy>();
+        cellStart = new int[2];
+        cellCursor = new int[1];
+        ensureCapacity(64);
+    }
+
+    /**
+     * Add a particle.
+     *
+     * @param px the x position of the particle.
+     * @param py the y position of the particle.
+     * @param pvx the x velocity of the particle.
+     * @param pvy the y velocity of the particle.
+     * @param r the radius of the particle. Clamped to the max radius.
+     */
+    public void addParticle(double px, double py, double pvx, double pvy, double r) {
+        ensureCapacity(count + 1);
+
+        r = Math.min(r, maxRadius);
+
+        x[count] = px;
+        y[count] = py;
+        prevX[count] = px;
+        prevY[count] = py;
+        vx[count] = pvx;
+        vy[count] = pvy;
+        radius[count] = r;
+
+        // Same mass as a circle of the same radius and material
+        double area = Math.PI * (r * r);
+        area /= 10000.0; // unit conversion cm^2 -> m^2
+        invMass[count] = 1.0 / (area * material.getDensity());
+
+        count++;
+    }
+
+    /**
+     * Remove every particle.
+     */
+    public void clear() {
+        count = 0;
+    }
+
+    /**
+     * Move every particle forward by dt, and resolve its contacts with the
+     * other particles and with the bodies. <br>
+     * Like the {@link phys2d.collisionLogic.collisionManagers.XPBDManager},
+     * the contacts are solved on the positions, and the velocities are then
+     * worked out from how far each particle actually moved. So deep piles
+     * settle without needing lots of iterations. Particle contacts don't
+     * bounce.
+     *
+     * @param bodies the rigid bodies in the world.
+     * @param g the force of gravity.
+     * @param dt the time to step by.
+     */
+    public void step(ArrayList<Shape> bodies, double g, double dt) {
+        if (count == 0)
+            return;
+
+        for (int i = 0; i < count; i++) {
+            prevX[i] = x[i];
+            prevY[i] = y[i];
+
+            vy[i] += g * dt;
+            x[i] += vx[i] * dt;
+            y[i] += vy[i] * dt;
+        }
+
+        buildGrid();
+        gatherBodies(bodies, dt);
+
+        for (int k = 0; k < iterations; k++) {
+            solveParticles();
+            solveBodies();
+        }
+
+        for (int i = 0; i < count; i++) {
+            vx[i] = (x[i] - prevX[i]) / dt;
+            vy[i] = (y[i] - prevY[i]) / dt;
+        }
+
+        // The bodies get the momentum it would have taken to move them as far
+        // as the particles pushed them.
+        for (int p = 0; p < proxyCount; p++) {
+            BodyProxy proxy = proxies.get(p);
+
+            if (proxy.offsetX != 0 || proxy.offsetY != 0) {
+                double mass = proxy.body.getMass();
+                proxy.body.addForce(proxy.offsetX * mass / dt, proxy.offsetY * mass / dt);
+            }
+        }
+    }
+
+    /**
+     * Bin every particle into the grid with a counting sort, and reorder the
+     * particle arrays to match.
+     */
+    private void buildGrid() {
+        double loX = Double.POSITIVE_INFINITY, loY = Double.POSITIVE_INFINITY;
+        double hiX = Double.NEGATIVE_INFINITY, hiY = Double.NEGATIVE_INFINITY;
+
+        for (int i = 0; i < count; i++) {
+            loX = Math.min(loX, x[i]);
+            loY = Math.min(loY, y[i]);
+            hiX = Math.max(hiX, x[i]);
+            hiY = Math.max(hiY, y[i]);
+        }
+
+        // Cells have to be at least as wide as the widest pair of particles.
+        // If a few particles have flown off, the cells grow so the grid
+        // doesn't get huge and empty.
+        cellSize = 2 * maxRadius;
+        int maxCells = Math.max(1024, 2 * count);
+        double w = hiX - loX, h = hiY - loY;
+
+        while (((w / cellSize) + 1) * ((h / cellSize) + 1) > maxCells) {
+            cellSize *= 2;
+        }
+
+        gridMinX = loX;
+        gridMinY = loY;
+        cellsX = (int) (w / cellSize) + 1;
+        cellsY = (int) (h / cellSize) + 1;
+
+        int cells = cellsX * cellsY;
+
+        if (cellStart.length < cells + 1) {
+            cellStart = new int[cells + 1];
+            cellCursor = new int[cells];
+        }
+
+        for (int c = 0; c <= cells; c++) {
+            cellStart[c] = 0;
+        }
+
+        for (int i = 0; i < count; i++) {
+            int cx = (int) ((x[i] - gridMinX) / cellSize);
+            int cy = (int) ((y[i] - gridMinY) / cellSize);
+            int c = (cy * cellsX) + cx;
+
+            cellOf[i] = c;
+            cellStart[c + 1]++;
+        }
+
+        for (int c = 0; c < cells; c++) {
+            cellStart[c + 1] += cellStart[c];
+            cellCursor[c] = cellStart[c];
+        }
+
+        for (int i = 0; i < count; i++) {
+            int dst = cellCursor[cellOf[i]]++;
+
+            sortX[dst] = x[i];
+            sortY[dst] = y[i];
+            sortVX[dst] = vx[i];
+            sortVY[dst] = vy[i];
+            sortPrevX[dst] = prevX[i];
+            sortPrevY[dst] = prevY[i];
+            sortRadius[dst] = radius[i];
+            sortInvMass[dst] = invMass[i];
+        }
+
+        double[] t;
+        t = x;
+        x = sortX;
+        sortX = t;
+        t = y;
+        y = sortY;
+        sortY = t;
+        t = vx;
+        vx = sortVX;
+        sortVX = t;
+        t = vy;
+        vy = sortVY;
+        sortVY = t;
+        t = prevX;
+        prevX = sortPrevX;
+        sortPrevX = t;
+        t = prevY;
+        prevY = sortPrevY;
+        sortPrevY = t;
+        t = radius;
+        radius = sortRadius;
+        sortRadius = t;
+        t = invMass;
+        invMass = sortInvMass;
+        sortInvMass = t;
+    }
+
+    /**
+     * Resolve every touching pair of particles once. Each cell is checked
+     * against itself and half of its neighbours, so every pair is only seen
+     * once.
+     */
+    private void solveParticles() {
+        double staticFric = MaterialPairTable.getStaticFriction(material, material);
+        double dynFric = MaterialPairTable.getDynamicFriction(material, material);
+
+        for (int cy = 0; cy < cellsY; cy++) {
+            for (int cx = 0; cx < cellsX; cx++) {
+                int c = (cy * cellsX) + cx;
+                int start = cellStart[c], end = cellStart[c + 1];
+
+                if (start == end)
+                    continue;
+
+                for (int i = start; i < end; i++) {
+                    for (int j = i + 1; j < end; j++) {
+                        solvePair(i, j, staticFric, dynFric);
+                    }
+                }
+
+                // Right, and the three cells above.
+                solveCells(start, end, cx + 1, cy, staticFric, dynFric);
+                solveCells(start, end, cx - 1, cy + 1, staticFric, dynFric);
+                solveCells(start, end, cx, cy + 1, staticFric, dynFric);
+                solveCells(start, end, cx + 1, cy + 1, staticFric, dynFric);
+            }
+        }
+    }
+
+    /**
+     * Resolve the particles from start to end against every particle in the
+     * cell at (cx, cy), if there is such a cell.
+     */
+    private void solveCells(int start, int end, int cx, int cy, double staticFric, double dynFric) {
+        if (cx < 0 || cx >= cellsX || cy >= cellsY)
+            return;
+
+        int c = (cy * cellsX) + cx;
+        int otherStart = cellStart[c], otherEnd = cellStart[c + 1];
+
+        for (int i = start; i < end; i++) {
+            for (int j = otherStart; j < otherEnd; j++) {
+                solvePair(i, j, staticFric, dynFric);
+            }
+        }
+    }
+
+    /**
+     * Push particles i and j apart if they overlap, and hold back how far they
+     * slid past each other this step.
+     */
+    private void solvePair(int i, int j, double staticFric, double dynFric) {
+        double dx = x[j] - x[i];
+        double dy = y[j] - y[i];
+        double rs = radius[i] + radius[j];
+        double d2 = (dx * dx) + (dy * dy);
+
+        if (d2 >= rs * rs)
+            return;
+
+        double d = Math.sqrt(d2);
+        double nx, ny;
+
+        if (d > 0) {
+            nx = dx / d;
+            ny = dy / d;
+        }
+        else {
+            // Right on top of each other, so just pick a direction.
+            nx = 0;
+            ny = 1;
+        }
+
+        double wi = invMass[i], wj = invMass[j];
+        double w = wi + wj;
+        double depth = rs - d;
+
+        // How far j moved past i this step, along the contact.
+        double mx = (x[j] - prevX[j]) - (x[i] - prevX[i]);
+        double my = (y[j] - prevY[j]) - (y[i] - prevY[i]);
+        double slide = -computeFriction(mx, my, nx, ny, depth, staticFric, dynFric);
+
+        double corrX = (nx * depth) + (frictionX * slide);
+        double corrY = (ny * depth) + (frictionY * slide);
+
+        x[i] -= corrX * wi / w;
+        y[i] -= corrY * wi / w;
+        x[j] += corrX * wj / w;
+        y[j] += corrY * wj / w;
+    }
+
+    /**
+     * Work out how much of the sliding along a contact friction takes away.
+     * The direction of the sliding is left in frictionX and frictionY.
+     *
+     * @param mx the x relative movement of the second object to the first.
+     * @param my the y relative movement of the second object to the first.
+     * @param nx the x component of the normal, pointing from the first object
+     *            to the second.
+     * @param ny the y component of the normal.
+     * @param depth how far the objects overlap.
+     * @param staticFric the static friction coefficient of the pair.
+     * @param dynFric the dynamic friction coefficient of the pair.
+     * @return how far to move the second object back along the sliding
+     *         direction, relative to the first.
+     */
+    private double computeFriction(double mx, double my, double nx, double ny, double depth, double staticFric,
+            double dynFric) {
+        double mn = (mx * nx) + (my * ny);
+        double tx = mx - (mn * nx);
+        double ty = my - (mn * ny);
+        double slide = Math.sqrt((tx * tx) + (ty * ty));
+
+        if (slide < 1e-12) {
+            frictionX = 0;
+            frictionY = 0;
+            return 0;
+        }
+
+        frictionX = tx / slide;
+        frictionY = ty / slide;
+
+        // Small enough to stick, otherwise it only gets slowed down.
+        if (slide < staticFric * depth)
+            return slide;
+        else
+            return Math.min(slide, dynFric * depth);
+    }
+
+    /**
+     * Get a proxy for every body which overlaps the particle grid.
+     *
+     * @param bodies the rigid bodies in the world.
+     * @param dt the time being stepped by.
+     */
+    private void gatherBodies(ArrayList<Shape> bodies, double dt) {
+        proxyCount = 0;
+
+        double gridMaxX = gridMinX + (cellsX * cellSize);
+        double gridMaxY = gridMinY + (cellsY * cellSize);
+
+        for (Shape s : bodies) {
+            double loX = s.getAABBMinX() - maxRadius, loY = s.getAABBMinY() - maxRadius;
+            double hiX = s.getAABBMaxX() + maxRadius, hiY = s.getAABBMaxY() + maxRadius;
+
+            if (loX > gridMaxX || hiX < gridMinX || loY > gridMaxY || hiY < gridMinY)
+                continue;
+
+            if (proxyCount == proxies.size())
+                proxies.add(new BodyProxy());
+
+            BodyProxy proxy = proxies.get(proxyCount++);
+            proxy.load(s, dt);
+
+            proxy.minCellX = Math.max(0, (int) ((loX - gridMinX) / cellSize));
+            proxy.minCellY = Math.max(0, (int) ((loY - gridMinY) / cellSize));
+            proxy.maxCellX = Math.min(cellsX - 1, (int) ((hiX - gridMinX) / cellSize));
+            proxy.maxCellY = Math.min(cellsY - 1, (int) ((hiY - gridMinY) / cellSize));
+        }
+    }
+
+    /**
+     * Resolve the contacts between the particles and the bodies. Bodies which
+     * can move are pushed back by the particles, in proportion to their
+     * masses.
+     */
+    private void solveBodies() {
+        for (int p = 0; p < proxyCount; p++) {
+            BodyProxy proxy = proxies.get(p);
+
+            double staticFric = MaterialPairTable.getStaticFriction(material, proxy.body.getMaterial());
+            double dynFric = MaterialPairTable.getDynamicFriction(material, proxy.body.getMaterial());
+
+            for (int cy = proxy.minCellY; cy <= proxy.maxCellY; cy++) {
+                int start = cellStart[(cy * cellsX) + proxy.minCellX];
+                int end = cellStart[(cy * cellsX) + proxy.maxCellX + 1];
+
+                // The cells of a row are next to each other, so the whole
+                // row is one run of particles.
+                for (int i = start; i < end; i++) {
+                    if (!proxy.findContact(x[i], y[i], radius[i]))
+                        continue;
+
+                    // The normal points from the body to the particle.
+                    double nx = proxy.normalX, ny = proxy.normalY;
+                    double depth = proxy.depth;
+
+                    double mx = (x[i] - prevX[i]) - proxy.moveX - proxy.offsetX;
+                    double my = (y[i] - prevY[i]) - proxy.moveY - proxy.offsetY;
+                    double slide = -computeFriction(mx, my, nx, ny, depth, staticFric, dynFric);
+
+                    double corrX = (nx * depth) + (frictionX * slide);
+                    double corrY = (ny * depth) + (frictionY * slide);
+
+                    double w = invMass[i] + proxy.invMass;
+
+                    x[i] += corrX * invMass[i] / w;
+                    y[i] += corrY * invMass[i] / w;
+
+                    proxy.offsetX -= corrX * proxy.invMass / w;
+                    proxy.offsetY -= corrY * proxy.invMass / w;
+                }
+            }
+        }
+    }
+
+    /**
+     * Draw every particle.
+     *
+     * @param g2d the graphics to draw with.
+     * @param alpha how far between the last two steps to draw the particles.
+     */
+    public void draw(Graphics2D g2d, double alpha) {
+        g2d.setColor(material.getColor());
+
+        for (int i = 0; i < count; i++) {
+            double r = radius[i];
+            double px = (x[i] * alpha) + (prevX[i] * (1.0 - alpha));
+            double py = (y[i] * alpha) + (prevY[i] * (1.0 - alpha));
+            int size = Math.max(1, (int) (r * 2.0));
+
+            g2d.fillRect((int) Math.round(px - r), Phys2DMain.YRES - (int) Math.round(py + r), size, size);
+        }
+    }
+
+    /**
+     * Make sure there's room for at least n particles.
+     *
+     * @param n the number of particles.
+     */
+    private void ensureCapacity(int n) {
+        if (x != null && x.length >= n)
+            return;
+
+        int capacity = Math.max(n, x == null ? 0 : x.length * 2);
+
+        x = grow(x, capacity);
+        y = grow(y, capacity);
+        vx = grow(vx, capacity);
+        vy = grow(vy, capacity);
+        prevX = grow(prevX, capacity);
+        prevY = grow(prevY, capacity);
+        radius = grow(radius, capacity);
+        invMass = grow(invMass, capacity);
+
+        sortX = new double[capacity];
+        sortY = new double[capacity];
+        sortVX = new double[capacity];
+        sortVY = new double[capacity];
+        sortPrevX = new double[capacity];
+        sortPrevY = new double[capacity];
+        sortRadius = new double[capacity];
+        sortInvMass = new double[capacity];
+
+        cellOf = new int[capacity];
+    }
+
+    private double[] grow(double[] array, int capacity) {
+        double[] grown = new double[capacity];
+        if (array != null)
+            System.arraycopy(array, 0, grown, 0, count);
+        return grown;
+    }
+
+    /**
+     * @return the number of particles.
+     */
+    public int size() {
+        return count;
+    }
+
+    /**
+     * @param i the index of the particle.
+     * @return the x position of the particle.
+     */
+    public double getX(int i) {
+        return x[i];
+    }
+
+    /**
+     * @param i the index of the particle.
+     * @return the y position of the particle.
+     */
+    public double getY(int i) {
+        return y[i];
+    }
+
+    /**
+     * @param i the index of the particle.
+     * @return the mass of the particle.
+     */
+    public double getMass(int i) {
+        return 1.0 / invMass[i];
+    }
+
+    /**
+     * @param i the index of the particle.
+     * @return the x velocity of the particle.
+     */
+    public double getVelocityX(int i) {
+        return vx[i];
+    }
+
+    /**
+     * @param i the index of the particle.
+     * @return the y velocity of the particle.
+     */
+    public double getVelocityY(int i) {
+        return vy[i];
+    }
+
+    /**
+     * @return the material every particle is made of.
+     */
+    public Material getMaterial() {
+        return material;
+    }
+
+    /**
+     * Set how many times the contacts are resolved per step. More iterations
+     * make piles stiffer, at a cost.
+     *
+     * @param iterations the number of iterations.
+     */
+    public void setIterations(int iterations) {
+        this.iterations = iterations;
+    }
+
+    /**
+     * A snapshot of a rigid body, taken at the start of the particle step, in a
+     * form that's quick to test particles against. <br>
+     * The body isn't actually moved while the particles push on it. Instead,
+     * the proxy keeps track of how far it's been pushed, and tests the
+     * particles against the body shifted by that much.
+     */
+    private static class BodyProxy {
+
+        Shape body;
+
+        double invMass;
+
+        /**
+         * How far the body moved this step.
+         */
+        double moveX, moveY;
+
+        boolean isCircle;
+        double cx, cy, circleRadius;
+
+        /**
+         * The vertices of the polygon, and the outward unit normals of its
+         * edges. Edge k goes from vertex k to vertex k + 1.
+         */
+        int vertexCount;
+        double[] vertX = new double[8], vertY = new double[8];
+        double[] edgeNX = new double[8], edgeNY = new double[8];
+
+        int minCellX, minCellY, maxCellX, maxCellY;
+
+        /**
+         * How far the particles have pushed the body so far.
+         */
+        double offsetX, offsetY;
+
+        /**
+         * Set by {@link #findContact}.
+         */
+        double normalX, normalY, depth;
+
+        void load(Shape s, double dt) {
+            body = s;
+            offsetX = 0;
+            offsetY = 0;
+
+            // Static and sleeping bodies, and bodies sitting out the tick,
+            // don't get pushed around. A body taking a longer step moved by
+            // all of it.
+            boolean movable = !s.isStatic() && !s.isAsleep() && !s.isLowDetail();
+            invMass = movable ? s.getInvMass() : 0;
+            moveX = movable ? s.getVelocity().getX() * dt * s.getStepTicks() : 0;
+            moveY = movable ? s.getVelocity().getY() * dt * s.getStepTicks() : 0;
+
+            Vec2D com = s.getCOM();
+            cx = com.getX();
+            cy = com.getY();
+
+            isCircle = s instanceof Circle;
+
+            if (isCircle) {
+                circleRadius = ((Circle) s).getRadius();
+                return;
+            }
+
+            Vec2D[] points = s.getPoints();
+            vertexCount = points.length;
+
+            if (vertX.length < vertexCount) {
+                vertX = new double[vertexCount];
+                vertY = new double[vertexCount];
+                edgeNX = new double[vertexCount];
+                edgeNY = new double[vertexCount];
+            }
+
+            for (int k = 0; k < vertexCount; k++) {
+                vertX[k] = points[k].getX();
+                vertY[k] = points[k].getY();
+            }
+
+            for (int k = 0; k < vertexCount; k++) {
+                int next = (k + 1) % vertexCount;
+                double ex = vertX[next] - vertX[k];
+                double ey = vertY[next] - vertY[k];
+                double len = Math.sqrt((ex * ex) + (ey * ey));
+
+                double nx = ey / len, ny = -ex / len;
+
+                // Whichever way the vertices wind, the normal should face
+                // away from the center.
+                if (((vertX[k] - cx) * nx) + ((vertY[k] - cy) * ny) < 0) {
+                    nx = -nx;
+                    ny = -ny;
+                }
+
+                edgeNX[k] = nx;
+                edgeNY[k] = ny;
+            }
+        }
+
+        /**
+         * Check whether a particle touches the body, and if it does, find the
+         * normal and depth of the contact.
+         *
+         * @param px the x position of the particle.
+         * @param py the y position of the particle.
+         * @param r the radius of the particle.
+         * @return true if the particle touches the body.
+         */
+        boolean findContact(double px, double py, double r) {
+            // Shift the particle instead of the body.
+            px -= offsetX;
+            py -= offsetY;
+
+            if (isCircle) {
+                double dx = px - cx, dy = py - cy;
+                double rs = r + circleRadius;
+                double d2 = (dx * dx) + (dy * dy);
+
+                if (d2 >= rs * rs)
+                    return false;
+
+                double d = Math.sqrt(d2);
+                normalX = d > 0 ? dx / d : 0;
+                normalY = d > 0 ? dy / d : 1;
+                depth = rs - d;
+                return true;
+            }
+
+            // Find the edge the particle is furthest out from.
+            int best = 0;
+            double bestSep = Double.NEGATIVE_INFINITY;
+
+            for (int k = 0; k < vertexCount; k++) {
+                double sep = ((px - vertX[k]) * edgeNX[k]) + ((py - vertY[k]) * edgeNY[k]);
+
+                if (sep > r)
+                    return false;
+
+                if (sep > bestSep) {
+                    bestSep = sep;
+                    best = k;
+                }
+            }
+
+            int next = (best + 1) % vertexCount;
+            double ax = vertX[best], ay = vertY[best];
+            double bx = vertX[next], by = vertY[next];
+
+            // Past either end of the edge, the closest feature is a vertex.
+            if (bestSep > 0) {
+                if (((px - ax) * (bx - ax)) + ((py - ay) * (by - ay)) <= 0)
+                    return findVertexContact(px, py, r, ax, ay);
+
+                if (((px - bx) * (ax - bx)) + ((py - by) * (ay - by)) <= 0)
+                    return findVertexContact(px, py, r, bx, by);
+            }
+
+            normalX = edgeNX[best];
+            normalY = edgeNY[best];
+            depth = r - bestSep;
+            return true;
+        }
+
+        private boolean findVertexContact(double px, double py, double r, double ox, double oy) {
+            double dx = px - ox, dy = py - oy;
+            double d2 = (dx * dx) + (dy * dy);
+
+            if (d2 >= r * r)
+                return false;
+
+            double d = Math.sqrt(d2);
+            normalX = dx / d;
+            normalY = dy / d;
+            depth = r - d;
+            return true;
+        }
+    }
+
+}
@@ -0,0 +1,107 @@
+package phys2d.collisionLogic.pipeline;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.IntConsumer;
+import java.util.function.IntSupplier;
+
+/**
+ * A named step of the physics pipeline, and the stages it has to wait for.
+ * <br>
+ * A stage either runs as a single action, or is split into partitions which
+ * don't touch each other's data (one per island, one per tile, ...). The
+ * partitions of a stage can be run concurrently.
+ *
+ * @author afsheen
+ */
+public class Stage {
+
+    private final String name;
+
+    private final List<String> dependencies;
+
+    private final Runnable action;
+
+    private final IntSupplier partitions;
+    private final IntConsumer partitionAction;
+
+    /**
+     * Create a stage which runs as a single action.
+     *
+     * @param name the name of the stage. Must be unique within its pipeline.
+     * @param action what the stage does.
+     * @param dependencies the names of the stages which have to finish before
+     *            this one can start.
+     */
+    public Stage(String name, Runnable action, String... dependencies) {
+        this.name = name;
+        this.action = action;
+        this.partitions = null;
+        this.partitionAction = null;
+        this.dependencies = Collections.unmodifiableList(Arrays.asList(dependencies));
+    }
+
+    /**
+     * Create a stage which is split into independent partitions.
+     *
+     * @param name the name of the stage. Must be unique within its pipeline.
+     * @param partitions gives the number of partitions, each time the stage
+     *            runs.
+     * @param partitionAction what the stage does to a single partition, given
+     *            its index.
+     * @param dependencies the names of the stages which have to finish before
+     *            this one can start.
+     */
+    public Stage(String name, IntSupplier partitions, IntConsumer partitionAction, String... dependencies) {
+        this.name = name;
+        this.action = null;
+        this.partitions = partitions;
+        this.partitionAction = partitionAction;
+        this.dependencies = Collections.unmodifiableList(Arrays.asList(dependencies));
+    }
+
+    /**
+     * @return the name of the stage.
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return the names of the stages which have to finish before this one can
+     *         start.
+     */
+    public List<String> getDependencies() {
+        return dependencies;
+    }
+
+    /**
+     * @return true if the stage is split into partitions.
+     */
+    public boolean isPartitioned() {
+        return partitions != null;
+    }
+
+    /**
+     * @return the number of partitions to run this time, or 1 if the stage
+     *         isn't partitioned.
+     */
+    int getPartitionCount() {
+        return partitions != null ? partitions.getAsInt() : 1;
+    }
+
+    /**
+     * Run a single partition of the stage, or the whole stage if it isn't
+     * partitioned.
+     *
+     * @param partition the index of the partition.
+     */
+    void runPartition(int partition) {
+        if (action != null)
+            action.run();
+        else
+            partitionAction.accept(partition);
+    }
+
+}
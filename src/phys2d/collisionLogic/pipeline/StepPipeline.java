@@ -0,0 +1,477 @@
+package phys2d.collisionLogic.pipeline;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * The stages of a single tick, and the order they have to run in. <br>
+ * Each stage names the stages it depends on. Every time the pipeline is run,
+ * a stage starts as soon as all of its dependencies are done, so stages which
+ * don't depend on each other run at the same time. The partitions of a stage
+ * are split up the same way. Everything runs on a work stealing
+ * {@link ForkJoinPool}, so an idle thread picks up whatever stage or partition
+ * is waiting. <br>
+ * When the pipeline isn't parallel, the stages are run one after the other on
+ * the calling thread, in the order they were added as far as the dependencies
+ * allow. <br>
+ * The time each stage takes is recorded every run.
+ *
+ * @author afsheen
+ */
+public class StepPipeline {
+
+    /**
+     * Partitioned stages stop splitting themselves up at this many partitions
+     * per task.
+     */
+    private static final int PARTITION_GRAIN_SIZE = 1;
+
+    /**
+     * How much of the average the latest run makes up.
+     */
+    private static final double AVERAGE_WEIGHT = 0.05;
+
+    /**
+     * The stages, in the order they were added.
+     */
+    private final ArrayList<Stage> stages;
+
+    /**
+     * Dependencies added after the stages were made, by stage name.
+     */
+    private final HashMap<String, ArrayList<String>> extraDependencies;
+
+    private final ForkJoinPool pool;
+
+    private boolean parallel = true;
+
+    /**
+     * Set whenever the stages change, so the order is worked out again before
+     * the next run.
+     */
+    private boolean dirty = true;
+
+    // The stages in the order they run, and how they depend on each other.
+    private Stage[] order;
+    private int[] dependencyCounts;
+    private int[][] dependents;
+
+    // The time taken by each stage, in the same order.
+    private long[] lastNanos;
+    private double[] averageNanos;
+
+    /**
+     * Create a new, empty pipeline which runs on the common pool.
+     */
+    public StepPipeline() {
+        this(ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Create a new, empty pipeline.
+     *
+     * @param pool the pool the stages are run on.
+     */
+    public StepPipeline(ForkJoinPool pool) {
+        this.pool = pool;
+        stages = new ArrayList<Stage>();
+        extraDependencies = new HashMap<String, ArrayList<String>>();
+    }
+
+    /**
+     * Add a stage to the pipeline.
+     *
+     * @param stage the stage to add.
+     * @return this pipeline, so stages can be chained.
+     * @throws IllegalArgumentException if there already is a stage with the
+     *             same name.
+     */
+    public StepPipeline addStage(Stage stage) {
+        if (indexOf(stage.getName()) >= 0)
+            throw new IllegalArgumentException("There already is a stage called " + stage.getName());
+
+        stages.add(stage);
+        dirty = true;
+        return this;
+    }
+
+    /**
+     * Remove a stage from the pipeline. Any stage which depended on it has to
+     * be removed too, or the pipeline won't run.
+     *
+     * @param name the name of the stage.
+     * @return the removed stage, or null if there was no such stage.
+     */
+    public Stage removeStage(String name) {
+        int i = indexOf(name);
+
+        if (i < 0)
+            return null;
+
+        extraDependencies.remove(name);
+        dirty = true;
+        return stages.remove(i);
+    }
+
+    /**
+     * Make an existing stage wait for another one. Used to slot new stages in
+     * between the existing ones.
+     *
+     * @param name the name of the stage which has to wait.
+     * @param dependency the name of the stage it has to wait for.
+     */
+    public void addDependency(String name, String dependency) {
+        extraDependencies.computeIfAbsent(name, k -> new ArrayList<String>()).add(dependency);
+        dirty = true;
+    }
+
+    /**
+     * Run every stage once.
+     *
+     * @throws IllegalStateException if a stage depends on a stage which isn't
+     *             in the pipeline, or the stages depend on each other in a
+     *             loop.
+     */
+    public void run() {
+        if (dirty)
+            compile();
+
+        if (parallel && pool.getParallelism() > 1 && order.length > 1)
+            runParallel();
+        else {
+            for (int i = 0; i < order.length; i++) {
+                runStage(i, false);
+            }
+        }
+    }
+
+    /**
+     * Run the stages on the pool. Every stage which is ready is forked, and
+     * whenever a stage finishes it forks the stages which were only waiting on
+     * it.
+     */
+    private void runParallel() {
+        AtomicInteger[] waiting = new AtomicInteger[order.length];
+        CountDownLatch done = new CountDownLatch(order.length);
+        AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+
+        for (int i = 0; i < order.length; i++) {
+            waiting[i] = new AtomicInteger(dependencyCounts[i]);
+        }
+
+        for (int i = 0; i < order.length; i++) {
+            if (dependencyCounts[i] == 0)
+                pool.execute(new StageTask(i, waiting, done, failure));
+        }
+
+        try {
+            done.await();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for the pipeline", e);
+        }
+
+        Throwable t = failure.get();
+        if (t instanceof RuntimeException)
+            throw (RuntimeException) t;
+        else if (t instanceof Error)
+            throw (Error) t;
+        else if (t != null)
+            throw new IllegalStateException(t);
+    }
+
+    /**
+     * Run a single stage and time it.
+     *
+     * @param i the index of the stage in the run order.
+     * @param parallel whether the partitions of the stage can be split over
+     *            the pool. Must only be true on one of the pool's threads.
+     */
+    private void runStage(int i, boolean parallel) {
+        Stage stage = order[i];
+        long start = System.nanoTime();
+
+        int partitions = stage.getPartitionCount();
+
+        if (parallel && partitions > 1)
+            new PartitionTask(stage, 0, partitions).invoke();
+        else {
+            for (int p = 0; p < partitions; p++) {
+                stage.runPartition(p);
+            }
+        }
+
+        long elapsed = System.nanoTime() - start;
+        lastNanos[i] = elapsed;
+        averageNanos[i] = averageNanos[i] == 0 ? elapsed
+                : averageNanos[i] + (AVERAGE_WEIGHT * (elapsed - averageNanos[i]));
+    }
+
+    /**
+     * Work out the order the stages run in. Stages are kept in the order they
+     * were added, unless a dependency says otherwise.
+     */
+    private void compile() {
+        int n = stages.size();
+        HashMap<String, Integer> indices = new HashMap<String, Integer>();
+
+        for (int i = 0; i < n; i++) {
+            indices.put(stages.get(i).getName(), i);
+        }
+
+        int[] counts = new int[n];
+        ArrayList<ArrayList<Integer>> links = new ArrayList<ArrayList<Integer>>(n);
+        for (int i = 0; i < n; i++) {
+            links.add(new ArrayList<Integer>());
+        }
+
+        for (int i = 0; i < n; i++) {
+            Stage stage = stages.get(i);
+            ArrayList<String> deps = new ArrayList<String>(stage.getDependencies());
+
+            if (extraDependencies.containsKey(stage.getName()))
+                deps.addAll(extraDependencies.get(stage.getName()));
+
+            for (String dep : deps) {
+                Integer j = indices.get(dep);
+
+                if (j == null)
+                    throw new IllegalStateException(
+                            "Stage " + stage.getName() + " depends on " + dep + ", which isn't in the pipeline");
+
+                if (!links.get(j).contains(i)) {
+                    links.get(j).add(i);
+                    counts[i]++;
+                }
+            }
+        }
+
+        // Kahn's algorithm, always taking the earliest added stage which is ready.
+        int[] remaining = counts.clone();
+        int[] position = new int[n];
+        boolean[] placed = new boolean[n];
+        Stage[] sorted = new Stage[n];
+
+        for (int k = 0; k < n; k++) {
+            int next = -1;
+
+            for (int i = 0; i < n; i++) {
+                if (!placed[i] && remaining[i] == 0) {
+                    next = i;
+                    break;
+                }
+            }
+
+            if (next < 0)
+                throw new IllegalStateException("The stages of the pipeline depend on each other in a loop");
+
+            placed[next] = true;
+            position[next] = k;
+            sorted[k] = stages.get(next);
+
+            for (int d : links.get(next)) {
+                remaining[d]--;
+            }
+        }
+
+        order = sorted;
+        dependencyCounts = new int[n];
+        dependents = new int[n][];
+
+        for (int i = 0; i < n; i++) {
+            dependencyCounts[position[i]] = counts[i];
+
+            dependents[position[i]] = new int[links.get(i).size()];
+            for (int d = 0; d < links.get(i).size(); d++) {
+                dependents[position[i]][d] = position[links.get(i).get(d)];
+            }
+        }
+
+        lastNanos = new long[n];
+        averageNanos = new double[n];
+        dirty = false;
+    }
+
+    /**
+     * @param name the name of the stage.
+     * @return the index of the stage in the order they were added, or -1 if
+     *         there is no such stage.
+     */
+    private int indexOf(String name) {
+        for (int i = 0; i < stages.size(); i++) {
+            if (stages.get(i).getName().equals(name))
+                return i;
+        }
+        return -1;
+    }
+
+    /**
+     * @param parallel whether independent stages and partitions should be run
+     *            on multiple threads.
+     */
+    public void setParallel(boolean parallel) {
+        this.parallel = parallel;
+    }
+
+    /**
+     * @return true if independent stages and partitions are run on multiple
+     *         threads.
+     */
+    public boolean isParallel() {
+        return parallel;
+    }
+
+    /**
+     * @return the names of the stages, in the order they run when the
+     *         pipeline isn't parallel.
+     */
+    public ArrayList<String> getStageNames() {
+        if (dirty)
+            compile();
+
+        ArrayList<String> names = new ArrayList<String>(order.length);
+        for (Stage stage : order) {
+            names.add(stage.getName());
+        }
+        return names;
+    }
+
+    /**
+     * @param name the name of the stage.
+     * @return the time the stage took on the last run, in ms. 0 if it hasn't
+     *         been run yet.
+     */
+    public double getLastTime(String name) {
+        int i = indexInOrder(name);
+        return i >= 0 ? lastNanos[i] / 1e6 : 0;
+    }
+
+    /**
+     * @param name the name of the stage.
+     * @return the running average of the time the stage takes, in ms. 0 if it
+     *         hasn't been run yet.
+     */
+    public double getAverageTime(String name) {
+        int i = indexInOrder(name);
+        return i >= 0 ? averageNanos[i] / 1e6 : 0;
+    }
+
+    /**
+     * @return the average time taken by each stage in ms, in the order the
+     *         stages run.
+     */
+    public LinkedHashMap<String, Double> getTimings() {
+        LinkedHashMap<String, Double> timings = new LinkedHashMap<String, Double>();
+
+        if (dirty)
+            return timings;
+
+        for (int i = 0; i < order.length; i++) {
+            timings.put(order[i].getName(), averageNanos[i] / 1e6);
+        }
+        return timings;
+    }
+
+    /**
+     * @param name the name of the stage.
+     * @return the index of the stage in the run order, or -1 if there is no
+     *         such stage or the order hasn't been worked out yet.
+     */
+    private int indexInOrder(String name) {
+        if (dirty)
+            return -1;
+
+        for (int i = 0; i < order.length; i++) {
+            if (order[i].getName().equals(name))
+                return i;
+        }
+        return -1;
+    }
+
+    /**
+     * Runs a single stage on the pool, and then forks every stage which was
+     * only waiting on it.
+     *
+     * @author afsheen
+     */
+    @SuppressWarnings("serial")
+    private class StageTask extends RecursiveAction {
+
+        private final int stage;
+        private final AtomicInteger[] waiting;
+        private final CountDownLatch done;
+        private final AtomicReference<Throwable> failure;
+
+        StageTask(int stage, AtomicInteger[] waiting, CountDownLatch done, AtomicReference<Throwable> failure) {
+            this.stage = stage;
+            this.waiting = waiting;
+            this.done = done;
+            this.failure = failure;
+        }
+
+        @Override
+        protected void compute() {
+            // Once something has failed, the rest are only counted off.
+            if (failure.get() == null) {
+                try {
+                    runStage(stage, true);
+                }
+                catch (Throwable t) {
+                    failure.compareAndSet(null, t);
+                }
+            }
+
+            for (int d : dependents[stage]) {
+                if (waiting[d].decrementAndGet() == 0)
+                    new StageTask(d, waiting, done, failure).fork();
+            }
+
+            done.countDown();
+        }
+    }
+
+    /**
+     * Runs a range of partitions of a stage, splitting the range in half until
+     * it is small enough.
+     *
+     * @author afsheen
+     */
+    @SuppressWarnings("serial")
+    private static class PartitionTask extends RecursiveAction {
+
+        private final Stage stage;
+        private final int start, end;
+
+        /**
+         * @param stage the stage.
+         * @param start the first partition to run (inclusive).
+         * @param end the last partition to run (exclusive).
+         */
+        PartitionTask(Stage stage, int start, int end) {
+            this.stage = stage;
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        protected void compute() {
+            if (end - start <= PARTITION_GRAIN_SIZE) {
+                for (int p = start; p < end; p++) {
+                    stage.runPartition(p);
+                }
+            }
+            else {
+                int mid = (start + end) >>> 1;
+                invokeAll(new PartitionTask(stage, start, mid), new PartitionTask(stage, mid, end));
+            }
+        }
+    }
+
+}
@@ -136,20 +136,35 @@ public class BSPTree extends SpacePartitioningTree {
      *         <li>-1 : Shape is on the dividing line.</li>
      */
     protected int getInsertionSideAABB(Vec2D[] aabb) {
+        return getInsertionSideAABB(aabb[0].getX(), aabb[0].getY(), aabb[1].getX(), aabb[1].getY());
+    }
+
+    /**
+     * Same as {@link #getInsertionSideAABB(Vec2D[])}, with the aabb given by
+     * its min and max.
+     * 
+     * @param minX the min x of the aabb.
+     * @param minY the min y of the aabb.
+     * @param maxX the max x of the aabb.
+     * @param maxY the max y of the aabb.
+     * @return the child the shape is inserted into, or -1 if it's on the
+     *         dividing line.
+     */
+    protected int getInsertionSideAABB(double minX, double minY, double maxX, double maxY) {
         if (splitMode == VERTICAL_SPLIT) {
             double midX = (bounds[0].getX() + bounds[1].getX()) / 2.0;
 
-            if (aabb[1].getX() < midX) // max of the aabb < center split line
+            if (maxX < midX) // max of the aabb < center split line
                 return 0; // LEFT SIDE
-            else if (aabb[0].getX() >= midX) // min of aabb > center split line
+            else if (minX >= midX) // min of aabb > center split line
                 return 1; // RIGHT SIDE
         }
         else { // if horizontal split
             double midY = (bounds[0].getY() + bounds[1].getY()) / 2.0;
 
-            if (aabb[1].getY() < midY)
+            if (maxY < midY)
                 return 0; // TOP SIDE
-            else if (aabb[0].getY() >= midY)
+            else if (minY >= midY)
                 return 1; // BOTTOM SIDE
         }
 
@@ -164,8 +179,7 @@ public class BSPTree extends SpacePartitioningTree {
      * @return the side which the shape can be inserted on
      */
     protected int getInsertionSide(Shape s) {
-        Vec2D[] aabb = s.getAABBbounds();
-        return getInsertionSideAABB(aabb);
+        return getInsertionSideAABB(s.getAABBMinX(), s.getAABBMinY(), s.getAABBMaxX(), s.getAABBMaxY());
     }
 
     /**
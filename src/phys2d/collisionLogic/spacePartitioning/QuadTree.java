@@ -66,10 +66,23 @@ public class QuadTree extends SpacePartitioningTree {
      * @return true if the aabb intersects with the child quadtree.
      */
     protected boolean childCanContainAABB(QuadTree child, Vec2D[] aabb) {
-        //TODO, should eventually move this to the SAT collision checker.
-        return !(child.bounds[0].getX() > aabb[1].getX() || child.bounds[1].getX() < aabb[0].getX()
-                || child.bounds[0].getY() > aabb[1].getY() || child.bounds[1].getY() < aabb[0].getY());
+        return childCanContainAABB(child, aabb[0].getX(), aabb[0].getY(), aabb[1].getX(), aabb[1].getY());
+    }
 
+    /**
+     * Same as {@link #childCanContainAABB(QuadTree, Vec2D[])}, with the aabb
+     * given by its min and max.
+     * 
+     * @param child the QuadTree to check the aabb against.
+     * @param minX the min x of the aabb.
+     * @param minY the min y of the aabb.
+     * @param maxX the max x of the aabb.
+     * @param maxY the max y of the aabb.
+     * @return true if the aabb intersects with the child quadtree.
+     */
+    protected boolean childCanContainAABB(QuadTree child, double minX, double minY, double maxX, double maxY) {
+        return !(child.bounds[0].getX() > maxX || child.bounds[1].getX() < minX || child.bounds[0].getY() > maxY
+                || child.bounds[1].getY() < minY);
     }
 
     /**
@@ -112,9 +125,8 @@ public class QuadTree extends SpacePartitioningTree {
      *            recalculation of the AABB).
      */
     protected void insertShapeIntoChildren(Shape s) {
-        Vec2D[] aabb = s.getAABBbounds();
         for (int i = 0; i < children.length; i++) {
-            if (childCanContainAABB(children[i], aabb)) {
+            if (childCanContainAABB(children[i], s.getAABBMinX(), s.getAABBMinY(), s.getAABBMaxX(), s.getAABBMaxY())) {
                 children[i].insert(s);
             }
         }
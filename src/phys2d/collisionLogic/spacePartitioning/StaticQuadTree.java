@@ -0,0 +1,368 @@
+package phys2d.collisionLogic.spacePartitioning;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+
+import phys2d.entities.Vec2D;
+import phys2d.entities.shapes.Shape;
+import phys2d.entities.shapes.SweptAABB;
+
+/**
+ * A quadtree which only holds immovable shapes (world bounds and the like).
+ * <br>
+ * Unlike the other space partitioning trees, this one is not refreshed every
+ * tick. Shapes are added and removed one at a time, straight into and out of
+ * the leaves they overlap. The dynamic shapes then query it with their
+ * (swept) AABBs to find which static shapes they might be colliding with.
+ * Since static shapes are never grouped with each other, static-static pairs
+ * are never generated. <br>
+ * The managers also use one of these for sleeping shapes, which come and go
+ * a lot more often than world bounds do, so adding and removing never walk
+ * the whole tree.
+ *
+ * @author afsheen
+ */
+public class StaticQuadTree extends QuadTree {
+
+    /**
+     * The AABBs of the items in this node. Kept in the same order as the items
+     * themselves. Static shapes don't move, so these never need to be
+     * recomputed.
+     */
+    protected List<Vec2D[]> itemBounds;
+
+    /**
+     * Every static shape in the tree, and the AABB it was inserted with. Only
+     * maintained by the root. The AABB is kept so a removed shape can be
+     * found in the same leaves it went into, even if it has moved since.
+     */
+    private final ArrayList<Shape> staticShapes;
+    private final ArrayList<Vec2D[]> staticBounds;
+    private final List<Shape> readOnlyShapes;
+
+    /**
+     * Where each shape is in staticShapes. Only maintained by the root.
+     */
+    private final IdentityHashMap<Shape, Integer> shapeIndices;
+
+    /**
+     * The bounds of the root of the tree. Used to decide which leaf reports a
+     * shape which spans several of them.
+     */
+    private Vec2D[] rootBounds;
+
+    /**
+     * Create a new StaticQuadTree with the given bounds and the current level
+     * of this node.
+     *
+     * @param bounds the bounding rectangle that this node covers in the game
+     *            world, <b>in MIN-MAX notation<b>.
+     * @param level the current level of this node.
+     */
+    public StaticQuadTree(Vec2D[] bounds, int level) {
+        super(bounds, level);
+        itemBounds = new ArrayList<Vec2D[]>();
+        staticShapes = new ArrayList<Shape>();
+        staticBounds = new ArrayList<Vec2D[]>();
+        readOnlyShapes = Collections.unmodifiableList(staticShapes);
+        shapeIndices = new IdentityHashMap<Shape, Integer>();
+        rootBounds = bounds;
+    }
+
+    /**
+     * Splits the current node into four separate children.
+     */
+    @Override
+    protected void split() {
+
+        Vec2D center = new Vec2D((bounds[0].getX() + bounds[1].getX()) / 2.0,
+                (bounds[0].getY() + bounds[1].getY()) / 2.0);
+
+        children[0] = new StaticQuadTree(new Vec2D[] { bounds[0].getCopy(), center.getCopy() }, depth + 1); //BL
+
+        children[1] = new StaticQuadTree(new Vec2D[] { //TL
+                new Vec2D(bounds[0].getX(), center.getY()),
+                new Vec2D(center.getX(), bounds[1].getY())
+        }, depth + 1);
+
+        children[2] = new StaticQuadTree(new Vec2D[] { center.getCopy(), bounds[1].getCopy() }, depth + 1); //TR
+
+        children[3] = new StaticQuadTree(new Vec2D[] { //BR
+                new Vec2D(center.getX(), bounds[0].getY()),
+                new Vec2D(bounds[1].getX(), center.getY())
+        }, depth + 1);
+
+        for (QuadTree child : children) {
+            ((StaticQuadTree) child).rootBounds = rootBounds;
+        }
+    }
+
+    /**
+     * Add a new static shape into the tree.
+     *
+     * @param s the static shape to add.
+     */
+    public void add(Shape s) {
+        if (shapeIndices.containsKey(s))
+            return;
+
+        Vec2D[] aabb = s.getAABBbounds();
+
+        shapeIndices.put(s, staticShapes.size());
+        staticShapes.add(s);
+        staticBounds.add(aabb);
+
+        insert(s, aabb);
+    }
+
+    /**
+     * Remove a static shape from the tree. Only the leaves it went into are
+     * touched.
+     *
+     * @param s the static shape to remove.
+     * @return true if the shape was in the tree.
+     */
+    public boolean remove(Shape s) {
+        Integer index = shapeIndices.remove(s);
+        if (index == null)
+            return false;
+
+        Vec2D[] aabb = staticBounds.get(index);
+
+        // Move the last shape into the hole.
+        int last = staticShapes.size() - 1;
+        if (index != last) {
+            Shape moved = staticShapes.get(last);
+            staticShapes.set(index, moved);
+            staticBounds.set(index, staticBounds.get(last));
+            shapeIndices.put(moved, index);
+        }
+        staticShapes.remove(last);
+        staticBounds.remove(last);
+
+        removeFromLeaves(s, aabb);
+        return true;
+    }
+
+    /**
+     * Remove a whole batch of shapes from the tree.
+     *
+     * @param shapes the shapes to remove.
+     */
+    public void removeAll(Collection<Shape> shapes) {
+        for (Shape s : shapes) {
+            remove(s);
+        }
+    }
+
+    /**
+     * Take the shape out of every leaf its AABB overlaps. Nodes aren't merged
+     * back together when they empty out, they just stay split.
+     *
+     * @param s the shape to remove.
+     * @param aabb the AABB it was inserted with.
+     */
+    private void removeFromLeaves(Shape s, Vec2D[] aabb) {
+        if (children[0] == null) {
+            for (int i = 0; i < items.size(); i++) {
+                if (items.get(i) == s) {
+                    items.remove(i);
+                    itemBounds.remove(i);
+                    return;
+                }
+            }
+            return;
+        }
+
+        for (QuadTree child : children) {
+            if (childCanContainAABB(child, aabb))
+                ((StaticQuadTree) child).removeFromLeaves(s, aabb);
+        }
+    }
+
+    /**
+     * @return all the static shapes inside this tree. Read only.
+     */
+    public List<Shape> getStaticShapes() {
+        return readOnlyShapes;
+    }
+
+    @Override
+    public void insert(Shape s) {
+        insert(s, s.getAABBbounds());
+    }
+
+    /**
+     * Insert the shape into the current node of the quadtree, along with its
+     * precomputed AABB.
+     *
+     * @param s the shape to insert.
+     * @param aabb the AABB of s in min-max form.
+     */
+    protected void insert(Shape s, Vec2D[] aabb) {
+
+        if (children[0] != null) {
+            insertShapeIntoChildren(s, aabb);
+            return;
+        }
+
+        items.add(s);
+        itemBounds.add(aabb);
+
+        if (items.size() > MAX_ITEMS && depth < DEPTH_CAP) {
+            split();
+
+            for (int i = 0; i < items.size(); i++) {
+                insertShapeIntoChildren(items.get(i), itemBounds.get(i));
+            }
+            items.clear();
+            itemBounds.clear();
+        }
+    }
+
+    /**
+     * Inserts the shape s into all children its AABB overlaps.
+     *
+     * @param s the shape to insert.
+     * @param aabb the AABB of s in min-max form.
+     */
+    protected void insertShapeIntoChildren(Shape s, Vec2D[] aabb) {
+        for (int i = 0; i < children.length; i++) {
+            if (childCanContainAABB(children[i], aabb)) {
+                ((StaticQuadTree) children[i]).insert(s, aabb);
+            }
+        }
+    }
+
+    /**
+     * Find all the static shapes whose AABBs overlap the given AABB. Each
+     * overlapping shape is added to results exactly once.
+     *
+     * @param aabb the AABB to query with, in min-max form. Usually the swept
+     *            AABB of a dynamic shape.
+     * @param results the list to which the overlapping static shapes are
+     *            added.
+     */
+    public void query(Vec2D[] aabb, List<Shape> results) {
+        query(aabb[0].getX(), aabb[0].getY(), aabb[1].getX(), aabb[1].getY(), results);
+    }
+
+    /**
+     * Find all the static shapes which overlap the swept AABB of a shape.
+     *
+     * @param s the shape to query with.
+     * @param h the time to sweep the shape over.
+     * @param results the list to which the overlapping static shapes are
+     *            added.
+     */
+    public void querySwept(Shape s, double h, List<Shape> results) {
+        SweptAABB b = s.getSweptAABB(h);
+        query(b.getMinX(), b.getMinY(), b.getMaxX(), b.getMaxY(), results);
+    }
+
+    /**
+     * Same as {@link #query(Vec2D[], List)}, with the AABB given by its min
+     * and max.
+     *
+     * @param minX the min x of the AABB to query with.
+     * @param minY the min y of the AABB to query with.
+     * @param maxX the max x of the AABB to query with.
+     * @param maxY the max y of the AABB to query with.
+     * @param results the list to which the overlapping static shapes are
+     *            added.
+     */
+    public void query(double minX, double minY, double maxX, double maxY, List<Shape> results) {
+        query(minX, minY, maxX, maxY, results, results.size());
+    }
+
+    /**
+     * Does the work of {@link #query(double, double, double, double, List)}.
+     * <br>
+     * Big static shapes span several leaves, but each one should only be
+     * reported once. Instead of searching the results, a shape is only
+     * reported by the leaf which holds the min corner of where it overlaps
+     * the query (clamped to the tree). Every point of the tree is in exactly
+     * one leaf, so exactly one leaf reports it. This needs no shared state,
+     * so several threads can query the tree at once.
+     *
+     * @param start the size of results before the query started.
+     */
+    private void query(double minX, double minY, double maxX, double maxY, List<Shape> results, int start) {
+        if (children[0] == null) {
+            for (int i = 0; i < items.size(); i++) {
+                Vec2D[] itemAABB = itemBounds.get(i);
+
+                boolean overlaps = !(itemAABB[0].getX() > maxX || itemAABB[1].getX() < minX
+                        || itemAABB[0].getY() > maxY || itemAABB[1].getY() < minY);
+
+                if (overlaps && reportsHere(itemAABB, minX, minY, maxX, maxY, items.get(i), results, start))
+                    results.add(items.get(i));
+            }
+        }
+        else {
+            for (QuadTree child : children) {
+                if (childCanContainAABB(child, minX, minY, maxX, maxY))
+                    ((StaticQuadTree) child).query(minX, minY, maxX, maxY, results, start);
+            }
+        }
+    }
+
+    /**
+     * @return true if this leaf is the one which should report an item which
+     *         overlaps the query.
+     */
+    private boolean reportsHere(Vec2D[] itemAABB, double minX, double minY, double maxX, double maxY, Shape item,
+            List<Shape> results, int start) {
+        // Most shapes sit inside a single leaf.
+        if (itemAABB[0].getX() >= bounds[0].getX() && itemAABB[1].getX() < bounds[1].getX()
+                && itemAABB[0].getY() >= bounds[0].getY() && itemAABB[1].getY() < bounds[1].getY())
+            return true;
+
+        // The min corner of the overlap, clamped into the tree.
+        double x = Math.max(itemAABB[0].getX(), minX);
+        double y = Math.max(itemAABB[0].getY(), minY);
+        double cx = Math.min(Math.max(x, rootBounds[0].getX()), rootBounds[1].getX());
+        double cy = Math.min(Math.max(y, rootBounds[0].getY()), rootBounds[1].getY());
+
+        if (cx != x || cy != y) {
+            // The overlap starts outside the tree, so clamping may have moved
+            // the corner out of it. Rare enough to just check the results.
+            for (int i = start; i < results.size(); i++) {
+                if (results.get(i) == item)
+                    return false;
+            }
+            return true;
+        }
+
+        // Leaves own their min edges, and their max edges only at the edge of the tree.
+        return cx >= bounds[0].getX() && (cx < bounds[1].getX() || bounds[1].getX() == rootBounds[1].getX())
+                && cy >= bounds[0].getY() && (cy < bounds[1].getY() || bounds[1].getY() == rootBounds[1].getY());
+    }
+
+    /**
+     * Static shapes never collide with each other, so there are never any
+     * groups to report.
+     *
+     * @return an empty list.
+     */
+    @Override
+    public ArrayList<Shape[]> getPossibleCollisions() {
+        return new ArrayList<Shape[]>(0);
+    }
+
+    /**
+     * Removes every static shape from this tree.
+     */
+    @Override
+    public void refresh() {
+        super.refresh();
+        itemBounds.clear();
+        staticShapes.clear();
+        staticBounds.clear();
+        shapeIndices.clear();
+    }
+
+}
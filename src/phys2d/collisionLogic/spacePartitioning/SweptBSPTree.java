@@ -2,6 +2,7 @@ package phys2d.collisionLogic.spacePartitioning;
 
 import phys2d.entities.Vec2D;
 import phys2d.entities.shapes.Shape;
+import phys2d.entities.shapes.SweptAABB;
 
 public class SweptBSPTree extends BSPTree {
 
@@ -25,8 +26,8 @@ public class SweptBSPTree extends BSPTree {
 
     @Override
     protected int getInsertionSide(Shape s) {
-        Vec2D[] sAabb = s.getSweptAABBbounds(dt);
-        return getInsertionSideAABB(sAabb);
+        SweptAABB b = s.getSweptAABB(dt);
+        return getInsertionSideAABB(b.getMinX(), b.getMinY(), b.getMaxX(), b.getMaxY());
     }
 
     @Override
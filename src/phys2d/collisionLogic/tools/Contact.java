@@ -0,0 +1,82 @@
+package phys2d.collisionLogic.tools;
+
+import phys2d.entities.Vec2D;
+import phys2d.entities.shapes.Shape;
+
+/**
+ * A contact (or an impending contact) between two shapes which was found by
+ * the narrowphase during the current tick.
+ *
+ * @author afsheen
+ */
+public class Contact {
+
+    private final Shape s1, s2;
+
+    /**
+     * The direction returned by the collision checker. If the shapes are
+     * penetrating, this is the translation s2 needs to be removed from s1.
+     * Otherwise, it is the displacement between the two shapes.
+     */
+    private final Vec2D dir;
+
+    private final boolean penetrating;
+
+    /**
+     * Create a new contact between the two shapes.
+     *
+     * @param s1 the first shape.
+     * @param s2 the second shape.
+     * @param dir the collision direction returned by the collision checker.
+     * @param penetrating whether the shapes are actually overlapping, or only
+     *            going to touch later in the tick.
+     */
+    public Contact(Shape s1, Shape s2, Vec2D dir, boolean penetrating) {
+        this.s1 = s1;
+        this.s2 = s2;
+        this.dir = dir;
+        this.penetrating = penetrating;
+    }
+
+    /**
+     * @return the first shape.
+     */
+    public Shape getS1() {
+        return s1;
+    }
+
+    /**
+     * @return the second shape.
+     */
+    public Shape getS2() {
+        return s2;
+    }
+
+    /**
+     * @return the collision direction returned by the collision checker.
+     */
+    public Vec2D getDir() {
+        return dir;
+    }
+
+    /**
+     * @return whether the shapes are overlapping.
+     */
+    public boolean isPenetrating() {
+        return penetrating;
+    }
+
+    /**
+     * @return the shape of this contact which isn't static. If both are
+     *         dynamic, s1.
+     */
+    public Shape getDynamicShape() {
+        return s1.isStatic() ? s2 : s1;
+    }
+
+    @Override
+    public String toString() {
+        return "Contact [s1= " + s1 + ", s2= " + s2 + ", dir= " + dir + ", penetrating= " + penetrating + "]";
+    }
+
+}
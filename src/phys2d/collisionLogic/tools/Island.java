@@ -0,0 +1,157 @@
+package phys2d.collisionLogic.tools;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import phys2d.entities.shapes.Shape;
+
+/**
+ * A group of shapes which are connected to each other through contacts, along
+ * with those contacts. Static shapes are never part of an island, because they
+ * don't pass on any motion. So a contact with a static shape belongs to the
+ * island of its dynamic shape, and two islands resting on the same static
+ * shape stay separate. <br>
+ * No two islands share a dynamic shape, which means islands can be solved and
+ * integrated on separate threads without any locking. <br>
+ * Islands are also put to sleep (and woken up) as a whole. A sleeping island
+ * keeps a reference to its manager's wake queue, so that anything poking one
+ * of its shapes from outside the manager can ask for the whole island to be
+ * woken up at the start of the next tick.
+ *
+ * @author afsheen
+ */
+public class Island {
+
+    private final ArrayList<Shape> bodies;
+
+    private final ArrayList<Contact> contacts;
+
+    /**
+     * The queue this island adds itself to when a wake up is requested.
+     */
+    private final List<Island> wakeQueue;
+
+    private boolean asleep;
+
+    private boolean wakeRequested;
+
+    /**
+     * The dormant group the island's shapes were packed into, or -1.
+     */
+    private int dormantGroup;
+
+    /**
+     * Create a new, empty island.
+     *
+     * @param wakeQueue the queue the island adds itself to when it needs to be
+     *            woken up.
+     */
+    public Island(List<Island> wakeQueue) {
+        this(new ArrayList<Shape>(), wakeQueue);
+    }
+
+    /**
+     * Create a new island made up of the given bodies.
+     *
+     * @param bodies the dynamic shapes in this island.
+     * @param wakeQueue the queue the island adds itself to when it needs to be
+     *            woken up.
+     */
+    public Island(ArrayList<Shape> bodies, List<Island> wakeQueue) {
+        this.bodies = bodies;
+        this.contacts = new ArrayList<Contact>();
+        this.wakeQueue = wakeQueue;
+        this.asleep = false;
+        this.wakeRequested = false;
+        this.dormantGroup = -1;
+    }
+
+    /**
+     * Ask for this island to be woken up. The island is only queued once, no
+     * matter how many of its shapes ask.
+     */
+    public void requestWake() {
+        if (asleep && !wakeRequested) {
+            wakeRequested = true;
+            wakeQueue.add(this);
+        }
+    }
+
+    /**
+     * @param s the dynamic shape to add to this island.
+     */
+    public void addBody(Shape s) {
+        bodies.add(s);
+    }
+
+    /**
+     * @param contact the contact to add to this island.
+     */
+    public void addContact(Contact contact) {
+        contacts.add(contact);
+    }
+
+    /**
+     * @return the shapes in this island.
+     */
+    public ArrayList<Shape> getBodies() {
+        return bodies;
+    }
+
+    /**
+     * @return the contacts between the shapes of this island, and between
+     *         them and any static shapes.
+     */
+    public ArrayList<Contact> getContacts() {
+        return contacts;
+    }
+
+    /**
+     * @return whether this island is currently asleep.
+     */
+    public boolean isAsleep() {
+        return asleep;
+    }
+
+    /**
+     * @return true if a wake up has been asked for, and the island hasn't been
+     *         woken yet.
+     */
+    public boolean isWakeRequested() {
+        return wakeRequested;
+    }
+
+    /**
+     * Mark this island as packed into a dormant group. Its shapes and contacts
+     * are dropped, since the old shapes still point at the island, and the
+     * island mustn't keep them alive in turn. It stays asleep, so a wake up
+     * can still be asked for on it.
+     *
+     * @param group the dormant group the shapes were packed into.
+     */
+    public void setDormantGroup(int group) {
+        this.dormantGroup = group;
+
+        bodies.clear();
+        bodies.trimToSize();
+        contacts.clear();
+        contacts.trimToSize();
+    }
+
+    /**
+     * @return the dormant group the island's shapes were packed into, or -1
+     *         if they weren't.
+     */
+    public int getDormantGroup() {
+        return dormantGroup;
+    }
+
+    /**
+     * @param asleep whether this island is asleep.
+     */
+    public void setAsleep(boolean asleep) {
+        this.asleep = asleep;
+        this.wakeRequested = false;
+    }
+
+}
@@ -0,0 +1,135 @@
+package phys2d.collisionLogic.tools;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+import phys2d.entities.shapes.Shape;
+
+/**
+ * Splits the world into islands of interacting shapes every tick, by running
+ * union-find over the contacts found by the narrowphase. <br>
+ * Static shapes are treated as non-propagating nodes: they never join two
+ * islands together, and their contacts go to the island of the dynamic shape
+ * they touch. So the resulting islands never share a dynamic shape and can be
+ * solved and integrated independently of each other.
+ *
+ * @author afsheen
+ */
+public class IslandBuilder {
+
+    /**
+     * The queue every island built by this builder wakes up through.
+     */
+    private final List<Island> wakeQueue;
+
+    /**
+     * The union-find forest, indexed by the position of the shape in the
+     * bodies list. Reused between ticks.
+     */
+    private int[] parent;
+
+    /**
+     * Create a new island builder.
+     *
+     * @param wakeQueue the queue the built islands should wake up through
+     *            once they have been put to sleep.
+     */
+    public IslandBuilder(List<Island> wakeQueue) {
+        this.wakeQueue = wakeQueue;
+        this.parent = new int[0];
+    }
+
+    /**
+     * Group the bodies into islands using the contacts between them. Every
+     * body ends up in exactly one island, even if it touches nothing. <br>
+     * Contacts involving a shape which isn't in bodies (and isn't static) are
+     * ignored.
+     *
+     * @param bodies the awake dynamic shapes in the world.
+     * @param contacts the contacts found during this tick.
+     * @return the islands, in the order their first body appears in bodies.
+     */
+    public ArrayList<Island> build(List<Shape> bodies, List<Contact> contacts) {
+
+        HashMap<Shape, Integer> indices = new HashMap<Shape, Integer>(bodies.size() * 2);
+
+        if (parent.length < bodies.size())
+            parent = new int[bodies.size()];
+
+        for (int i = 0; i < bodies.size(); i++) {
+            indices.put(bodies.get(i), i);
+            parent[i] = i;
+        }
+
+        // Only contacts between two dynamic shapes link islands together.
+        for (Contact contact : contacts) {
+            if (contact.getS1().isStatic() || contact.getS2().isStatic())
+                continue;
+
+            Integer a = indices.get(contact.getS1());
+            Integer b = indices.get(contact.getS2());
+
+            if (a != null && b != null)
+                union(a, b);
+        }
+
+        // Now gather up the bodies under each root.
+        Island[] rootIslands = new Island[bodies.size()];
+        ArrayList<Island> islands = new ArrayList<Island>();
+
+        for (int i = 0; i < bodies.size(); i++) {
+            int root = findRoot(i);
+
+            if (rootIslands[root] == null) {
+                rootIslands[root] = new Island(wakeQueue);
+                islands.add(rootIslands[root]);
+            }
+            rootIslands[root].addBody(bodies.get(i));
+        }
+
+        for (Contact contact : contacts) {
+            Integer index = indices.get(contact.getDynamicShape());
+
+            if (index != null)
+                rootIslands[findRoot(index)].addContact(contact);
+        }
+
+        return islands;
+    }
+
+    /**
+     * Merge the trees containing a and b.
+     *
+     * @param a the first node.
+     * @param b the second node.
+     */
+    private void union(int a, int b) {
+        int rootA = findRoot(a);
+        int rootB = findRoot(b);
+
+        if (rootA != rootB) {
+            // Keep the lower index as the root so the island order is stable.
+            if (rootA < rootB)
+                parent[rootB] = rootA;
+            else
+                parent[rootA] = rootB;
+        }
+    }
+
+    /**
+     * Find the root of i in the union-find forest, compressing the path along
+     * the way.
+     *
+     * @param i the node to find the root of.
+     * @return the root of i.
+     */
+    private int findRoot(int i) {
+        while (parent[i] != i) {
+            parent[i] = parent[parent[i]];
+            i = parent[i];
+        }
+        return i;
+    }
+
+}
@@ -0,0 +1,169 @@
+package phys2d.collisionLogic.tools;
+
+import java.util.Arrays;
+
+import phys2d.entities.Vec2D;
+import phys2d.entities.shapes.Shape;
+
+/**
+ * Decides how often each shape is updated, based on how far it is from the
+ * regions of interest in the world. <br>
+ * Shapes inside a region of interest are updated every tick. Shapes within
+ * twice the radius of a region are updated every 2nd tick, and everything
+ * further away every 4th tick. If there are no regions of interest, every
+ * shape is updated every tick. <br>
+ * The level of detail also keeps an eye on how long each step takes. If the
+ * steps go over budget, the far away tiers are demoted to even lower rates
+ * (the shapes inside the regions of interest are never demoted). Once the
+ * steps are comfortably back under budget, the demotions are undone one at a
+ * time.
+ *
+ * @author afsheen
+ */
+public class LevelOfDetail {
+
+    /**
+     * The slowest rate a shape can be demoted to. (Once every MAX_INTERVAL
+     * ticks).
+     */
+    public static final int MAX_INTERVAL = 16;
+
+    /**
+     * How many ticks in a row need to be under half the budget before a
+     * demotion is undone.
+     */
+    private static final int RECOVERY_TICKS = 50;
+
+    /**
+     * The centers and radii of the regions of interest. Kept as plain arrays,
+     * since they're read for every shape every tick.
+     */
+    private double[] regionX, regionY, regionRadius;
+    private int regionCount;
+
+    /**
+     * The time (ms) a single step is allowed to take.
+     */
+    private double stepBudget;
+
+    /**
+     * How many times the far tiers have been halved because of overload.
+     */
+    private int demotion;
+
+    private int ticksUnderBudget;
+
+    public LevelOfDetail() {
+        regionX = new double[4];
+        regionY = new double[4];
+        regionRadius = new double[4];
+        stepBudget = Double.POSITIVE_INFINITY;
+        demotion = 0;
+        ticksUnderBudget = 0;
+    }
+
+    /**
+     * Add a region inside which shapes are always updated at the full rate.
+     *
+     * @param center the center of the region.
+     * @param radius the radius of the region.
+     */
+    public void addRegionOfInterest(Vec2D center, double radius) {
+        if (regionCount == regionX.length) {
+            regionX = Arrays.copyOf(regionX, regionCount * 2);
+            regionY = Arrays.copyOf(regionY, regionCount * 2);
+            regionRadius = Arrays.copyOf(regionRadius, regionCount * 2);
+        }
+
+        regionX[regionCount] = center.getX();
+        regionY[regionCount] = center.getY();
+        regionRadius[regionCount] = radius;
+        regionCount++;
+    }
+
+    /**
+     * Remove all the regions of interest. This updates every shape at the
+     * full rate again.
+     */
+    public void clearRegionsOfInterest() {
+        regionCount = 0;
+    }
+
+    /**
+     * @return whether any regions of interest have been set up.
+     */
+    public boolean isEnabled() {
+        return regionCount > 0;
+    }
+
+    /**
+     * Return how many ticks should pass between each update of the shape.
+     *
+     * @param s the shape.
+     * @return 1 to update every tick, 2 to update every other tick, and so on.
+     *         Always a power of 2.
+     */
+    public int getUpdateInterval(Shape s) {
+        if (!isEnabled())
+            return 1;
+
+        // Distance to the closest region, in multiples of that region's radius.
+        double closest = Double.POSITIVE_INFINITY;
+        double x = s.getCOM().getX();
+        double y = s.getCOM().getY();
+
+        for (int i = 0; i < regionCount; i++) {
+            double dx = x - regionX[i];
+            double dy = y - regionY[i];
+            double dist = Math.sqrt((dx * dx) + (dy * dy)) / regionRadius[i];
+            closest = Math.min(closest, dist);
+        }
+
+        if (closest <= 1)
+            return 1;
+
+        int interval = (closest <= 2) ? 2 : 4;
+
+        return Math.min(interval << demotion, MAX_INTERVAL);
+    }
+
+    /**
+     * Report how long the last step took, and demote or promote the far tiers
+     * accordingly.
+     *
+     * @param stepTime the duration of the last step in ms.
+     */
+    public void reportStepTime(double stepTime) {
+        if (stepTime > stepBudget) {
+            if ((4 << demotion) < MAX_INTERVAL)
+                demotion++;
+
+            ticksUnderBudget = 0;
+        }
+        else if (stepTime < stepBudget / 2.0 && demotion > 0) {
+            if (++ticksUnderBudget >= RECOVERY_TICKS) {
+                demotion--;
+                ticksUnderBudget = 0;
+            }
+        }
+        else {
+            ticksUnderBudget = 0;
+        }
+    }
+
+    /**
+     * @param stepBudget the time (ms) a single step is allowed to take before
+     *            the far tiers are demoted.
+     */
+    public void setStepBudget(double stepBudget) {
+        this.stepBudget = stepBudget;
+    }
+
+    /**
+     * @return how many times the far tiers have been demoted.
+     */
+    public int getDemotion() {
+        return demotion;
+    }
+
+}
@@ -0,0 +1,369 @@
+package phys2d.entities;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+
+import phys2d.entities.shapes.Circle;
+import phys2d.entities.shapes.Shape;
+import phys2d.entities.shapes.ShapeTemplate;
+import phys2d.entities.shapes.polygons.Polygon;
+import phys2d.entities.shapes.polygons.Rectangle;
+import phys2d.entities.shapes.polygons.Square;
+
+/**
+ * Packed records of dormant bodies, for {@link World}. <br>
+ * A dormant body has no Shape object at all. All that's kept is what's needed
+ * to build it again: which template and class it was made from, its material,
+ * where it was (as floats) and its angle (quantized to a short). Everything
+ * sits in parallel primitive arrays, so a record is a couple of dozen bytes
+ * instead of a whole object graph. <br>
+ * Only bodies made from a {@link ShapeTemplate} can be stored, since the
+ * template is what holds their geometry. The records are also put in a
+ * coarse grid by position, so the world can find the ones an awake body might
+ * touch.
+ *
+ * @author afsheen
+ */
+class DormantStore {
+
+    private static final int CIRCLE = 0, POLYGON = 1, RECTANGLE = 2, SQUARE = 3;
+    private static final int KIND_MASK = 3, BULLET = 4;
+
+    private static final double ANGLE_SCALE = 65536.0 / (2.0 * Math.PI);
+
+    /**
+     * The records, indexed by record number. Removing a record moves the last
+     * one into its place.
+     */
+    private float[] x, y;
+    private short[] angle;
+    private short[] template, material;
+    private byte[] kind;
+    private int[] handle, group;
+    private int count;
+
+    /**
+     * The templates used so far, and their numbers.
+     */
+    private final ArrayList<ShapeTemplate> templates;
+    private final IdentityHashMap<ShapeTemplate, Integer> templateNumbers;
+
+    /**
+     * The handles of the bodies which went dormant together, by group. They're
+     * woken up together too, the same as a sleeping island.
+     */
+    private final HashMap<Integer, int[]> groups;
+    private int nextGroup;
+
+    /**
+     * The records whose center is in each cell, keyed by packed cell
+     * coordinates.
+     */
+    private final HashMap<Long, Cell> cells;
+    private final double cellSize;
+
+    /**
+     * The furthest any stored body reaches from its center.
+     */
+    private double maxRadius;
+
+    /**
+     * The record numbers in one grid cell.
+     */
+    private static final class Cell {
+        int[] records = new int[4];
+        int size;
+
+        void add(int r) {
+            if (size == records.length) {
+                int[] t = new int[size * 2];
+                System.arraycopy(records, 0, t, 0, size);
+                records = t;
+            }
+            records[size++] = r;
+        }
+
+        void replace(int from, int to) {
+            for (int i = 0; i < size; i++) {
+                if (records[i] == from) {
+                    records[i] = to;
+                    return;
+                }
+            }
+        }
+
+        void remove(int r) {
+            for (int i = 0; i < size; i++) {
+                if (records[i] == r) {
+                    records[i] = records[--size];
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * @param cellSize the size of the grid cells.
+     */
+    DormantStore(double cellSize) {
+        this.cellSize = cellSize;
+
+        x = new float[64];
+        y = new float[64];
+        angle = new short[64];
+        template = new short[64];
+        material = new short[64];
+        kind = new byte[64];
+        handle = new int[64];
+        group = new int[64];
+
+        templates = new ArrayList<ShapeTemplate>();
+        templateNumbers = new IdentityHashMap<ShapeTemplate, Integer>();
+        groups = new HashMap<Integer, int[]>();
+        cells = new HashMap<Long, Cell>();
+    }
+
+    /**
+     * @param s the shape.
+     * @return true if the shape can be packed into a record.
+     */
+    static boolean canStore(Shape s) {
+        if (s.getTemplate() == null)
+            return false;
+
+        Class<?> c = s.getClass();
+        return c == Circle.class || c == Polygon.class || c == Rectangle.class || c == Square.class;
+    }
+
+    /**
+     * Start a new group of bodies going dormant together.
+     *
+     * @param handles the handles of the bodies in the group.
+     * @return the group number to store them with.
+     */
+    int newGroup(int[] handles) {
+        int g = nextGroup++;
+        groups.put(g, handles);
+        return g;
+    }
+
+    /**
+     * @param g a group number.
+     * @return the handles of the bodies in the group, or null if it has
+     *         already been woken.
+     */
+    int[] takeGroup(int g) {
+        return groups.remove(g);
+    }
+
+    /**
+     * @param g a group number.
+     * @return true if the group is still dormant.
+     */
+    boolean hasGroup(int g) {
+        return groups.containsKey(g);
+    }
+
+    /**
+     * Pack a shape into a new record.
+     *
+     * @param s the shape. Must pass {@link #canStore(Shape)}.
+     * @param h the handle of the shape.
+     * @param g the group it's going dormant with.
+     * @return the record number.
+     */
+    int add(Shape s, int h, int g) {
+        if (count == x.length)
+            grow();
+
+        int r = count++;
+        ShapeTemplate t = s.getTemplate();
+        Class<?> c = s.getClass();
+
+        x[r] = (float) s.getCOM().getX();
+        y[r] = (float) s.getCOM().getY();
+        angle[r] = (short) Math.round(s.getAngle() * ANGLE_SCALE);
+        template[r] = (short) templateNumber(t);
+        material[r] = (short) s.getMaterial().getId();
+        kind[r] = (byte) ((c == Circle.class ? CIRCLE : c == Square.class ? SQUARE : c == Rectangle.class ? RECTANGLE
+                : POLYGON) | (s.isBullet() ? BULLET : 0));
+        handle[r] = h;
+        group[r] = g;
+
+        maxRadius = Math.max(maxRadius, t.getBoundingRadius());
+        cellAt(x[r], y[r], true).add(r);
+
+        return r;
+    }
+
+    /**
+     * Build the shape stored in a record. The record itself is left alone.
+     *
+     * @param r the record number.
+     * @return a new shape, the same as the one which was packed, as closely
+     *         as floats allow.
+     */
+    Shape build(int r) {
+        ShapeTemplate t = templates.get(template[r] & 0xffff);
+        Material m = Material.getById(material[r] & 0xffff);
+        Vec2D pos = new Vec2D(x[r], y[r]);
+        double a = angle[r] / ANGLE_SCALE;
+
+        Shape s;
+
+        switch (kind[r] & KIND_MASK) {
+            case CIRCLE:
+                s = new Circle(t, pos, m);
+                break;
+            case SQUARE:
+                s = new Square(t, pos, a, m);
+                break;
+            case RECTANGLE:
+                s = new Rectangle(t, pos, a, m);
+                break;
+            default:
+                s = new Polygon(t, pos, a, m);
+        }
+
+        s.setBullet((kind[r] & BULLET) != 0);
+        return s;
+    }
+
+    /**
+     * Remove a record, moving the last record into its place.
+     *
+     * @param r the record number.
+     * @return the handle of the record now at r, or World.NULL_HANDLE if r was
+     *         the last one.
+     */
+    int remove(int r) {
+        long k = key((int) Math.floor(x[r] / cellSize), (int) Math.floor(y[r] / cellSize));
+        Cell cell = cells.get(k);
+        cell.remove(r);
+
+        if (cell.size == 0)
+            cells.remove(k);
+
+        int last = --count;
+        if (r == last)
+            return World.NULL_HANDLE;
+
+        cellAt(x[last], y[last], false).replace(last, r);
+
+        x[r] = x[last];
+        y[r] = y[last];
+        angle[r] = angle[last];
+        template[r] = template[last];
+        material[r] = material[last];
+        kind[r] = kind[last];
+        handle[r] = handle[last];
+        group[r] = group[last];
+
+        return handle[r];
+    }
+
+    /**
+     * Find the groups of every record which could overlap the box.
+     *
+     * @param minX the min x of the box.
+     * @param minY the min y of the box.
+     * @param maxX the max x of the box.
+     * @param maxY the max y of the box.
+     * @param results where to put the group numbers. May get duplicates.
+     */
+    void queryGroups(double minX, double minY, double maxX, double maxY, ArrayList<Integer> results) {
+        if (count == 0)
+            return;
+
+        // Records are filed by center, so grow the box by the biggest reach.
+        int cx0 = (int) Math.floor((minX - maxRadius) / cellSize);
+        int cy0 = (int) Math.floor((minY - maxRadius) / cellSize);
+        int cx1 = (int) Math.floor((maxX + maxRadius) / cellSize);
+        int cy1 = (int) Math.floor((maxY + maxRadius) / cellSize);
+
+        for (int cx = cx0; cx <= cx1; cx++) {
+            for (int cy = cy0; cy <= cy1; cy++) {
+                Cell cell = cells.get(key(cx, cy));
+                if (cell == null)
+                    continue;
+
+                for (int i = 0; i < cell.size; i++) {
+                    int r = cell.records[i];
+                    double reach = templates.get(template[r] & 0xffff).getBoundingRadius();
+
+                    if (x[r] + reach >= minX && x[r] - reach <= maxX && y[r] + reach >= minY && y[r] - reach <= maxY)
+                        results.add(group[r]);
+                }
+            }
+        }
+    }
+
+    /**
+     * @param r the record number.
+     * @return the group the record went dormant with.
+     */
+    int getGroup(int r) {
+        return group[r];
+    }
+
+    /**
+     * @return the number of records.
+     */
+    int size() {
+        return count;
+    }
+
+    private int templateNumber(ShapeTemplate t) {
+        Integer n = templateNumbers.get(t);
+
+        if (n == null) {
+            n = templates.size();
+            templates.add(t);
+            templateNumbers.put(t, n);
+        }
+        return n;
+    }
+
+    private Cell cellAt(double px, double py, boolean create) {
+        long k = key((int) Math.floor(px / cellSize), (int) Math.floor(py / cellSize));
+        Cell cell = cells.get(k);
+
+        if (cell == null && create) {
+            cell = new Cell();
+            cells.put(k, cell);
+        }
+        return cell;
+    }
+
+    private static long key(int cx, int cy) {
+        return ((long) cx << 32) | (cy & 0xffffffffL);
+    }
+
+    private void grow() {
+        int size = x.length * 2;
+
+        float[] nx = new float[size], ny = new float[size];
+        short[] na = new short[size], nt = new short[size], nm = new short[size];
+        byte[] nk = new byte[size];
+        int[] nh = new int[size], ng = new int[size];
+
+        System.arraycopy(x, 0, nx, 0, count);
+        System.arraycopy(y, 0, ny, 0, count);
+        System.arraycopy(angle, 0, na, 0, count);
+        System.arraycopy(template, 0, nt, 0, count);
+        System.arraycopy(material, 0, nm, 0, count);
+        System.arraycopy(kind, 0, nk, 0, count);
+        System.arraycopy(handle, 0, nh, 0, count);
+        System.arraycopy(group, 0, ng, 0, count);
+
+        x = nx;
+        y = ny;
+        angle = na;
+        template = nt;
+        material = nm;
+        kind = nk;
+        handle = nh;
+        group = ng;
+    }
+}
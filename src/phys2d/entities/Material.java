@@ -1,8 +1,26 @@
 package phys2d.entities;
 
 import java.awt.Color;
+import java.util.ArrayList;
 
-public enum Material {
+/**
+ * The physical properties of the stuff shapes are made of. <br>
+ * Every material gets a dense id when it's created, in order of creation. The
+ * built in materials below always come first. More materials can be defined
+ * at runtime with {@link #define}. The combined properties of every pair of
+ * materials are kept in the {@link MaterialPairTable}. <br>
+ * This used to be an enum. {@link #values()}, {@link #valueOf(String)},
+ * {@link #name()}, {@link #ordinal()} and {@link #compareTo} still work the
+ * same way, but materials can't go in an EnumMap or EnumSet, or be switched
+ * on, any more. Key maps by {@link #getId()} instead.
+ */
+public final class Material implements Comparable<Material> {
+
+    /**
+     * Every material created so far, indexed by id. Has to be declared before
+     * the built in materials, so that it exists when they register themselves.
+     */
+    private static final ArrayList<Material> registry = new ArrayList<Material>();
 
     // COR, DENSITY
     /**
@@ -11,7 +29,7 @@ public enum Material {
      * &mu;<sub>S</sub>: 0.95 <br>
      * &mu;<sub>k</sub>: 0.8
      */
-    RUBBER(0.828, 1.1, 0.95, 0.8, Color.LIGHT_GRAY),
+    public static final Material RUBBER = new Material("RUBBER", 0.828, 1.1, 0.95, 0.8, Color.LIGHT_GRAY);
 
     /**
      * COR: 0.597 <br>
@@ -19,7 +37,7 @@ public enum Material {
      * &mu;<sub>S</sub>: 0.55 <br>
      * &mu;<sub>k</sub>: 0.3
      */
-    STEEL(0.597, 7.82, 0.55, 0.3, Color.GRAY),
+    public static final Material STEEL = new Material("STEEL", 0.597, 7.82, 0.55, 0.3, Color.GRAY);
 
     /**
      * COR: 0.05 <br>
@@ -27,7 +45,7 @@ public enum Material {
      * &mu;<sub>S</sub>: 0.3 <br>
      * &mu;<sub>k</sub>: 0.15
      */
-    BUTTER(0.05, 0.87, 0.3, 0.15, Color.YELLOW),
+    public static final Material BUTTER = new Material("BUTTER", 0.05, 0.87, 0.3, 0.15, Color.YELLOW);
 
     /**
      * COR: 0.25 <br>
@@ -35,7 +53,7 @@ public enum Material {
      * &mu;<sub>S</sub>: 0.85 <br>
      * &mu;<sub>k</sub>: 0.65
      */
-    DIRT(0.25, 2.1, 0.85, 0.65, new Color(95, 50, 0)),
+    public static final Material DIRT = new Material("DIRT", 0.25, 2.1, 0.85, 0.65, new Color(95, 50, 0));
 
     /**
      * COR: 0.18 <br>
@@ -43,7 +61,7 @@ public enum Material {
      * &mu;<sub>S</sub>: 0.55 <br>
      * &mu;<sub>k</sub>: 0.45
      */
-    GRASS(0.18, 2.1, 0.55, 0.45, new Color(0, 128, 0)),
+    public static final Material GRASS = new Material("GRASS", 0.18, 2.1, 0.55, 0.45, new Color(0, 128, 0));
 
     /**
      * COR: 0.13 <br>
@@ -51,7 +69,7 @@ public enum Material {
      * &mu;<sub>S</sub>: 0.75 <br>
      * &mu;<sub>k</sub>: 0.6
      */
-    FLESH(0.13, 1.1, 0.75, 0.6, new Color(245, 188, 189)),
+    public static final Material FLESH = new Material("FLESH", 0.13, 1.1, 0.75, 0.6, new Color(245, 188, 189));
 
     /**
      * COR: 0.6 <br>
@@ -59,7 +77,7 @@ public enum Material {
      * &mu;<sub>S</sub>: 0.45 <br>
      * &mu;<sub>k</sub>: 0.3
      */
-    WOOD(0.6, 0.8, 0.45, 0.3, new Color(165, 85, 0, 255)),
+    public static final Material WOOD = new Material("WOOD", 0.6, 0.8, 0.45, 0.3, new Color(165, 85, 0, 255));
 
     /**
      * COR: 0.66 <br>
@@ -67,7 +85,7 @@ public enum Material {
      * &mu;<sub>S</sub>: 0.4 <br>
      * &mu;<sub>k</sub>: 0.2
      */
-    GLASS(0.66, 2.5, 0.4, 0.2, new Color(225, 225, 225, 20)),
+    public static final Material GLASS = new Material("GLASS", 0.66, 2.5, 0.4, 0.2, new Color(225, 225, 225, 20));
 
     /**
      * COR: 0 <br>
@@ -75,7 +93,7 @@ public enum Material {
      * &mu;<sub>S</sub>: 2 <br>
      * &mu;<sub>k</sub>: 2
      */
-    INERTIUM(0, 100, 2, 2, new Color(0, 0, 0)),
+    public static final Material INERTIUM = new Material("INERTIUM", 0, 100, 2, 2, new Color(0, 0, 0));
 
     /**
      * COR: 0.1 <br>
@@ -83,7 +101,7 @@ public enum Material {
      * &mu;<sub>S</sub>: 0.9 <br>
      * &mu;<sub>k</sub>: 0.85
      */
-    REF10(0.1, 1, 0.9, 0.85, new Color(0, 30, 10)),
+    public static final Material REF10 = new Material("REF10", 0.1, 1, 0.9, 0.85, new Color(0, 30, 10));
 
     /**
      * COR: 0.2 <br>
@@ -91,7 +109,7 @@ public enum Material {
      * &mu;<sub>S</sub>: 0.8 <br>
      * &mu;<sub>k</sub>: 0.75
      */
-    REF20(0.2, 1, 0.8, 0.75, new Color(0, 50, 15)),
+    public static final Material REF20 = new Material("REF20", 0.2, 1, 0.8, 0.75, new Color(0, 50, 15));
 
     /**
      * COR: 0.3 <br>
@@ -99,7 +117,7 @@ public enum Material {
      * &mu;<sub>S</sub>: 0.7 <br>
      * &mu;<sub>k</sub>: 0.65
      */
-    REF30(0.3, 1, 0.7, 0.65, new Color(0, 70, 20)),
+    public static final Material REF30 = new Material("REF30", 0.3, 1, 0.7, 0.65, new Color(0, 70, 20));
 
     /**
      * COR: 0.4 <br>
@@ -107,7 +125,7 @@ public enum Material {
      * &mu;<sub>S</sub>: 0.6 <br>
      * &mu;<sub>k</sub>: 0.55
      */
-    REF40(0.4, 1, 0.6, 0.55, new Color(0, 90, 25)),
+    public static final Material REF40 = new Material("REF40", 0.4, 1, 0.6, 0.55, new Color(0, 90, 25));
 
     /**
      * COR: 0.5 <br>
@@ -115,7 +133,7 @@ public enum Material {
      * &mu;<sub>S</sub>: 0.5 <br>
      * &mu;<sub>k</sub>: 0.45
      */
-    REF50(0.5, 1, 0.5, 0.45, new Color(0, 110, 30)),
+    public static final Material REF50 = new Material("REF50", 0.5, 1, 0.5, 0.45, new Color(0, 110, 30));
 
     /**
      * COR: 0.6 <br>
@@ -123,7 +141,7 @@ public enum Material {
      * &mu;<sub>S</sub>: 0.4 <br>
      * &mu;<sub>k</sub>: 0.35
      */
-    REF60(0.6, 1, 0.4, 0.35, new Color(0, 130, 35)),
+    public static final Material REF60 = new Material("REF60", 0.6, 1, 0.4, 0.35, new Color(0, 130, 35));
 
     /**
      * COR: 0.7 <br>
@@ -131,7 +149,7 @@ public enum Material {
      * &mu;<sub>S</sub>: 0.3 <br>
      * &mu;<sub>k</sub>: 0.25
      */
-    REF70(0.7, 1, 0.3, 0.25, new Color(0, 150, 40)),
+    public static final Material REF70 = new Material("REF70", 0.7, 1, 0.3, 0.25, new Color(0, 150, 40));
 
     /**
      * COR: 0.8 <br>
@@ -139,7 +157,7 @@ public enum Material {
      * &mu;<sub>S</sub>: 0.2 <br>
      * &mu;<sub>k</sub>: 0.15
      */
-    REF80(0.8, 1, 0.2, 0.15, new Color(0, 170, 45)),
+    public static final Material REF80 = new Material("REF80", 0.8, 1, 0.2, 0.15, new Color(0, 170, 45));
 
     /**
      * COR: 0.9 <br>
@@ -147,7 +165,7 @@ public enum Material {
      * &mu;<sub>S</sub>: 0.1 <br>
      * &mu;<sub>k</sub>: 0.05
      */
-    REF90(0.9, 1, 0.1, 0.05, new Color(0, 190, 50)),
+    public static final Material REF90 = new Material("REF90", 0.9, 1, 0.1, 0.05, new Color(0, 190, 50));
 
     /**
      * COR: 1 <br>
@@ -155,7 +173,11 @@ public enum Material {
      * &mu;<sub>S</sub>: 0 <br>
      * &mu;<sub>k</sub>: 0
      */
-    REFLECTIUM(1, 1, 0, 0, Color.GREEN);
+    public static final Material REFLECTIUM = new Material("REFLECTIUM", 1, 1, 0, 0, Color.GREEN);
+
+    private final int id;
+
+    private final String name;
 
     protected final double restitution;
     protected final double density; // 1 kg per 1m^2
@@ -165,13 +187,128 @@ public enum Material {
 
     protected final Color color;
 
-    private Material(double restitution, double density, double statFric,
+    private Material(String name, double restitution, double density, double statFric,
             double dynFric, Color color) {
+        this.name = name;
         this.restitution = restitution;
         this.density = density;
         this.staticFric = statFric;
         this.dynFric = dynFric;
         this.color = color;
+
+        synchronized (registry) {
+            this.id = registry.size();
+            registry.add(this);
+        }
+
+        MaterialPairTable.invalidate();
+    }
+
+    /**
+     * Define a new material at runtime. It gets the next free id, and its
+     * pairs with every other material are added to the
+     * {@link MaterialPairTable}.
+     * 
+     * @param name the name of the material.
+     * @param restitution the coefficient of restitution.
+     * @param density the density, in kg per m^2.
+     * @param statFric the coefficient of static friction.
+     * @param dynFric the coefficient of dynamic friction.
+     * @param color the color shapes of this material are drawn with.
+     * @return the new material.
+     */
+    public static Material define(String name, double restitution, double density, double statFric, double dynFric,
+            Color color) {
+        return new Material(name, restitution, density, statFric, dynFric, color);
+    }
+
+    /**
+     * @param id the id of the material.
+     * @return the material with that id.
+     */
+    public static Material getById(int id) {
+        synchronized (registry) {
+            return registry.get(id);
+        }
+    }
+
+    /**
+     * @return every material defined so far, in order of id. The array is a
+     *         new copy every time.
+     */
+    public static Material[] values() {
+        synchronized (registry) {
+            return registry.toArray(new Material[registry.size()]);
+        }
+    }
+
+    /**
+     * @param name the name of a material.
+     * @return the material with that name.
+     * @throws IllegalArgumentException if no material has that name.
+     */
+    public static Material valueOf(String name) {
+        if (name == null)
+            throw new NullPointerException("Name is null");
+
+        synchronized (registry) {
+            for (Material m : registry) {
+                if (m.name.equals(name))
+                    return m;
+            }
+        }
+
+        throw new IllegalArgumentException("No material named " + name);
+    }
+
+    /**
+     * @return the number of materials defined so far.
+     */
+    public static int count() {
+        synchronized (registry) {
+            return registry.size();
+        }
+    }
+
+    /**
+     * @return the dense id of this material.
+     */
+    public int getId() {
+        return id;
+    }
+
+    /**
+     * @return the name of this material.
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return the name of this material. The same as {@link #getName()}.
+     */
+    public String name() {
+        return name;
+    }
+
+    /**
+     * @return the id of this material. The same as {@link #getId()}.
+     */
+    public int ordinal() {
+        return id;
+    }
+
+    /**
+     * Materials are ordered by id, which is the order they were created in.
+     */
+    @Override
+    public int compareTo(Material o) {
+        return Integer.compare(id, o.id);
+    }
+
+    @Override
+    public String toString() {
+        return name;
     }
 
     /**
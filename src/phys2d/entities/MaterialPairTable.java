@@ -0,0 +1,195 @@
+package phys2d.entities;
+
+import java.util.HashMap;
+
+/**
+ * The combined properties of every pair of materials, worked out once and kept
+ * in flat n by n arrays indexed by the material ids. So a contact only needs a
+ * lookup instead of recomputing the combination every time. <br>
+ * By default, pairs use the smaller of the two restitutions, and the
+ * pythagorean combination of the two friction coefficients. Any pair can be
+ * given its own values with {@link #setOverride}. <br>
+ * The table is rebuilt the next time it's read after a material is defined or
+ * an override changes.
+ *
+ * @author afsheen
+ */
+public final class MaterialPairTable {
+
+    /**
+     * The overridden pairs, keyed by their pair key. Each value holds the
+     * restitution, static friction and dynamic friction, in that order.
+     */
+    private static final HashMap<Long, double[]> overrides = new HashMap<Long, double[]>();
+
+    /**
+     * The current table, or null if it needs rebuilding.
+     */
+    private static volatile Table table;
+
+    private MaterialPairTable() {
+    }
+
+    /**
+     * Give a pair of materials its own combined properties, instead of the
+     * default combination.
+     *
+     * @param a the first material.
+     * @param b the second material.
+     * @param restitution the restitution of the pair.
+     * @param staticFric the static friction coefficient of the pair.
+     * @param dynFric the dynamic friction coefficient of the pair.
+     */
+    public static void setOverride(Material a, Material b, double restitution, double staticFric, double dynFric) {
+        synchronized (overrides) {
+            overrides.put(getPairKey(a, b), new double[] { restitution, staticFric, dynFric });
+        }
+        invalidate();
+    }
+
+    /**
+     * Go back to the default combination for a pair of materials.
+     *
+     * @param a the first material.
+     * @param b the second material.
+     */
+    public static void clearOverride(Material a, Material b) {
+        synchronized (overrides) {
+            overrides.remove(getPairKey(a, b));
+        }
+        invalidate();
+    }
+
+    /**
+     * @param a the first material.
+     * @param b the second material.
+     * @return the combined restitution of the pair.
+     */
+    public static double getRestitution(Material a, Material b) {
+        Table t = getTable(a, b);
+        return t.restitution[(a.getId() * t.size) + b.getId()];
+    }
+
+    /**
+     * @param a the first material.
+     * @param b the second material.
+     * @return the combined static friction coefficient of the pair.
+     */
+    public static double getStaticFriction(Material a, Material b) {
+        Table t = getTable(a, b);
+        return t.staticFric[(a.getId() * t.size) + b.getId()];
+    }
+
+    /**
+     * @param a the first material.
+     * @param b the second material.
+     * @return the combined dynamic friction coefficient of the pair.
+     */
+    public static double getDynamicFriction(Material a, Material b) {
+        Table t = getTable(a, b);
+        return t.dynFric[(a.getId() * t.size) + b.getId()];
+    }
+
+    /**
+     * Throw away the current table. Called whenever a material is defined.
+     */
+    static void invalidate() {
+        synchronized (overrides) {
+            table = null;
+        }
+    }
+
+    /**
+     * A material registers itself before it invalidates the table, so a
+     * reader can get in between with the new material and the old table. So
+     * the table is also rebuilt if it's too small for either material. Every
+     * lookup then uses the size and arrays of that one table.
+     *
+     * @param a the first material.
+     * @param b the second material.
+     * @return the current table, rebuilding it first if needed.
+     */
+    private static Table getTable(Material a, Material b) {
+        Table t = table;
+
+        if (t == null || !t.covers(a, b)) {
+            synchronized (overrides) {
+                t = table;
+                if (t == null || !t.covers(a, b)) {
+                    t = new Table(Material.values());
+                    table = t;
+                }
+            }
+        }
+
+        return t;
+    }
+
+    /**
+     * @param a the first material.
+     * @param b the second material.
+     * @return a key which is the same for (a, b) and (b, a).
+     */
+    private static long getPairKey(Material a, Material b) {
+        int lo = Math.min(a.getId(), b.getId());
+        int hi = Math.max(a.getId(), b.getId());
+        return ((long) lo << 32) | hi;
+    }
+
+    /**
+     * A snapshot of the combined properties of every pair of materials. It's
+     * never changed once it's built.
+     */
+    private static final class Table {
+
+        final int size;
+
+        final double[] restitution, staticFric, dynFric;
+
+        /**
+         * Build the table. Must be called while holding the overrides lock.
+         *
+         * @param materials every material, in order of id.
+         */
+        Table(Material[] materials) {
+            size = materials.length;
+
+            restitution = new double[size * size];
+            staticFric = new double[size * size];
+            dynFric = new double[size * size];
+
+            for (int i = 0; i < size; i++) {
+                for (int j = 0; j < size; j++) {
+                    Material a = materials[i];
+                    Material b = materials[j];
+                    int index = (i * size) + j;
+
+                    double[] override = overrides.get(getPairKey(a, b));
+
+                    if (override != null) {
+                        restitution[index] = override[0];
+                        staticFric[index] = override[1];
+                        dynFric[index] = override[2];
+                    }
+                    else {
+                        restitution[index] = Math.min(a.getRestitution(), b.getRestitution());
+                        staticFric[index] = Math.sqrt((a.getStaticFric() * a.getStaticFric())
+                                + (b.getStaticFric() * b.getStaticFric()));
+                        dynFric[index] = Math.sqrt((a.getDynFric() * a.getDynFric())
+                                + (b.getDynFric() * b.getDynFric()));
+                    }
+                }
+            }
+        }
+
+        /**
+         * @param a the first material.
+         * @param b the second material.
+         * @return true if both materials have a row in this table.
+         */
+        boolean covers(Material a, Material b) {
+            return a.getId() < size && b.getId() < size;
+        }
+    }
+
+}
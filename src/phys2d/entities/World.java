@@ -0,0 +1,752 @@
+package phys2d.entities;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import phys2d.collisionLogic.collisionManagers.CollisionManager;
+import phys2d.collisionLogic.tools.Island;
+import phys2d.entities.shapes.Shape;
+import phys2d.entities.shapes.SweptAABB;
+
+/**
+ * Owns every body in the simulation, and hands them to the collision manager
+ * each tick. <br>
+ * Bodies are kept in a slot map. Each one is given a 32 bit handle when it
+ * joins the world: the low bits are its slot, and the high bits are the
+ * generation of the slot. When a body leaves, its slot is reused, but with
+ * the next generation, so old handles to it stop working instead of pointing
+ * at whatever moved in. Adding and removing are O(1). <br>
+ * Nothing is added or removed straight away. Requests from any thread go into
+ * a lock free queue, and are applied in order at the start of the next tick,
+ * so the body list never changes while the manager is working through it.
+ * <br>
+ * Islands which stay asleep long enough can be made dormant. Their shapes are
+ * packed into a {@link DormantStore} and dropped, so they cost a few dozen
+ * bytes each instead of a whole object graph. They keep their handles, and
+ * are built again (as new Shape objects) when an awake shape might touch
+ * them, when their region is activated, when their handle is looked up, or
+ * when a wake up is asked for on their old island. So anything which might go
+ * dormant should be held on to by its handle, not by its Shape. The old Shape
+ * keeps its handle though, so it can still be removed. <br>
+ * The body list can also be sorted by the Morton (Z-order) code of each
+ * body's COM every so often, so that bodies near each other in the world
+ * come one after another in every pass over the list, and in the arrays of
+ * the body batch. The Shape objects themselves stay wherever the collector
+ * put them.
+ *
+ * @author afsheen
+ */
+public class World {
+
+    /**
+     * A handle that never refers to anything. Shapes which aren't in a world
+     * have this handle.
+     */
+    public static final int NULL_HANDLE = 0;
+
+    private static final int INDEX_BITS = 20;
+    private static final int INDEX_MASK = (1 << INDEX_BITS) - 1;
+    private static final int GENERATION_MASK = (1 << (32 - INDEX_BITS)) - 1;
+
+    /**
+     * The most bodies a world can hold at once.
+     */
+    public static final int MAX_BODIES = 1 << INDEX_BITS;
+
+    private static final int ADD = 0, ADD_STATIC = 1, REMOVE = 2, REMOVE_HANDLE = 3;
+
+    /**
+     * How often (in ticks) to look for islands which have slept long enough
+     * to go dormant.
+     */
+    private static final int DORMANCY_CHECK_INTERVAL = 30;
+
+    /**
+     * A request to change the world, waiting for the next tick.
+     */
+    private static final class Command {
+        final int type;
+        final Shape shape;
+        final int handle;
+
+        Command(int type, Shape shape, int handle) {
+            this.type = type;
+            this.shape = shape;
+            this.handle = handle;
+        }
+    }
+
+    private final CollisionManager manager;
+
+    /**
+     * The body in each slot (null if free), the slot's current generation,
+     * and where the body is in the dense list.
+     */
+    private Shape[] slots;
+    private int[] generations;
+    private int[] denseIndex;
+
+    /**
+     * The dormant record of the body in each slot, or -1 if it isn't dormant.
+     */
+    private int[] dormantRecord;
+
+    /**
+     * Slots which have been freed, and the first slot never used.
+     */
+    private int[] freeSlots;
+    private int freeCount, nextSlot;
+
+    /**
+     * Every body in the world, packed together. This is what the manager is
+     * given each tick. Removing swaps the last body into the hole.
+     */
+    private final ArrayList<Shape> bodies;
+    private final List<Shape> readOnlyBodies;
+
+    private final ConcurrentLinkedQueue<Command> commands;
+
+    private final DormantStore dormant;
+
+    /**
+     * How many ticks an island has to be asleep before it goes dormant. 0
+     * turns dormancy off.
+     */
+    private int dormancyDelay;
+
+    /**
+     * The tick each sleeping island was first seen asleep.
+     */
+    private IdentityHashMap<Island, Long> sleepingSince;
+    private long tick;
+
+    /**
+     * The islands whose shapes went dormant. Their old shapes still point at
+     * them, so a wake up can be asked for on one after it has gone. The
+     * islands only remember their group number, not their shapes.
+     */
+    private final ArrayList<Island> dormantIslands;
+
+    /**
+     * Reused buffer for the dormant groups found by each query.
+     */
+    private final ArrayList<Integer> groupHits;
+
+    /**
+     * How often (in ticks) the body list is sorted into Morton order. 0 turns
+     * it off.
+     */
+    private int reorderInterval;
+
+    /**
+     * Reused buffers for the sort keys and the old order of the bodies.
+     */
+    private long[] sortKeys = new long[0];
+    private Shape[] sortBuffer = new Shape[0];
+
+    /**
+     * @param manager the collision manager which steps the world.
+     */
+    public World(CollisionManager manager) {
+        this.manager = manager;
+
+        slots = new Shape[64];
+        generations = new int[64];
+        denseIndex = new int[64];
+        dormantRecord = new int[64];
+        freeSlots = new int[64];
+
+        bodies = new ArrayList<Shape>();
+        readOnlyBodies = Collections.unmodifiableList(bodies);
+        commands = new ConcurrentLinkedQueue<Command>();
+
+        dormant = new DormantStore(64);
+        sleepingSince = new IdentityHashMap<Island, Long>();
+        dormantIslands = new ArrayList<Island>();
+        groupHits = new ArrayList<Integer>();
+    }
+
+    /**
+     * Ask for a body to be added at the start of the next tick. Safe to call
+     * from any thread, including during a tick. The shape gets its handle
+     * when it's actually added.
+     *
+     * @param s the shape to add.
+     */
+    public void add(Shape s) {
+        commands.add(new Command(ADD, s, NULL_HANDLE));
+    }
+
+    /**
+     * Ask for an immovable body to be added at the start of the next tick. It
+     * also gets registered with the manager's static broadphase.
+     *
+     * @param s the static shape to add.
+     */
+    public void addStatic(Shape s) {
+        commands.add(new Command(ADD_STATIC, s, NULL_HANDLE));
+    }
+
+    /**
+     * Ask for a body to be removed at the start of the next tick. Safe to
+     * call from any thread, including during a tick. <br>
+     * If the shape has gone dormant since, its record is thrown away and its
+     * handle stops working. If it has been woken up again as a new shape, the
+     * new shape is removed.
+     *
+     * @param s the shape to remove. Must have been added to this world.
+     */
+    public void remove(Shape s) {
+        commands.add(new Command(REMOVE, s, NULL_HANDLE));
+    }
+
+    /**
+     * Ask for the body with the given handle to be removed at the start of
+     * the next tick. Nothing happens if the handle has gone stale by then.
+     *
+     * @param handle the handle of the body to remove.
+     */
+    public void remove(int handle) {
+        commands.add(new Command(REMOVE_HANDLE, null, handle));
+    }
+
+    /**
+     * Apply all the queued adds and removes, in the order they were asked
+     * for. Called at the start of every tick, but can be called between ticks
+     * as well.
+     */
+    public void applyCommands() {
+        Command c;
+
+        while ((c = commands.poll()) != null) {
+            switch (c.type) {
+                case ADD:
+                    insert(c.shape);
+                    break;
+
+                case ADD_STATIC:
+                    if (insert(c.shape))
+                        manager.addStaticShape(c.shape);
+                    break;
+
+                case REMOVE:
+                    if (contains(c.shape))
+                        erase(c.shape);
+                    else if (isDormant(c.shape.getHandle())) {
+                        eraseDormant(c.shape.getHandle());
+                        c.shape.setHandle(NULL_HANDLE);
+                    }
+                    else if (isLive(c.shape.getHandle())) { // went dormant, then woke as a new shape
+                        erase(slots[c.shape.getHandle() & INDEX_MASK]);
+                        c.shape.setHandle(NULL_HANDLE);
+                    }
+                    break;
+
+                case REMOVE_HANDLE:
+                    if (isDormant(c.handle))
+                        eraseDormant(c.handle);
+                    else if (isLive(c.handle))
+                        erase(slots[c.handle & INDEX_MASK]);
+                    break;
+            }
+        }
+    }
+
+    /**
+     * Apply the queued changes, then run the manager for one tick. Dormant
+     * shapes which were asked to wake up, or which the awake ones might reach,
+     * are woken up first, and islands which have slept long enough go dormant
+     * afterwards.
+     */
+    public void step() {
+        applyCommands();
+        wakeRequested();
+        wakeTouched();
+
+        manager.runManager(bodies);
+
+        tick++;
+        if (dormancyDelay > 0 && tick % DORMANCY_CHECK_INTERVAL == 0)
+            findDormantIslands();
+
+        if (reorderInterval > 0 && tick % reorderInterval == 0)
+            reorderBodies();
+    }
+
+    /**
+     * Sort the body list by the Morton code of each body's COM, and point
+     * every slot at its body's new place in the list. <br>
+     * Handles don't change, so nothing outside the world needs to know. Slots
+     * can't be renumbered to match, since a slot is part of the handle. The
+     * managers rebuild their broadphases and batches from the list each tick,
+     * so they pick up the new order by themselves. The handles are also what
+     * the pair caches and the way pairs are ordered are keyed by.
+     * <br>
+     * The order the list is in changes the order contacts are found and
+     * solved in, so a sorted world doesn't give the same results as an
+     * unsorted one.
+     */
+    public void reorderBodies() {
+        int n = bodies.size();
+        if (n < 2)
+            return;
+
+        if (sortKeys.length < n) {
+            sortKeys = new long[n];
+            sortBuffer = new Shape[n];
+        }
+
+        double minX = Double.POSITIVE_INFINITY, minY = Double.POSITIVE_INFINITY;
+        double maxX = Double.NEGATIVE_INFINITY, maxY = Double.NEGATIVE_INFINITY;
+
+        for (int i = 0; i < n; i++) {
+            Vec2D com = bodies.get(i).getCOM();
+            minX = Math.min(minX, com.getX());
+            minY = Math.min(minY, com.getY());
+            maxX = Math.max(maxX, com.getX());
+            maxY = Math.max(maxY, com.getY());
+        }
+
+        // Quantize the COMs to 16 bits a side over the box around all of them.
+        double scaleX = maxX > minX ? 65535.0 / (maxX - minX) : 0;
+        double scaleY = maxY > minY ? 65535.0 / (maxY - minY) : 0;
+
+        for (int i = 0; i < n; i++) {
+            Shape s = bodies.get(i);
+            int qx = (int) ((s.getCOM().getX() - minX) * scaleX);
+            int qy = (int) ((s.getCOM().getY() - minY) * scaleY);
+
+            // The code goes in the high bits, and the old index in the low
+            // ones, so equal codes keep their order and the sort stays stable.
+            long code = (spreadBits(qx) | ((long) spreadBits(qy) << 1)) & 0xffffffffL;
+            sortKeys[i] = (code << INDEX_BITS) | i;
+
+            sortBuffer[i] = s;
+        }
+
+        Arrays.sort(sortKeys, 0, n);
+
+        for (int i = 0; i < n; i++) {
+            Shape s = sortBuffer[(int) (sortKeys[i] & INDEX_MASK)];
+            bodies.set(i, s);
+            denseIndex[s.getHandle() & INDEX_MASK] = i;
+            sortBuffer[(int) (sortKeys[i] & INDEX_MASK)] = null;
+        }
+    }
+
+    /**
+     * Spread the low 16 bits of v out so there's a 0 between each of them.
+     *
+     * @param v the value to spread.
+     * @return the spread bits.
+     */
+    private static int spreadBits(int v) {
+        v &= 0xffff;
+        v = (v | (v << 8)) & 0x00ff00ff;
+        v = (v | (v << 4)) & 0x0f0f0f0f;
+        v = (v | (v << 2)) & 0x33333333;
+        v = (v | (v << 1)) & 0x55555555;
+        return v;
+    }
+
+    /**
+     * @param interval how often (in ticks) to sort the body list into Morton
+     *            order. 0 (the default) turns it off.
+     */
+    public void setReorderInterval(int interval) {
+        this.reorderInterval = interval;
+    }
+
+    /**
+     * Put a shape into a slot and the end of the dense list.
+     *
+     * @param s the shape to add.
+     * @return false if the shape was already in a world.
+     */
+    private boolean insert(Shape s) {
+        if (s.getHandle() != NULL_HANDLE)
+            return false;
+
+        int index;
+
+        if (freeCount > 0)
+            index = freeSlots[--freeCount];
+        else {
+            if (nextSlot == MAX_BODIES)
+                throw new IllegalStateException("The world can't hold more than " + MAX_BODIES + " bodies.");
+
+            if (nextSlot == slots.length)
+                grow();
+
+            index = nextSlot++;
+            generations[index] = 1;
+        }
+
+        dormantRecord[index] = -1;
+
+        slots[index] = s;
+        denseIndex[index] = bodies.size();
+        bodies.add(s);
+
+        s.setHandle((generations[index] << INDEX_BITS) | index);
+        return true;
+    }
+
+    /**
+     * Take a shape out of its slot and the dense list, and tell the manager
+     * it's gone.
+     *
+     * @param s the shape to remove. Must be in this world.
+     */
+    private void erase(Shape s) {
+        int index = s.getHandle() & INDEX_MASK;
+
+        unlink(s);
+        freeSlot(index);
+
+        s.setHandle(NULL_HANDLE);
+        manager.shapeRemoved(s);
+    }
+
+    /**
+     * Throw away a dormant body's record, and free its slot.
+     *
+     * @param handle the handle of the dormant body.
+     */
+    private void eraseDormant(int handle) {
+        int index = handle & INDEX_MASK;
+
+        dropRecord(index);
+        freeSlot(index);
+    }
+
+    /**
+     * Take a shape out of its slot and the dense list, but keep the slot.
+     *
+     * @param s the shape to take out.
+     */
+    private void unlink(Shape s) {
+        int index = s.getHandle() & INDEX_MASK;
+
+        // Fill the hole with the last body.
+        int hole = denseIndex[index];
+        Shape last = bodies.remove(bodies.size() - 1);
+
+        if (last != s) {
+            bodies.set(hole, last);
+            denseIndex[last.getHandle() & INDEX_MASK] = hole;
+        }
+
+        slots[index] = null;
+    }
+
+    /**
+     * Move a slot on to its next generation and make it free for reuse.
+     *
+     * @param index the slot.
+     */
+    private void freeSlot(int index) {
+        // Skip 0 when wrapping, so a handle can never be NULL_HANDLE.
+        int generation = (generations[index] + 1) & GENERATION_MASK;
+        generations[index] = generation == 0 ? 1 : generation;
+
+        freeSlots[freeCount++] = index;
+    }
+
+    /**
+     * Remove the dormant record of a slot, and point the slot of the record
+     * moved into its place at its new position.
+     *
+     * @param index the slot.
+     */
+    private void dropRecord(int index) {
+        int record = dormantRecord[index];
+        int moved = dormant.remove(record);
+
+        if (moved != NULL_HANDLE)
+            dormantRecord[moved & INDEX_MASK] = record;
+
+        dormantRecord[index] = -1;
+    }
+
+    /**
+     * Look for sleeping islands, and make the ones which have been asleep for
+     * long enough dormant.
+     */
+    private void findDormantIslands() {
+        IdentityHashMap<Island, Long> since = new IdentityHashMap<Island, Long>();
+
+        for (Shape s : bodies) {
+            Island island = s.getSleepIsland();
+
+            if (s.isAsleep() && island != null && !since.containsKey(island)) {
+                Long first = sleepingSince.get(island);
+                since.put(island, first != null ? first : tick);
+            }
+        }
+
+        // An island with a wake up waiting keeps sleeping, so the manager can
+        // wake it at the start of the next tick.
+        for (Map.Entry<Island, Long> e : since.entrySet()) {
+            Island island = e.getKey();
+
+            if (tick - e.getValue() >= dormancyDelay && !island.isWakeRequested() && makeDormant(island))
+                e.setValue(null);
+        }
+
+        sleepingSince = new IdentityHashMap<Island, Long>();
+        for (Map.Entry<Island, Long> e : since.entrySet()) {
+            if (e.getValue() != null)
+                sleepingSince.put(e.getKey(), e.getValue());
+        }
+    }
+
+    /**
+     * Pack every shape in a sleeping island into the dormant store, and drop
+     * them from the world and the manager.
+     *
+     * @param island the sleeping island.
+     * @return false if some of its shapes couldn't be packed, and nothing was
+     *         done.
+     */
+    private boolean makeDormant(Island island) {
+        ArrayList<Shape> members = island.getBodies();
+        int[] handles = new int[members.size()];
+
+        for (int i = 0; i < handles.length; i++) {
+            Shape s = members.get(i);
+
+            if (!DormantStore.canStore(s) || !contains(s))
+                return false;
+
+            handles[i] = s.getHandle();
+        }
+
+        manager.forgetSleepingIsland(island);
+
+        int group = dormant.newGroup(handles);
+
+        // The shapes keep their handles, so remove(Shape) can still find their
+        // records.
+        for (Shape s : members) {
+            int handle = s.getHandle();
+            int index = handle & INDEX_MASK;
+
+            unlink(s);
+            dormantRecord[index] = dormant.add(s, handle, group);
+        }
+
+        island.setDormantGroup(group);
+        dormantIslands.add(island);
+
+        return true;
+    }
+
+    /**
+     * Wake up the dormant groups whose old islands were asked to wake since
+     * they went dormant, and forget the islands whose groups have already been
+     * woken some other way.
+     */
+    private void wakeRequested() {
+        if (dormantIslands.isEmpty())
+            return;
+
+        Iterator<Island> it = dormantIslands.iterator();
+
+        while (it.hasNext()) {
+            Island island = it.next();
+            int group = island.getDormantGroup();
+
+            if (island.isWakeRequested())
+                wakeGroup(group);
+
+            if (!dormant.hasGroup(group))
+                it.remove();
+        }
+    }
+
+    /**
+     * Wake up every dormant group which an awake shape might reach this tick.
+     */
+    private void wakeTouched() {
+        if (dormant.size() == 0)
+            return;
+
+        double dt = manager.getDt();
+        int n = bodies.size(); // woken shapes go on the end, and don't need checking
+
+        for (int i = 0; i < n; i++) {
+            Shape s = bodies.get(i);
+            if (s.isStatic() || s.isAsleep())
+                continue;
+
+            groupHits.clear();
+            SweptAABB b = s.getSweptAABB(dt);
+            dormant.queryGroups(b.getMinX(), b.getMinY(), b.getMaxX(), b.getMaxY(), groupHits);
+
+            for (int g : groupHits)
+                wakeGroup(g);
+        }
+    }
+
+    /**
+     * Build the shapes of a dormant group again, and put them back into the
+     * world. They come back awake and still.
+     *
+     * @param group the group number.
+     */
+    private void wakeGroup(int group) {
+        int[] handles = dormant.takeGroup(group);
+        if (handles == null)
+            return;
+
+        for (int handle : handles) {
+            if (!isDormant(handle)) // removed while dormant
+                continue;
+
+            int index = handle & INDEX_MASK;
+            Shape s = dormant.build(dormantRecord[index]);
+
+            dropRecord(index);
+
+            slots[index] = s;
+            denseIndex[index] = bodies.size();
+            bodies.add(s);
+
+            s.setHandle(handle);
+        }
+    }
+
+    /**
+     * Wake up every dormant shape which could overlap the box. Should be
+     * called before working with a region directly (querying it, or adding
+     * shapes into it), and only between ticks.
+     *
+     * @param minX the min x of the box.
+     * @param minY the min y of the box.
+     * @param maxX the max x of the box.
+     * @param maxY the max y of the box.
+     */
+    public void activateRegion(double minX, double minY, double maxX, double maxY) {
+        groupHits.clear();
+        dormant.queryGroups(minX, minY, maxX, maxY, groupHits);
+
+        for (int g : groupHits)
+            wakeGroup(g);
+    }
+
+    /**
+     * @param delay how many ticks an island has to be asleep before its shapes
+     *            go dormant. 0 (the default) turns dormancy off. Only islands
+     *            made entirely of shapes built from a {@link ShapeTemplate}
+     *            can go dormant.
+     */
+    public void setDormancyDelay(int delay) {
+        this.dormancyDelay = delay;
+    }
+
+    /**
+     * @return the number of dormant bodies.
+     */
+    public int getDormantCount() {
+        return dormant.size();
+    }
+
+    /**
+     * Double the size of the slot arrays.
+     */
+    private void grow() {
+        int size = Math.min(slots.length * 2, MAX_BODIES);
+
+        Shape[] newSlots = new Shape[size];
+        int[] newGenerations = new int[size];
+        int[] newDense = new int[size];
+        int[] newDormant = new int[size];
+        int[] newFree = new int[size];
+
+        System.arraycopy(slots, 0, newSlots, 0, slots.length);
+        System.arraycopy(generations, 0, newGenerations, 0, generations.length);
+        System.arraycopy(denseIndex, 0, newDense, 0, denseIndex.length);
+        System.arraycopy(dormantRecord, 0, newDormant, 0, dormantRecord.length);
+        System.arraycopy(freeSlots, 0, newFree, 0, freeCount);
+
+        slots = newSlots;
+        generations = newGenerations;
+        denseIndex = newDense;
+        dormantRecord = newDormant;
+        freeSlots = newFree;
+    }
+
+    /**
+     * Look up a body. A dormant body is woken up (along with the rest of its
+     * group) so there is a shape to return, so this should only be called
+     * between ticks.
+     *
+     * @param handle a handle given out by this world.
+     * @return the body with that handle, or null if it has been removed.
+     */
+    public Shape get(int handle) {
+        if (isDormant(handle))
+            wakeGroup(dormant.getGroup(dormantRecord[handle & INDEX_MASK]));
+
+        return isLive(handle) ? slots[handle & INDEX_MASK] : null;
+    }
+
+    /**
+     * @param handle a handle given out by this world.
+     * @return true if the handle is still good (the body hasn't been removed)
+     *         and the body is awake or asleep, but not dormant.
+     */
+    private boolean isLive(int handle) {
+        int index = handle & INDEX_MASK;
+        return handle != NULL_HANDLE && index < nextSlot && slots[index] != null
+                && slots[index].getHandle() == handle;
+    }
+
+    /**
+     * @param handle a handle given out by this world.
+     * @return true if the handle is still good and its body is dormant.
+     */
+    public boolean isDormant(int handle) {
+        int index = handle & INDEX_MASK;
+        return handle != NULL_HANDLE && index < nextSlot && dormantRecord[index] >= 0
+                && generations[index] == ((handle >>> INDEX_BITS) & GENERATION_MASK);
+    }
+
+    /**
+     * @param s the shape.
+     * @return true if the shape is in this world right now (not counting
+     *         queued adds).
+     */
+    public boolean contains(Shape s) {
+        return isLive(s.getHandle()) && slots[s.getHandle() & INDEX_MASK] == s;
+    }
+
+    /**
+     * @return every body in the world. Read only, and only safe to use
+     *         between ticks or from the thread stepping the world.
+     */
+    public List<Shape> getBodies() {
+        return readOnlyBodies;
+    }
+
+    /**
+     * @return the number of bodies in the world, not counting dormant ones.
+     */
+    public int size() {
+        return bodies.size();
+    }
+
+    /**
+     * @return the manager stepping this world.
+     */
+    public CollisionManager getManager() {
+        return manager;
+    }
+}
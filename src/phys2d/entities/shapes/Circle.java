@@ -6,7 +6,6 @@ import java.awt.Graphics2D;
 import phys2d.Phys2DMain;
 import phys2d.entities.Material;
 import phys2d.entities.Vec2D;
-import phys2d.entities.shapes.polygons.Polygon;
 
 public class Circle extends Shape {
 
@@ -38,45 +37,31 @@ public class Circle extends Shape {
      */
     public Circle(Vec2D[] pos, double radius, Material material) {
         super(pos, pos[0], 0, 10);
-        this.prevPos = new Vec2D[1];
-        prevPos[0] = pos[0];
         this.material = material;
         double temp = Math.PI * (radius * radius);
         temp /= 10000.0; // unit conversion cm^2 -> m^2
         setArea(temp);
         setMass(this.area * material.getDensity());
         this.radius = radius;
+        saveTransform();
     }
 
     /**
-     * Move the circle with the velocity vel
-     * 
-     * @param vel (px/s) the velocity to move the circle with
+     * Make a circle which shares its size with every other circle made from
+     * the same template.
+     *
+     * @param template a circle template.
+     * @param pos the center of the circle.
+     * @param material the material of the circle.
      */
-    @Override
-    public void move(double dt) {
-
-        prevPos[0] = this.centerOfMass.getCopy();
-
-        // Symplectic euler integrator
-        Vec2D accel = Vec2D.getScaled(netForce, invMass);
-        velocity.add(accel);
-        translate(Vec2D.getScaled(velocity, dt));
-
-        netForce = new Vec2D(0, 0);
-
-    }
-
-    @Override
-    public void incrementMove(double dt, double modifier) {
-        prevPos[0] = this.centerOfMass;
-
-        // Symplectic euler integrator
-        Vec2D accel = Vec2D.getScaled(netForce, invMass);
-        velocity.add(accel);
-        translate(Vec2D.getScaled(velocity, dt).getScaled(modifier));
-
-        netForce = new Vec2D(0, 0);
+    public Circle(ShapeTemplate template, Vec2D pos, Material material) {
+        super(new Vec2D[] { pos }, pos, 0, 10);
+        this.template = template;
+        this.material = material;
+        this.area = template.getArea();
+        setMass(this.area * material.getDensity());
+        this.radius = template.getRadius();
+        saveTransform();
     }
 
     public double getRadius() {
@@ -85,6 +70,8 @@ public class Circle extends Shape {
 
     public void setRadius(double radius) {
         this.radius = radius;
+        this.template = null; // doesn't match it anymore
+        transformChanged();
     }
 
     @Override
@@ -110,31 +97,27 @@ public class Circle extends Shape {
     }
 
     @Override
-    public Vec2D[] getAABBbounds() {
-        return new Vec2D[] {
-                new Vec2D(points[0].getX() - radius, points[0].getY() - radius), // bottom left
-                new Vec2D(points[0].getX() + radius, points[0].getY() + radius), // top right
-        };
+    protected void computeAABB() {
+        aabbMinX = points[0].getX() - radius;
+        aabbMinY = points[0].getY() - radius;
+        aabbMaxX = points[0].getX() + radius;
+        aabbMaxY = points[0].getY() + radius;
     }
 
+    /**
+     * Circles have always been swept by a whole second of their velocity,
+     * rather than by h. The speculative managers lean on the extra margin to
+     * catch fast circles, so it's kept.
+     */
     @Override
-    public Vec2D[] getSweptAABBbounds(double dt) {
-        Vec2D[] currentAABB = getAABBbounds();
-        Vec2D[] translatedAABB = new Vec2D[2];
-        Vec2D[] allPts = new Vec2D[4];
-
-        for (int i = 0; i < 2; i++) {
-            // do the minkowski sum of the aabb and the velocity
-            translatedAABB[i] = Vec2D.add(currentAABB[i], this.velocity);
-            allPts[i] = currentAABB[i];
-            allPts[currentAABB.length + i] = translatedAABB[i];
-        }
-        return Polygon.arrangePoints(Polygon.generateAABBbounds(allPts));
+    protected double getSweepTime(double h) {
+        return 1.0;
     }
 
     @Override
     public void translate(Vec2D translation) {
         points[0].add(translation);
+        transformChanged();
     }
 
     @Override
@@ -151,10 +134,12 @@ public class Circle extends Shape {
         // draw inner circle
         g2d.setColor(material.getColor());
 
-        int xInterp, yInterp; // The interpolated positions
+        double x = getInterpolatedX(alpha), y = getInterpolatedY(alpha); // The interpolated center
+
+        int xInterp, yInterp; // The interpolated corner
 
-        xInterp = (int) Math.round(((points[0].getX() - radius) * alpha) + ((prevPos[0].getX() - radius) * (1.0 - alpha)));
-        yInterp = (int) Math.round(((points[0].getY() + radius) * alpha) + ((prevPos[0].getY() + radius) * (1.0 - alpha)));
+        xInterp = (int) Math.round(x - radius);
+        yInterp = (int) Math.round(y + radius);
         yInterp = Phys2DMain.YRES - yInterp;
 
         // Inner circle
@@ -168,10 +153,7 @@ public class Circle extends Shape {
         g2d.setColor(Color.RED);
         //g2d.drawString(centerOfMass + "", (int) centerOfMass.getX() - 35, Phys2DMain.YRES - (int) centerOfMass.getY() - 13);
 
-        g2d.fillOval(
-                (int) Math.round(((points[0].getX() - 1) * alpha) + ((prevPos[0].getX() - 1) * (1.0 - alpha))),
-                Phys2DMain.YRES - (int) Math.round(((points[0].getY() - 1) * alpha) + ((prevPos[0].getY() - 1) * (1.0 - alpha))),
-                3, 3);
+        g2d.fillOval((int) Math.round(x - 1), Phys2DMain.YRES - (int) Math.round(y - 1), 3, 3);
 
         g2d.setColor(t);
     }
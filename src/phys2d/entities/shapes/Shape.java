@@ -1,15 +1,48 @@
 package phys2d.entities.shapes;
 
 import java.awt.Graphics2D;
+import java.util.concurrent.atomic.AtomicInteger;
 
+import phys2d.collisionLogic.tools.Island;
 import phys2d.entities.Material;
 import phys2d.entities.PhysEntity;
 import phys2d.entities.Vec2D;
+import phys2d.entities.World;
 
 public abstract class Shape extends PhysEntity {
 
+    private static final AtomicInteger nextId = new AtomicInteger();
+
+    /**
+     * A unique id for this shape, across every world in the JVM.
+     */
+    protected final int id;
+
+    /**
+     * The key given to this shape by a manager which runs without a world, or
+     * 0. Shapes in a world are keyed by their handle instead.
+     */
+    protected int localKey;
+
+    /**
+     * The handle given to this shape by the world it's in, or
+     * {@link World#NULL_HANDLE}.
+     */
+    protected int handle = World.NULL_HANDLE;
+
     protected Vec2D[] points;
-    protected Vec2D[] prevPos;
+
+    /**
+     * The shared geometry this shape was made from, or null if the shape has
+     * its own.
+     */
+    protected ShapeTemplate template;
+
+    /**
+     * The position of the COM and the angle at the start of the current tick.
+     * Only used to interpolate between ticks when drawing.
+     */
+    protected double prevX, prevY, prevAngle;
 
     protected double angle; // Angle CCW from +ve axis
     protected double area = 0;
@@ -19,8 +52,102 @@ public abstract class Shape extends PhysEntity {
     protected Vec2D netForce;
     protected Vec2D lastAccel;
 
+    /**
+     * Whether this shape has been put to sleep by its manager. Sleeping shapes
+     * are not integrated, re-inserted into the broadphase or narrowphased
+     * against each other.
+     */
+    protected boolean asleep;
+
+    /**
+     * How long (s) this shape has been moving slowly enough to sleep.
+     */
+    protected double sleepTime;
+
+    /**
+     * The island this shape went to sleep with. Null while awake.
+     */
+    protected Island sleepIsland;
+
+    /**
+     * Whether this shape sits out the current tick, because a longer step has
+     * already taken it past it. It doesn't move, and counts as immovable to
+     * everything that touches it.
+     */
+    protected boolean lowDetail;
+
+    /**
+     * How many ticks this shape is stepped by in the current tick. 1 normally,
+     * more than 1 on the tick it takes a longer step for its whole update
+     * interval, and 0 while it sits out the rest of that interval.
+     */
+    protected int stepTicks = 1;
+
+    /**
+     * The step the swept AABB covers during the current tick. Set at the start
+     * of the tick, and left alone if a longer step is cut back to a single
+     * tick, so every sweep in a tick sees the same thing.
+     */
+    protected int sweepTicks = 1;
+
+    /**
+     * The acceleration the shape is expected to have over a longer step.
+     */
+    protected double stepAx, stepAy;
+
+    /**
+     * The last tick the shape's current step takes it past.
+     */
+    protected long steppedUntil;
+
+    /**
+     * The velocity the shape had when it started sitting out its ticks. Its
+     * velocity reads 0 until it's given back.
+     */
+    protected double parkedVx, parkedVy;
+
+    /**
+     * The shape is kept at full detail until this tick, regardless of its
+     * level of detail.
+     */
+    protected long fullDetailUntil;
+
+    /**
+     * Whether this shape should always use continuous collision detection, no
+     * matter how fast it's moving.
+     */
+    protected boolean bullet;
+
+    /**
+     * The epochs of the collision manager in which this shape was last moved,
+     * and last had world forces applied.
+     */
+    protected int movedEpoch, forcedEpoch;
+
+    /**
+     * Bumped every time the shape moves, turns or changes size. Anything
+     * worked out from the shape's position is only good for the version it
+     * was worked out for.
+     */
+    protected int transformVersion;
+
+    /**
+     * The AABB of the shape, in min-max form. Filled in by
+     * {@link #computeAABB()}, and only good while aabbVersion matches the
+     * transform version.
+     */
+    protected double aabbMinX, aabbMinY, aabbMaxX, aabbMaxY;
+    private volatile int aabbVersion = -1;
+
+    /**
+     * The last swept AABB of the shape, or null. It's swapped whole, never
+     * changed, so a reader always gets four bounds from the same sweep.
+     */
+    private volatile SweptAABB swept;
+
     public Shape(Vec2D[] points, Vec2D centerOfMass, double angle, double mass) {
         super(mass);
+        this.id = nextId.getAndIncrement();
         this.points = points;
         this.centerOfMass = centerOfMass;
         this.angle = angle;
@@ -28,6 +155,61 @@ public abstract class Shape extends PhysEntity {
 
     }
 
+    /**
+     * @return the unique id of this shape.
+     */
+    public int getId() {
+        return id;
+    }
+
+    /**
+     * Get the key which pairs of shapes are keyed and ordered by. It's the
+     * shape's handle, so it only depends on what happened in its own world,
+     * unlike the id, which depends on every shape ever made in the JVM. A
+     * shape which isn't in a world is keyed by whatever its manager gave it.
+     *
+     * @return the key of this shape, or 0 if it has none yet.
+     */
+    public int getKey() {
+        return handle != World.NULL_HANDLE ? handle : localKey;
+    }
+
+    /**
+     * Only for use by the collision managers, for shapes which aren't in a
+     * world.
+     *
+     * @param localKey the key to give the shape.
+     */
+    public void setLocalKey(int localKey) {
+        this.localKey = localKey;
+    }
+
+    /**
+     * @return the handle of this shape in its world, or
+     *         {@link World#NULL_HANDLE} if it isn't in one. A shape which
+     *         went dormant keeps its handle, even though the world dropped it.
+     */
+    public int getHandle() {
+        return handle;
+    }
+
+    /**
+     * Only for use by {@link World}.
+     *
+     * @param handle the handle the world gave this shape.
+     */
+    public void setHandle(int handle) {
+        this.handle = handle;
+    }
+
+    /**
+     * @return the shared geometry this shape was made from, or null if it has
+     *         its own.
+     */
+    public ShapeTemplate getTemplate() {
+        return template;
+    }
+
     public void setAngle(double angle) {
         this.angle = angle;
     }
@@ -86,19 +268,290 @@ public abstract class Shape extends PhysEntity {
     @Override
     public String toString() {
         String st = this.getClass().getSimpleName() + ": ";
-        for (Vec2D p : points) {
+        for (Vec2D p : getPoints()) {
             st += p + " ";
         }
         st += "COM: " + centerOfMass;
         return st;
     }
 
+    /**
+     * Set the velocity in px/s and wake this shape up.
+     * 
+     * @param velocity the velocity to set
+     */
+    @Override
+    public void setVelocity(Vec2D velocity) {
+        thaw();
+        super.setVelocity(velocity);
+        wake();
+    }
+
+    /**
+     * Apply an instantaneous impulse to this shape from outside the
+     * simulation. Wakes up the shape (and its island) if it was sleeping.
+     * 
+     * @param impulse the impulse to apply.
+     */
+    public void applyImpulse(Vec2D impulse) {
+        thaw();
+        velocity.add(Vec2D.getScaled(impulse, invMass));
+        wake();
+    }
+
+    /**
+     * Reset the sleep timer of this shape, and if it is sleeping, ask for its
+     * whole island to be woken up at the start of the next tick.
+     */
+    public void wake() {
+        sleepTime = 0;
+        if (asleep && sleepIsland != null) {
+            sleepIsland.requestWake();
+        }
+    }
+
+    /**
+     * @return whether this shape is sleeping.
+     */
+    public boolean isAsleep() {
+        return asleep;
+    }
+
+    /**
+     * Should only be called by the collision managers.
+     * 
+     * @param asleep whether this shape is sleeping.
+     */
+    public void setAsleep(boolean asleep) {
+        this.asleep = asleep;
+    }
+
+    /**
+     * @return how long (s) this shape has been slow enough to sleep.
+     */
+    public double getSleepTime() {
+        return sleepTime;
+    }
+
+    /**
+     * @param sleepTime how long (s) this shape has been slow enough to sleep.
+     */
+    public void setSleepTime(double sleepTime) {
+        this.sleepTime = sleepTime;
+    }
+
+    /**
+     * @return the island this shape is sleeping in, or null if it is awake.
+     */
+    public Island getSleepIsland() {
+        return sleepIsland;
+    }
+
+    /**
+     * @param sleepIsland the island this shape is sleeping in.
+     */
+    public void setSleepIsland(Island sleepIsland) {
+        this.sleepIsland = sleepIsland;
+    }
+
+    /**
+     * @return the epoch in which this shape was last moved.
+     */
+    public int getMovedEpoch() {
+        return movedEpoch;
+    }
+
+    /**
+     * @param movedEpoch the epoch in which this shape was last moved.
+     */
+    public void setMovedEpoch(int movedEpoch) {
+        this.movedEpoch = movedEpoch;
+    }
+
+    /**
+     * @return the epoch in which this shape last had world forces applied.
+     */
+    public int getForcedEpoch() {
+        return forcedEpoch;
+    }
+
+    /**
+     * @param forcedEpoch the epoch in which this shape last had world forces
+     *            applied.
+     */
+    public void setForcedEpoch(int forcedEpoch) {
+        this.forcedEpoch = forcedEpoch;
+    }
+
+    /**
+     * @return whether this shape always uses continuous collision detection.
+     */
+    public boolean isBullet() {
+        return bullet;
+    }
+
+    /**
+     * Mark this shape as a bullet. Bullets always use continuous collision
+     * detection, which stops them from tunnelling through thin shapes. Shapes
+     * that aren't bullets only use it when they move fast enough.
+     * 
+     * @param bullet whether this shape should always use continuous collision
+     *            detection.
+     */
+    public void setBullet(boolean bullet) {
+        this.bullet = bullet;
+    }
+
+    /**
+     * @return whether this shape sits out the current tick, because a longer
+     *         step has already taken it past it.
+     */
+    public boolean isLowDetail() {
+        return lowDetail;
+    }
+
+    /**
+     * @return how many ticks this shape is stepped by in the current tick. 0
+     *         if it sits the tick out.
+     */
+    public int getStepTicks() {
+        return stepTicks;
+    }
+
+    /**
+     * @return how many ticks the swept AABB covers during the current tick.
+     */
+    public int getSweepTicks() {
+        return sweepTicks;
+    }
+
+    /**
+     * @return the x acceleration expected over a longer step.
+     */
+    public double getStepAx() {
+        return stepAx;
+    }
+
+    /**
+     * @return the y acceleration expected over a longer step.
+     */
+    public double getStepAy() {
+        return stepAy;
+    }
+
+    /**
+     * @return the last tick the shape's current step takes it past.
+     */
+    public long getSteppedUntil() {
+        return steppedUntil;
+    }
+
+    /**
+     * Plan how many ticks this shape is stepped by, starting with the current
+     * one. Should only be called by the collision managers, at the start of a
+     * tick. <br>
+     * The swept AABB covers the whole step, including the acceleration over
+     * it.
+     * 
+     * @param tick the current tick.
+     * @param ticks how many ticks to step by.
+     * @param ax the x acceleration expected over the step.
+     * @param ay the y acceleration expected over the step.
+     */
+    public void planStep(long tick, int ticks, double ax, double ay) {
+        stepTicks = ticks;
+        sweepTicks = ticks;
+        stepAx = ax;
+        stepAy = ay;
+        steppedUntil = tick + ticks - 1;
+        swept = null;
+    }
+
+    /**
+     * Cut a longer step planned for this tick back to a single tick. The swept
+     * AABB still covers the longer step until the next tick. Should only be
+     * called by the collision managers.
+     */
+    public void cutStep() {
+        if (stepTicks > 1) {
+            steppedUntil -= stepTicks - 1;
+            stepTicks = 1;
+        }
+    }
+
+    /**
+     * Sit out the current tick. The velocity is put aside, so the shape looks
+     * still to everything else, until {@link #thaw()}. Should only be called
+     * by the collision managers.
+     */
+    public void freeze() {
+        if (!lowDetail) {
+            parkedVx = velocity.getX();
+            parkedVy = velocity.getY();
+            velocity.setX(0);
+            velocity.setY(0);
+            lowDetail = true;
+        }
+
+        stepTicks = 0;
+        sweepTicks = 0;
+        swept = null;
+    }
+
+    /**
+     * Stop sitting out ticks, and give back the velocity put aside by
+     * {@link #freeze()}. The shape is stepped a tick at a time until the next
+     * step is planned. Should only be called by the collision managers, and
+     * by the shape before its velocity is changed from outside.
+     */
+    public void thaw() {
+        if (lowDetail) {
+            velocity.setX(parkedVx);
+            velocity.setY(parkedVy);
+            lowDetail = false;
+        }
+
+        if (sweepTicks != 1)
+            swept = null;
+
+        stepTicks = 1;
+        sweepTicks = 1;
+    }
+
+    /**
+     * @return the tick until which this shape is kept at full detail.
+     */
+    public long getFullDetailUntil() {
+        return fullDetailUntil;
+    }
+
+    /**
+     * Keep this shape at full detail until the given tick. Only ever pushes
+     * the tick forward.
+     * 
+     * @param tick the last tick to keep this shape at full detail for.
+     */
+    public void keepFullDetailUntil(long tick) {
+        fullDetailUntil = Math.max(fullDetailUntil, tick);
+    }
+
     public void addForce(Vec2D force) {
         this.netForce.add(force);
         // System.out.println("FORCE ADDED");
         // System.out.println(this.netForce);
     }
 
+    /**
+     * Same as {@link #addForce(Vec2D)}, without needing a vector.
+     * 
+     * @param fx the x component of the force.
+     * @param fy the y component of the force.
+     */
+    public void addForce(double fx, double fy) {
+        netForce.setX(netForce.getX() + fx);
+        netForce.setY(netForce.getY() + fy);
+    }
+
     public abstract Vec2D[] getMinMax(Vec2D ref);
 
     public abstract Vec2D getMin(Vec2D ref);
@@ -107,20 +560,327 @@ public abstract class Shape extends PhysEntity {
 
     public abstract void translate(Vec2D translation);
 
-    public abstract void move(double dt);
+    /**
+     * Whether this shape is immovable. Static shapes are kept out of the
+     * per-tick broadphase and are never paired with each other.
+     * 
+     * @return true if this shape can never move.
+     */
+    public boolean isStatic() {
+        return false;
+    }
+
+    /**
+     * Apply all impending forces to this shape and move it by dt.
+     * 
+     * @param dt the physical delta time of the simulation.
+     */
+    public void move(double dt) {
+        incrementMove(dt, 1.0);
+    }
+
+    /**
+     * Apply all impending forces to this shape and move it by a fraction of
+     * dt, using semi-implicit Euler. <br>
+     * Managers moving lots of shapes at once should use a
+     * {@link phys2d.collisionLogic.integrators.Integrator} instead.
+     * 
+     * @param dt the physical delta time of the simulation.
+     * @param modifier the fraction of dt to move by.
+     */
+    public void incrementMove(double dt, double modifier) {
+        velocity.setX(velocity.getX() + (netForce.getX() * invMass));
+        velocity.setY(velocity.getY() + (netForce.getY() * invMass));
+
+        translate(new Vec2D(velocity.getX() * dt * modifier, velocity.getY() * dt * modifier));
+
+        netForce.setX(0);
+        netForce.setY(0);
+    }
+
+    /**
+     * Set the state of this shape after it has been integrated as part of a
+     * batch. The impending forces have been used up by the integrator, so
+     * they are cleared. <br>
+     * The COM is written straight over instead of going through
+     * {@link #translate(Vec2D)}, so nothing is allocated per body per tick.
+     * Everything else about the position is worked out from the COM and the
+     * transform version.
+     * 
+     * @param x the new x position of the center of mass.
+     * @param y the new y position of the center of mass.
+     * @param vx the new x velocity.
+     * @param vy the new y velocity.
+     * @param ticks how many ticks the step covered. Usually 1, or a fraction
+     *            of one for a substep. Anything which turns by a fixed amount
+     *            per tick turns by that much times this.
+     */
+    public void setIntegratedState(double x, double y, double vx, double vy, double ticks) {
+        centerOfMass.setX(x);
+        centerOfMass.setY(y);
+        transformChanged();
+
+        velocity.setX(vx);
+        velocity.setY(vy);
+
+        netForce.setX(0);
+        netForce.setY(0);
+    }
+
+    /**
+     * Remember the current position and angle as the previous ones, because a
+     * new tick is starting. Used to interpolate between the two when drawing.
+     */
+    public void saveTransform() {
+        prevX = centerOfMass.getX();
+        prevY = centerOfMass.getY();
+        prevAngle = angle;
+    }
+
+    /**
+     * @param alpha how far between the last tick and this one (0 to 1).
+     * @return the x of the COM interpolated between the last tick and this
+     *         one.
+     */
+    protected double getInterpolatedX(double alpha) {
+        return (centerOfMass.getX() * alpha) + (prevX * (1.0 - alpha));
+    }
+
+    /**
+     * @param alpha how far between the last tick and this one (0 to 1).
+     * @return the y of the COM interpolated between the last tick and this
+     *         one.
+     */
+    protected double getInterpolatedY(double alpha) {
+        return (centerOfMass.getY() * alpha) + (prevY * (1.0 - alpha));
+    }
 
-    public abstract void incrementMove(double dt, double modifier);
+    /**
+     * @param alpha how far between the last tick and this one (0 to 1).
+     * @return the angle interpolated between the last tick and this one, the
+     *         short way round.
+     */
+    protected double getInterpolatedAngle(double alpha) {
+        double delta = Math.IEEEremainder(angle - prevAngle, 2.0 * Math.PI);
+        return prevAngle + (delta * alpha);
+    }
 
     public abstract String repr();
 
     /**
-     * Generate the bounding AABB for this polygon in min-max format
+     * Mark everything worked out from the shape's position as out of date,
+     * because it moved, turned or changed size.
+     */
+    protected void transformChanged() {
+        transformVersion++;
+    }
+
+    /**
+     * Work out the AABB of the shape at its current position, and store it in
+     * aabbMinX, aabbMinY, aabbMaxX and aabbMaxY.
+     */
+    protected abstract void computeAABB();
+
+    /**
+     * Make sure the cached AABB is up to date with the transform.
+     */
+    private void updateAABB() {
+        if (aabbVersion != transformVersion) {
+            synchronized (this) {
+                int version = transformVersion;
+
+                if (aabbVersion != version) {
+                    computeAABB();
+                    aabbVersion = version;
+                }
+            }
+        }
+    }
+
+    /**
+     * Get the AABB of the shape swept along its velocity for h. The last
+     * sweep is cached, and handed out again as long as the transform, the
+     * velocity and h are all the same. <br>
+     * A shape taking a longer step this tick is swept over the whole step, as
+     * if h were that many times longer, and also along where its acceleration
+     * takes it. A shape sitting the tick out isn't swept at all. <br>
+     * Use this instead of the single getters when more than one bound is
+     * needed. Two threads can sweep the same shape for different times at
+     * once (the static pairs are found alongside the dynamic ones), and the
+     * single getters can then each see a different sweep.
+     *
+     * @param h the time to sweep the shape over.
+     * @return the swept AABB. It never changes.
+     */
+    public SweptAABB getSweptAABB(double h) {
+        double vx = getVelocity().getX();
+        double vy = getVelocity().getY();
+        SweptAABB b = swept;
+
+        if (b != null && b.version == transformVersion && b.ticks == sweepTicks && b.vx == vx && b.vy == vy
+                && b.time == h)
+            return b;
+
+        updateAABB();
+
+        synchronized (this) {
+            b = sweep(h, sweepTicks, vx, vy);
+            swept = b;
+        }
+
+        return b;
+    }
+
+    /**
+     * Get the AABB of the shape swept as if it were stepped by the given
+     * number of ticks of h. Only the sweep for the shape's own step is cached,
+     * so any other one is worked out from scratch.
+     *
+     * @param h the length of a tick.
+     * @param ticks the number of ticks.
+     * @return the swept AABB.
+     */
+    public SweptAABB getSweptAABB(double h, int ticks) {
+        if (ticks == sweepTicks || sweepTicks == 0)
+            return getSweptAABB(h);
+
+        updateAABB();
+
+        synchronized (this) {
+            return sweep(h, ticks, getVelocity().getX(), getVelocity().getY());
+        }
+    }
+
+    /**
+     * Work out a swept AABB. The AABB has to be up to date, and the caller
+     * has to hold the lock.
+     *
+     * @param h the length of a tick.
+     * @param ticks the number of ticks the shape is stepped by, or 0 if it
+     *            isn't moving at all.
+     * @param vx the x velocity of the shape.
+     * @param vy the y velocity of the shape.
+     * @return the swept AABB.
+     */
+    private SweptAABB sweep(double h, int ticks, double vx, double vy) {
+        if (ticks <= 1) {
+            double time = ticks == 0 ? 0 : getSweepTime(h);
+            double dx = vx * time;
+            double dy = vy * time;
+
+            return new SweptAABB(Math.min(aabbMinX, aabbMinX + dx), Math.min(aabbMinY, aabbMinY + dy),
+                    Math.max(aabbMaxX, aabbMaxX + dx), Math.max(aabbMaxY, aabbMaxY + dy), transformVersion, ticks, vx,
+                    vy, h);
+        }
+
+        // The step is a single pass of the integrator, which lands it at
+        // v*T + a*T^2 rather than v*T + a*T^2/2.
+        double stepTime = h * ticks;
+        double time = Math.max(getSweepTime(stepTime), stepTime);
+        double dx = vx * time, dy = vy * time;
+        double ex = (vx * stepTime) + (stepAx * stepTime * stepTime);
+        double ey = (vy * stepTime) + (stepAy * stepTime * stepTime);
+
+        return new SweptAABB(aabbMinX + Math.min(0, Math.min(dx, ex)), aabbMinY + Math.min(0, Math.min(dy, ey)),
+                aabbMaxX + Math.max(0, Math.max(dx, ex)), aabbMaxY + Math.max(0, Math.max(dy, ey)), transformVersion,
+                ticks, vx, vy, h);
+    }
+
+    /**
+     * @param h the time the swept AABB was asked for.
+     * @return the time the shape is actually swept over.
+     */
+    protected double getSweepTime(double h) {
+        return h;
+    }
+
+    /**
+     * @return the min x of the shape's AABB.
+     */
+    public double getAABBMinX() {
+        updateAABB();
+        return aabbMinX;
+    }
+
+    /**
+     * @return the min y of the shape's AABB.
+     */
+    public double getAABBMinY() {
+        updateAABB();
+        return aabbMinY;
+    }
+
+    /**
+     * @return the max x of the shape's AABB.
+     */
+    public double getAABBMaxX() {
+        updateAABB();
+        return aabbMaxX;
+    }
+
+    /**
+     * @return the max y of the shape's AABB.
+     */
+    public double getAABBMaxY() {
+        updateAABB();
+        return aabbMaxY;
+    }
+
+    /**
+     * @param h the time to sweep the shape over.
+     * @return the min x of the shape's AABB swept along its velocity for h.
+     */
+    public double getSweptMinX(double h) {
+        return getSweptAABB(h).getMinX();
+    }
+
+    /**
+     * @param h the time to sweep the shape over.
+     * @return the min y of the shape's AABB swept along its velocity for h.
+     */
+    public double getSweptMinY(double h) {
+        return getSweptAABB(h).getMinY();
+    }
+
+    /**
+     * @param h the time to sweep the shape over.
+     * @return the max x of the shape's AABB swept along its velocity for h.
+     */
+    public double getSweptMaxX(double h) {
+        return getSweptAABB(h).getMaxX();
+    }
+
+    /**
+     * @param h the time to sweep the shape over.
+     * @return the max y of the shape's AABB swept along its velocity for h.
+     */
+    public double getSweptMaxY(double h) {
+        return getSweptAABB(h).getMaxY();
+    }
+
+    /**
+     * Generate the bounding AABB for this shape in min-max format. The AABB
+     * is cached, so this only allocates the vectors. Hot paths should use
+     * {@link #getAABBMinX()} and friends instead.
      * 
-     * @return the min and max vertices of the bounding AABB for this polygon
+     * @return the min and max vertices of the bounding AABB for this shape
      */
-    public abstract Vec2D[] getAABBbounds();
+    public Vec2D[] getAABBbounds() {
+        updateAABB();
+        return new Vec2D[] { new Vec2D(aabbMinX, aabbMinY), new Vec2D(aabbMaxX, aabbMaxY) };
+    }
 
-    public abstract Vec2D[] getSweptAABBbounds(double dt);
+    /**
+     * Return the min and max points of the shape's AABB swept along its
+     * velocity vector for dt. Cached the same way as the AABB.
+     * 
+     * @param dt the time to sweep the shape over.
+     * @return the min and max vertices of the swept AABB.
+     */
+    public Vec2D[] getSweptAABBbounds(double dt) {
+        SweptAABB b = getSweptAABB(dt);
+        return new Vec2D[] { new Vec2D(b.getMinX(), b.getMinY()), new Vec2D(b.getMaxX(), b.getMaxY()) };
+    }
 
     /**
      * Generate AABB bound to enclose all the points in pts
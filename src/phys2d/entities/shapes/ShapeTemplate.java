@@ -0,0 +1,217 @@
+package phys2d.entities.shapes;
+
+import phys2d.entities.Vec2D;
+import phys2d.entities.shapes.polygons.Polygon;
+
+/**
+ * The geometry of a shape, without any position. <br>
+ * Worlds are often full of shapes which are all the same size (a crowd of
+ * small squares or circles). Instead of every one of them working out and
+ * carrying its own local points, normals and area, they can all share one
+ * template, and only keep their own transform and velocity. <br>
+ * Templates are immutable. Nothing handed out by one should ever be changed,
+ * because every shape made from it sees the same arrays.
+ *
+ * @author afsheen
+ */
+public final class ShapeTemplate {
+
+    /**
+     * The vertices relative to the centroid, before rotation, in clockwise
+     * order. Empty for circles.
+     */
+    private final Vec2D[] localPoints;
+
+    /**
+     * The left normals of the sides, before rotation. Side i goes from vertex
+     * i to vertex i + 1 (wrapping around).
+     */
+    private final Vec2D[] localNormals;
+
+    private final double radius;
+    private final double area;
+    private final double unitInertia;
+    private final double boundingRadius;
+    private final double width, height;
+
+    private ShapeTemplate(Vec2D[] localPoints, double radius, double area, double unitInertia) {
+        this.localPoints = localPoints;
+        this.radius = radius;
+        this.area = area;
+        this.unitInertia = unitInertia;
+
+        localNormals = new Vec2D[localPoints.length];
+        for (int i = 0; i < localPoints.length; i++) {
+            Vec2D next = localPoints[(i + 1) % localPoints.length];
+            localNormals[i] = Vec2D.sub(next, localPoints[i]).getNormal();
+        }
+
+        double maxDist = radius;
+        double minX = -radius, maxX = radius, minY = -radius, maxY = radius;
+
+        for (Vec2D p : localPoints) {
+            maxDist = Math.max(maxDist, Math.hypot(p.getX(), p.getY()));
+            minX = Math.min(minX, p.getX());
+            maxX = Math.max(maxX, p.getX());
+            minY = Math.min(minY, p.getY());
+            maxY = Math.max(maxY, p.getY());
+        }
+
+        boundingRadius = maxDist;
+        width = maxX - minX;
+        height = maxY - minY;
+    }
+
+    /**
+     * @param radius the radius of the circles.
+     * @return a template for circles of the given radius.
+     */
+    public static ShapeTemplate circle(double radius) {
+        double area = Math.PI * (radius * radius);
+        area /= 10000.0; // unit conversion cm^2 -> m^2
+
+        return new ShapeTemplate(new Vec2D[0], radius, area, (radius * radius) / 2.0);
+    }
+
+    /**
+     * @param length the horizontal extent of the rectangles.
+     * @param height the vertical extent of the rectangles.
+     * @return a template for rectangles of the given size. The vertices are in
+     *         the same order a {@link phys2d.entities.shapes.polygons.Rectangle}
+     *         puts them in.
+     */
+    public static ShapeTemplate rectangle(double length, double height) {
+        Vec2D[] local = new Vec2D[] {
+                new Vec2D(-length / 2.0, height / 2.0),
+                new Vec2D(length / 2.0, height / 2.0),
+                new Vec2D(length / 2.0, -height / 2.0),
+                new Vec2D(-length / 2.0, -height / 2.0)
+        };
+
+        double area = (length * height) / 10000.0; // px^2 (cm^2) to m^2
+        double unitInertia = ((length * length) + (height * height)) / 12.0;
+
+        return new ShapeTemplate(local, 0, area, unitInertia);
+    }
+
+    /**
+     * @param points the vertices of a convex polygon, anywhere and in any
+     *            order.
+     * @return a template for polygons of that shape. The points are sorted
+     *         clockwise and moved so the centroid is on the origin.
+     */
+    public static ShapeTemplate polygon(Vec2D[] points) {
+        Vec2D[] sorted = Polygon.arrangePoints(points);
+
+        double cross, areaSum = 0, xSum = 0, ySum = 0;
+        Vec2D p1, p2;
+
+        for (int i = 0; i < sorted.length; i++) {
+            p1 = sorted[i];
+            p2 = sorted[(i + 1) % sorted.length];
+
+            cross = (p1.getX() * p2.getY()) - (p2.getX() * p1.getY());
+            areaSum += cross;
+            xSum += (p1.getX() + p2.getX()) * cross;
+            ySum += (p1.getY() + p2.getY()) * cross;
+        }
+
+        double comX = xSum / (3.0 * areaSum);
+        double comY = ySum / (3.0 * areaSum);
+
+        Vec2D[] local = new Vec2D[sorted.length];
+        for (int i = 0; i < sorted.length; i++)
+            local[i] = new Vec2D(sorted[i].getX() - comX, sorted[i].getY() - comY);
+
+        // Second moment of area about the centroid, per unit area.
+        double moment = 0, twiceArea = 0;
+        for (int i = 0; i < local.length; i++) {
+            p1 = local[i];
+            p2 = local[(i + 1) % local.length];
+
+            cross = (p1.getX() * p2.getY()) - (p2.getX() * p1.getY());
+            twiceArea += cross;
+            moment += cross * ((p1.getX() * p1.getX()) + (p1.getX() * p2.getX()) + (p2.getX() * p2.getX())
+                    + (p1.getY() * p1.getY()) + (p1.getY() * p2.getY()) + (p2.getY() * p2.getY()));
+        }
+
+        double unitInertia = (moment / 12.0) / (twiceArea / 2.0);
+        double area = Math.abs(twiceArea / 2.0) / 10000.0; // px^2 (cm^2) to m^2
+
+        return new ShapeTemplate(local, 0, area, unitInertia);
+    }
+
+    /**
+     * @return true if this is a circle template.
+     */
+    public boolean isCircle() {
+        return localPoints.length == 0;
+    }
+
+    /**
+     * @return the vertices relative to the centroid, before rotation. <b>Do
+     *         not change them</b>, they're shared.
+     */
+    public Vec2D[] getLocalPoints() {
+        return localPoints;
+    }
+
+    /**
+     * @return the left normals of the sides, before rotation. <b>Do not change
+     *         them</b>, they're shared.
+     */
+    public Vec2D[] getLocalNormals() {
+        return localNormals;
+    }
+
+    /**
+     * @return the number of vertices. Zero for circles.
+     */
+    public int getVertexCount() {
+        return localPoints.length;
+    }
+
+    /**
+     * @return the radius, for circle templates.
+     */
+    public double getRadius() {
+        return radius;
+    }
+
+    /**
+     * @return the area, in m^2.
+     */
+    public double getArea() {
+        return area;
+    }
+
+    /**
+     * @return the moment of inertia about the centroid for a mass of 1 (in
+     *         px^2). Multiply by the mass of a shape to get its inertia.
+     */
+    public double getUnitInertia() {
+        return unitInertia;
+    }
+
+    /**
+     * @return the distance from the centroid to the furthest point of the
+     *         shape, at any angle.
+     */
+    public double getBoundingRadius() {
+        return boundingRadius;
+    }
+
+    /**
+     * @return the horizontal extent, before rotation.
+     */
+    public double getWidth() {
+        return width;
+    }
+
+    /**
+     * @return the vertical extent, before rotation.
+     */
+    public double getHeight() {
+        return height;
+    }
+}
@@ -0,0 +1,72 @@
+package phys2d.entities.shapes;
+
+/**
+ * The AABB of a shape swept along its velocity for some time, in min-max
+ * form. <br>
+ * It's never changed once it's made. A shape swaps in a new one whenever it
+ * moves or is asked for a different time, so all four bounds read from one of
+ * these always come from the same sweep, even if another thread sweeps the
+ * same shape at the same time.
+ *
+ * @author afsheen
+ */
+public final class SweptAABB {
+
+    private final double minX, minY, maxX, maxY;
+
+    /**
+     * What the sweep was worked out for. Only looked at by the shape, to tell
+     * whether it can hand this one out again.
+     */
+    final int version, ticks;
+    final double vx, vy, time;
+
+    SweptAABB(double minX, double minY, double maxX, double maxY, int version, int ticks, double vx, double vy,
+            double time) {
+        this.minX = minX;
+        this.minY = minY;
+        this.maxX = maxX;
+        this.maxY = maxY;
+        this.version = version;
+        this.ticks = ticks;
+        this.vx = vx;
+        this.vy = vy;
+        this.time = time;
+    }
+
+    /**
+     * @return the min x of the swept AABB.
+     */
+    public double getMinX() {
+        return minX;
+    }
+
+    /**
+     * @return the min y of the swept AABB.
+     */
+    public double getMinY() {
+        return minY;
+    }
+
+    /**
+     * @return the max x of the swept AABB.
+     */
+    public double getMaxX() {
+        return maxX;
+    }
+
+    /**
+     * @return the max y of the swept AABB.
+     */
+    public double getMaxY() {
+        return maxY;
+    }
+
+    /**
+     * @param other another swept AABB.
+     * @return true if the two boxes overlap, edges included.
+     */
+    public boolean overlaps(SweptAABB other) {
+        return !(minX > other.maxX || maxX < other.minX || minY > other.maxY || maxY < other.minY);
+    }
+}
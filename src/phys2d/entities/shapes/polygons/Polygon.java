@@ -9,13 +9,32 @@ import phys2d.collisionLogic.tools.MiscTools;
 import phys2d.entities.Material;
 import phys2d.entities.Vec2D;
 import phys2d.entities.shapes.Shape;
+import phys2d.entities.shapes.ShapeTemplate;
 
 public class Polygon extends Shape {
 
     protected double angularVelocity;
 
+    /**
+     * The vertices of the polygon relative to its COM, before rotation. The
+     * world space points are worked out from these and the transform (the COM
+     * and the angle).
+     */
     protected Vec2D[] purePoly;
 
+    /**
+     * The cos and sin of the current angle, so they aren't recomputed for
+     * every vertex.
+     */
+    protected double cos = 1, sin = 0;
+
+    /**
+     * The transform version the world space points were last brought up to
+     * date with. They're only updated when something asks for them, and
+     * they've fallen behind.
+     */
+    private volatile int pointsVersion;
+
     /**
      * Create a new polygon consisting of 'points' vertices of material rubber.
      * 
@@ -72,10 +91,6 @@ public class Polygon extends Shape {
 
         setMass(area * material.getDensity());
 
-        this.prevPos = new Vec2D[this.points.length + 1];
-
-        resetPrevPos();
-
         lastAccel = new Vec2D(0, 0);
 
         // generate the pure poly before rotation is applied.
@@ -83,6 +98,41 @@ public class Polygon extends Shape {
 
         if (angle != 0.0)
             setAngle(angle);
+
+        saveTransform();
+    }
+
+    /**
+     * Make a polygon which shares its local points, normals and area with
+     * every other polygon made from the same template. Only the transform and
+     * the world space points belong to this polygon.
+     *
+     * @param template the shared geometry.
+     * @param center where to put the centroid.
+     * @param angle radians by which to rotate the polygon.
+     * @param material the material of the polygon.
+     */
+    public Polygon(ShapeTemplate template, Vec2D center, double angle, Material material) {
+        super(new Vec2D[template.getVertexCount()], center, angle, 10);
+
+        this.template = template;
+        this.material = material;
+        this.purePoly = template.getLocalPoints();
+        this.area = template.getArea();
+
+        for (int i = 0; i < points.length; i++)
+            points[i] = new Vec2D(0, 0);
+
+        setMass(area * material.getDensity());
+
+        lastAccel = new Vec2D(0, 0);
+
+        if (angle != 0.0)
+            setAngle(angle);
+        else
+            transformChanged(); // the points still have to be placed
+
+        saveTransform();
     }
 
     /**
@@ -149,22 +199,56 @@ public class Polygon extends Shape {
     }
 
     /**
-     * Rotate the points of the polygon about the COM to the current angle.
+     * Rotate the polygon about the COM to the current angle. The points
+     * themselves are only moved the next time they're asked for.
      */
     public void rotatePoints() {
-        for (int i = 0; i < points.length; i++) {
+        cos = Math.cos(angle);
+        sin = Math.sin(angle);
+        transformChanged();
+    }
+
+    /**
+     * Return the vertices of the polygon in world space, bringing them up to
+     * date with the transform first if the polygon has moved since they were
+     * last asked for. <br>
+     * The returned points are updated in place, so they shouldn't be held on
+     * to across a move.
+     *
+     * @return the vertices of the polygon.
+     */
+    @Override
+    public Vec2D[] getPoints() {
+        if (pointsVersion != transformVersion)
+            updatePoints();
+        return points;
+    }
+
+    /**
+     * Work out the world space points from the local ones and the transform.
+     * Several threads can ask for the points of the same polygon (ghosts in
+     * the tiled manager, islands solved in parallel), so only one of them
+     * gets to write them.
+     */
+    private synchronized void updatePoints() {
+        int version = transformVersion;
+
+        if (pointsVersion == version)
+            return;
+
+        double comX = centerOfMass.getX();
+        double comY = centerOfMass.getY();
 
+        for (int i = 0; i < points.length; i++) {
             // No need to translate to origin because the purePoly is already centered on the origin.
             double pureX = purePoly[i].getX();
             double pureY = purePoly[i].getY();
 
-            // rotate the point
-            points[i].setX((pureX * Math.cos(angle)) - (pureY * Math.sin(angle)));
-            points[i].setY((pureX * Math.sin(angle)) + (pureY * Math.cos(angle)));
-
-            // Translate the point so that it is centered around center of mass
-            points[i].add(centerOfMass);
+            points[i].setX((pureX * cos) - (pureY * sin) + comX);
+            points[i].setY((pureX * sin) + (pureY * cos) + comY);
         }
+
+        pointsVersion = version;
     }
 
     /**
@@ -187,7 +271,7 @@ public class Polygon extends Shape {
      */
     @Override
     public Vec2D[] getMinMax(Vec2D ref) {
-        return MiscTools.getMinMax(points, ref);
+        return MiscTools.getMinMax(getPoints(), ref);
     }
 
     /**
@@ -196,7 +280,7 @@ public class Polygon extends Shape {
      */
     @Override
     public Vec2D getMin(Vec2D ref) {
-        return MiscTools.getMin(points, ref);
+        return MiscTools.getMin(getPoints(), ref);
     }
 
     /**
@@ -205,7 +289,7 @@ public class Polygon extends Shape {
      */
     @Override
     public Vec2D getMax(Vec2D ref) {
-        return MiscTools.getMax(points, ref);
+        return MiscTools.getMax(getPoints(), ref);
     }
 
     /**
@@ -215,6 +299,19 @@ public class Polygon extends Shape {
      *         polygon.
      */
     public Vec2D[] getNormals() {
+        if (template != null) { // just rotate the shared ones
+            Vec2D[] local = template.getLocalNormals();
+            Vec2D[] normals = new Vec2D[local.length];
+
+            for (int i = 0; i < local.length; i++) {
+                double x = local[i].getX();
+                double y = local[i].getY();
+                normals[i] = new Vec2D((x * cos) - (y * sin), (x * sin) + (y * cos));
+            }
+            return normals;
+        }
+
+        Vec2D[] points = getPoints();
         Vec2D[] normals = new Vec2D[points.length];
 
         normals[normals.length - 1] = Vec2D.sub(points[0], points[points.length - 1]).getNormal();
@@ -233,9 +330,7 @@ public class Polygon extends Shape {
     @Override
     public void translate(Vec2D translation) {
         centerOfMass.add(translation);
-        for (Vec2D p : points) {
-            p.add(translation);
-        }
+        transformChanged();
     }
 
     /**
@@ -247,38 +342,26 @@ public class Polygon extends Shape {
     @Override
     public void move(double dt) { // TODO
 
-        resetPrevPos();
+        super.move(dt);
 
-        // Symp EULER INTEGRATOR
-        Vec2D accel = Vec2D.getScaled(netForce, invMass);
-        velocity.add(accel);
-        translate(Vec2D.getScaled(velocity, dt));
+        applySpin(1.0);
+    }
 
-        netForce = new Vec2D(0, 0);
+    @Override
+    public void setIntegratedState(double x, double y, double vx, double vy, double ticks) {
+        super.setIntegratedState(x, y, vx, vy, ticks);
 
-        if (angularVelocity != 0.0) // if there is a spin, apply it
-            setAngle(angle + angularVelocity);
+        applySpin(ticks);
     }
 
     /**
-     * Apply all impending forces to this polygon and move this polygon
-     * forward the percent of dt specificed in the modifier.
+     * Rotate the polygon by its angular velocity, if it has any.
      * 
-     * @param dt the physical delta time of the simulation.
-     * @param modifier the percent of the frame by which this polygon must be
-     *            advanced.
+     * @param ticks how many ticks worth of spin to apply.
      */
-    @Override
-    public void incrementMove(double dt, double modifier) {
-
-        resetPrevPos();
-
-        // Symp EULER INTEGRATOR
-        Vec2D accel = Vec2D.getScaled(netForce, invMass);
-        velocity.add(accel);
-        translate(Vec2D.getScaled(velocity, dt).getScaled(modifier));
-
-        netForce = new Vec2D(0, 0);
+    private void applySpin(double ticks) {
+        if (angularVelocity != 0.0) // if there is a spin, apply it
+            setAngle(angle + (angularVelocity * ticks));
     }
 
     /**
@@ -314,18 +397,6 @@ public class Polygon extends Shape {
         area = Math.abs(area);
     }
 
-    /**
-     * Resets the prevPos to the current pos. Presumably because the current pos
-     * is about to be updated.
-     */
-    protected void resetPrevPos() {
-        for (int i = 0; i < this.points.length; i++) {
-            this.prevPos[i] = this.points[i].getCopy();
-        }
-
-        this.prevPos[this.prevPos.length - 1] = this.centerOfMass.getCopy();
-    }
-
     /**
      * Sort the pts in clockwise order as if they are vertices of a polygon.
      * 
@@ -461,11 +532,26 @@ public class Polygon extends Shape {
     }
 
     /**
-     * @return the bounding AABB of this polygon in min-max form.
+     * Work out the AABB of this polygon from its world space points.
      */
     @Override
-    public Vec2D[] getAABBbounds() {
-        return Polygon.generateAABBbounds(points);
+    protected void computeAABB() {
+        Vec2D[] points = getPoints();
+
+        double minX = points[0].getX(), minY = points[0].getY();
+        double maxX = minX, maxY = minY;
+
+        for (int i = 1; i < points.length; i++) {
+            minX = Math.min(minX, points[i].getX());
+            minY = Math.min(minY, points[i].getY());
+            maxX = Math.max(maxX, points[i].getX());
+            maxY = Math.max(maxY, points[i].getY());
+        }
+
+        aabbMinX = minX;
+        aabbMinY = minY;
+        aabbMaxX = maxX;
+        aabbMaxY = maxY;
     }
 
     /**
@@ -506,29 +592,6 @@ public class Polygon extends Shape {
         return aabbPts;
     }
 
-    /**
-     * Return the min and max points of the shape's AABB swept along its
-     * velocity vector for 1 update
-     * 
-     * @return
-     */
-    @Override
-    public Vec2D[] getSweptAABBbounds(double dt) {
-
-        Vec2D[] currentAABB = Polygon.generateAABBbounds(this.points); // get minmax aabb of this shape
-        Vec2D[] translatedAABB = new Vec2D[2]; // the array which will store the velocity shifted minmax
-        Vec2D[] allPts = new Vec2D[4]; // the points in the old and swept aabb will be kept here
-
-        for (int i = 0; i < 2; i++) {
-            // do the minkowski sum of the aabb and the velocity
-            translatedAABB[i] = Vec2D.add(currentAABB[i], Vec2D.getScaled(this.velocity, dt));
-            allPts[i] = currentAABB[i]; // just populating allpts
-            allPts[currentAABB.length + i] = translatedAABB[i]; // same thing. just populating
-        }
-
-        return generateAABBbounds(allPts); // "generate a bunch of minmax's and let god sort out the rest"
-    }
-
     /**
      * Draw the polygon with a center of mass
      * 
@@ -538,38 +601,52 @@ public class Polygon extends Shape {
      *            2 = outline only with points of interest
      */
     public void draw(Graphics2D g2d, double alpha, int mode) {
-        int[] xCoords = new int[points.length];
-        int[] yCoords = new int[points.length];
+        int[] xCoords = new int[purePoly.length];
+        int[] yCoords = new int[purePoly.length];
+
+        // Interpolate the transform, and place the local points with it.
+        double comX = getInterpolatedX(alpha);
+        double comY = getInterpolatedY(alpha);
+        double drawAngle = getInterpolatedAngle(alpha);
+
+        double c = cos, s = sin;
+        if (drawAngle != angle) {
+            c = Math.cos(drawAngle);
+            s = Math.sin(drawAngle);
+        }
 
         Color t = g2d.getColor();
 
         g2d.setColor(material.getColor());
         // allocate the points into arrays for use in the g2d methods
-        for (int i = 0; i < points.length; i++) {
-            xCoords[i] = (int) Math.round(((points[i].getX() * alpha) + (prevPos[i].getX() * (1.0 - alpha))));
-            yCoords[i] = (int) Math.round(((points[i].getY() * alpha) + (prevPos[i].getY() * (1.0 - alpha))));
+        for (int i = 0; i < purePoly.length; i++) {
+            double pureX = purePoly[i].getX();
+            double pureY = purePoly[i].getY();
+
+            xCoords[i] = (int) Math.round((pureX * c) - (pureY * s) + comX);
+            yCoords[i] = (int) Math.round((pureX * s) + (pureY * c) + comY);
 
             yCoords[i] = Phys2DMain.YRES - yCoords[i];
         }
 
         // draw the polygon
-        if (points.length == 2)
+        if (xCoords.length == 2)
             g2d.drawLine(xCoords[0], yCoords[0], xCoords[1], yCoords[1]);
 
         else if (mode != 2) {
-            g2d.fillPolygon(xCoords, yCoords, points.length); // full polygon
+            g2d.fillPolygon(xCoords, yCoords, xCoords.length); // full polygon
             g2d.setColor(Color.blue);
-            g2d.drawPolygon(xCoords, yCoords, points.length); // outline
+            g2d.drawPolygon(xCoords, yCoords, xCoords.length); // outline
         }
         else
-            g2d.drawPolygon(xCoords, yCoords, points.length); // outline
+            g2d.drawPolygon(xCoords, yCoords, xCoords.length); // outline
 
         // draw COM
         g2d.setColor(Color.RED);
         int xInterp, yInterp;
 
-        xInterp = (int) Math.round(((centerOfMass.getX() * alpha) + (prevPos[prevPos.length - 1].getX() * (1.0 - alpha))));
-        yInterp = (int) Math.round(((centerOfMass.getY() * alpha) + (prevPos[prevPos.length - 1].getY() * (1.0 - alpha))));
+        xInterp = (int) Math.round(comX);
+        yInterp = (int) Math.round(comY);
 
         yInterp = Phys2DMain.YRES - yInterp;
 
@@ -631,7 +708,7 @@ public class Polygon extends Shape {
     public String repr() {
 
         String ptsRepr = "";
-        for (Vec2D point : points) {
+        for (Vec2D point : getPoints()) {
             ptsRepr += point.repr() + ", ";
         }
 
@@ -3,6 +3,7 @@ package phys2d.entities.shapes.polygons;
 import phys2d.entities.Material;
 import phys2d.entities.Symmetrical;
 import phys2d.entities.Vec2D;
+import phys2d.entities.shapes.ShapeTemplate;
 
 public class Rectangle extends Polygon implements Symmetrical {
 
@@ -31,6 +32,21 @@ public class Rectangle extends Polygon implements Symmetrical {
         this.height = height;
     }
 
+    /**
+     * Initialize a rectangle which shares its geometry with every other one
+     * made from the same template.
+     *
+     * @param template a template made by {@link ShapeTemplate#rectangle}.
+     * @param center the centroid of the rectangle
+     * @param angle the angle the rectangle is rotated
+     * @param material the material of the rectangle
+     */
+    public Rectangle(ShapeTemplate template, Vec2D center, double angle, Material material) {
+        super(template, center, angle, material);
+        this.length = template.getWidth();
+        this.height = template.getHeight();
+    }
+
     public Rectangle(Vec2D center, double length, double height) {
         this(center, length, height, 0.0, Material.RUBBER);
     }
@@ -42,10 +58,17 @@ public class Rectangle extends Polygon implements Symmetrical {
      */
     public void setCenterOfMass(Vec2D center) {
         this.centerOfMass = center;
-        points[0] = new Vec2D(center.getX() - (length / 2.0), center.getY() + (height / 2.0));
-        points[1] = new Vec2D(center.getX() + length / 2.0, center.getY() + (height / 2.0));
-        points[2] = new Vec2D(center.getX() + length / 2.0, center.getY() - (height / 2.0));
-        points[3] = new Vec2D(center.getX() - length / 2.0, center.getY() - (height / 2.0));
+
+        if (template != null) { // don't write over the shared points
+            purePoly = new Vec2D[purePoly.length];
+            template = null;
+        }
+
+        purePoly[0] = new Vec2D(-length / 2.0, height / 2.0);
+        purePoly[1] = new Vec2D(length / 2.0, height / 2.0);
+        purePoly[2] = new Vec2D(length / 2.0, -height / 2.0);
+        purePoly[3] = new Vec2D(-length / 2.0, -height / 2.0);
+        transformChanged();
     }
 
     /**
@@ -82,7 +105,6 @@ public class Rectangle extends Polygon implements Symmetrical {
         if (height > 0) {
             this.height = height;
             setCenterOfMass(centerOfMass);
-            purePoly = Polygon.generatePurePoly(this.points, this.centerOfMass);
         }
         else {
             System.out.println("CANNOT HAVE HEIGHT OF ZERO OR LESS!");
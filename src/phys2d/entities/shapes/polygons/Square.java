@@ -2,6 +2,7 @@ package phys2d.entities.shapes.polygons;
 
 import phys2d.entities.Material;
 import phys2d.entities.Vec2D;
+import phys2d.entities.shapes.ShapeTemplate;
 
 public class Square extends Rectangle{
 
@@ -14,4 +15,16 @@ public class Square extends Rectangle{
 	public Square(Vec2D pos, double length, double angle){
 		super(pos, length, length, angle, Material.RUBBER);
 	}
+
+	/**
+	 * Initialize a square which shares its geometry with every other one made
+	 * from the same template. With a velocity of [0,0]
+	 * @param template a square template, from ShapeTemplate.rectangle(length, length)
+	 * @param pos center of the square
+	 * @param angle the angle of rotation
+	 * @param material the material of the square
+	 */
+	public Square(ShapeTemplate template, Vec2D pos, double angle, Material material){
+		super(template, pos, angle, material);
+	}
 }
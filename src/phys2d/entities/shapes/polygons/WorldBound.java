@@ -41,6 +41,11 @@ public final class WorldBound extends Rectangle {
                 max.getY() - min.getY());
     }
 
+    @Override
+    public boolean isStatic() {
+        return true;
+    }
+
     @Override
     public Vec2D getVelocity() {
         return Vec2D.ORIGIN;
@@ -20,6 +20,11 @@ public class AnimatedPane extends JPanel {
 
     protected double alpha;
 
+    /**
+     * The number of updates thrown away because the loop fell too far behind.
+     */
+    private long droppedUpdates = 0;
+
     /**
      * Create a new animated pane
      * 
@@ -87,8 +92,10 @@ public class AnimatedPane extends JPanel {
             currentTime = System.nanoTime() / 1e9;
 
             //Makes sure that the engine doesnt stop if there is a recurring failure to keep time
-            if (timeSinceLastUpdate > maxFramesSkippable * dt)
+            if (timeSinceLastUpdate > maxFramesSkippable * dt) {
+                droppedUpdates += (long) ((timeSinceLastUpdate / dt) - maxFramesSkippable);
                 timeSinceLastUpdate = maxFramesSkippable * dt;
+            }
 
             accumulator += timeSinceLastUpdate;
             int updates = 0;
@@ -103,7 +110,7 @@ public class AnimatedPane extends JPanel {
             fpsCt++;
 
             if ((System.nanoTime() - fpsTimer) >= 1e9) {
-                Phys2DMain.mainPhys2dFrame.setTitle("Physics 2D " + fpsCt);
+                Phys2DMain.mainPhys2dFrame.setTitle("Physics 2D " + fpsCt + " (dropped " + droppedUpdates + ")");
                 fpsCt = 0;
                 fpsTimer = System.nanoTime();
             }
@@ -117,6 +124,17 @@ public class AnimatedPane extends JPanel {
         System.out.println("EXECUTION FINISHED");
     }
 
+    /**
+     * Return how many updates have been thrown away so far because the loop
+     * couldn't keep up. If this keeps growing, the simulation is running
+     * slower than real time.
+     * 
+     * @return the number of dropped updates.
+     */
+    public long getDroppedUpdates() {
+        return droppedUpdates;
+    }
+
     private void postAnimationCleanUp() {
     }
 
@@ -3,7 +3,6 @@ package phys2d.panels;
 import java.awt.Color;
 import java.awt.Graphics2D;
 import java.awt.RenderingHints;
-import java.util.ArrayList;
 
 import phys2d.Phys2DMain;
 import phys2d.collisionLogic.collisionManagers.CollisionManager;
@@ -11,8 +10,10 @@ import phys2d.collisionLogic.collisionManagers.SpeculativeManager2;
 import phys2d.collisionLogic.tools.MiscTools;
 import phys2d.entities.Material;
 import phys2d.entities.Vec2D;
+import phys2d.entities.World;
 import phys2d.entities.shapes.Circle;
 import phys2d.entities.shapes.Shape;
+import phys2d.entities.shapes.ShapeTemplate;
 import phys2d.entities.shapes.polygons.Polygon;
 import phys2d.entities.shapes.polygons.Rectangle;
 import phys2d.entities.shapes.polygons.Square;
@@ -25,10 +26,10 @@ import phys2d.entities.shapes.polygons.WorldBound;
 @SuppressWarnings("serial")
 public class Phys2DPane extends AnimatedPane {
 
-    private final ArrayList<Shape> entities = new ArrayList<Shape>();
-
     private CollisionManager collManager;
 
+    private World world;
+
     public Phys2DPane(int updateRate, int maxFps, int maxFramesSkippable) {
         super(updateRate, maxFps, maxFramesSkippable);
         this.setBackground(Color.black);
@@ -37,42 +38,45 @@ public class Phys2DPane extends AnimatedPane {
     @Override
     public void init() {
         collManager = new SpeculativeManager2(dt);
+        world = new World(collManager);
 
         // Add in the world boundaries
 
         addWorldBounds("a");
-        //populateWithSmallSquares(entities, 2, new Random().nextLong());
-        //populateWithSmallSquares(entities, 200, -111089002341966575l);
+        //populateWithSmallSquares(world, 2, new Random().nextLong());
+        //populateWithSmallSquares(world, 200, -111089002341966575l);
 
-        //populateWithSmallCircles(entities, 30, new Random().nextLong());
-        populateWithSmallCircles(entities, 50, 3801484226869149488l);
+        //populateWithSmallCircles(world, 30, new Random().nextLong());
+        populateWithSmallCircles(world, 50, 3801484226869149488l);
         //addRefSquares(700);
 
-        populateWithRandomPolys(entities, 30, 50, 7);
+        populateWithRandomPolys(world, 30, 50, 7);
 
         Shape s;
 
         s = new Rectangle(new Vec2D(700, 200), 30, 300);
         s.setMaterial(Material.RUBBER);
-        //entities.add(s);
+        //world.add(s);
 
         s = new Square(new Vec2D(980, 400), 30, 0); //970
         s.setMaterial(Material.REF60);
         s.setVelocity(new Vec2D(100, 0));
-        //entities.add(s);
+        //world.add(s);
 
         s = new Square(new Vec2D(550, 200), 50, 0);
         s.setMaterial(Material.REF60);
         s.setVelocity(new Vec2D(20, -20));
-        //entities.add(s);
+        //world.add(s);
 
         s = new Circle(new Vec2D(300, 150), 30); //For ground contact: [300,70],30
         s.setMaterial(Material.REF60);
         s.setVelocity(new Vec2D(-200, 80));
-        //entities.add(s);
+        //world.add(s);
 
         collManager.setForceOfGravity(0);
 
+        world.applyCommands();
+
         // tester();
 
         //System.out.println(LinePolyTools.polyDifference(entities.get(0), entities.get(1)));
@@ -86,7 +90,7 @@ public class Phys2DPane extends AnimatedPane {
     @Override
     public void update() {
         long t = System.nanoTime();
-        collManager.runManager(entities);
+        world.step();
         total += System.nanoTime() - t;
         //System.out.println((System.nanoTime() - t) / 1e6 + "    " + dt * 1000);
         //System.out.println(++upCt);
@@ -100,11 +104,14 @@ public class Phys2DPane extends AnimatedPane {
     public void render(Graphics2D g2d) {
         g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
 
-        for (Shape entity : entities) {
+        for (Shape entity : world.getBodies()) {
             entity.draw(g2d, alpha);
             //entity.getVelocity().drawTranslatedVec(g2d, entity.getCOM());
         }
 
+        if (collManager.getParticleSystem() != null)
+            collManager.getParticleSystem().draw(g2d, alpha);
+
         //((SpeculativeManager2) collManager).getCollisionTree().draw(g2d);
 
     }
@@ -118,31 +125,37 @@ public class Phys2DPane extends AnimatedPane {
     private void addWorldBounds(String s) {
         // Left
         if (s.indexOf('a') != -1 || s.indexOf('l') != -1) {
-            entities.add(new WorldBound(new Vec2D(Phys2DMain.XRES * -1.5, -20), new Vec2D(10, Phys2DMain.YRES + 20)));
+            addStaticEntity(new WorldBound(new Vec2D(Phys2DMain.XRES * -1.5, -20), new Vec2D(10, Phys2DMain.YRES + 20)));
         }
 
         // Bottom
         if (s.indexOf('a') != -1 || s.indexOf('b') != -1) {
-            entities.add(new WorldBound(new Vec2D(10, Phys2DMain.YRES * -1.5), new Vec2D(Phys2DMain.XRES - 10, 40)));
+            addStaticEntity(new WorldBound(new Vec2D(10, Phys2DMain.YRES * -1.5), new Vec2D(Phys2DMain.XRES - 10, 40)));
         }
 
         // Right
         if (s.indexOf('a') != -1 || s.indexOf('r') != -1) {
-            entities.add(new WorldBound(new Vec2D(Phys2DMain.XRES - 15, -20), new Vec2D(Phys2DMain.XRES * 1.5,
+            addStaticEntity(new WorldBound(new Vec2D(Phys2DMain.XRES - 15, -20), new Vec2D(Phys2DMain.XRES * 1.5,
                     Phys2DMain.YRES + 20)));
         }
         // Top
         if (s.indexOf('a') != -1 || s.indexOf('t') != -1) {
-            entities.add(new WorldBound(new Vec2D(-10, Phys2DMain.YRES - 10), new Vec2D(Phys2DMain.XRES + 10,
+            addStaticEntity(new WorldBound(new Vec2D(-10, Phys2DMain.YRES - 10), new Vec2D(Phys2DMain.XRES + 10,
                     Phys2DMain.YRES * 1.5)));
         }
-        for (Shape w : entities) {
-            System.out.println(w);
-        }
+    }
 
+    /**
+     * Add an immovable shape to the world. It is kept in the world's body list
+     * so it gets drawn, and registered with the manager's static broadphase.
+     * 
+     * @param s the static shape to add.
+     */
+    private void addStaticEntity(Shape s) {
+        world.addStatic(s);
     }
 
-    private void populateWithSmallSquares(ArrayList<Shape> entities, int num, long seed) {
+    private void populateWithSmallSquares(World world, int num, long seed) {
 
         Shape s;
         Vec2D[] pos = MiscTools.genRandVecs(num, new Vec2D(20, 20), new Vec2D(970, 970), seed);
@@ -151,28 +164,28 @@ public class Phys2DPane extends AnimatedPane {
         double ang = 0;
 
         Material m = Material.REF80;
+        ShapeTemplate square = ShapeTemplate.rectangle(size, size); // shared by all of them
 
         for (int i = 0; i < num; i++) {
-            s = new Square(pos[i], size, ang);
-            s.setMaterial(m);
+            s = new Square(square, pos[i], ang, m);
             s.setVelocity(vel[i]);
-            entities.add(s);
+            world.add(s);
         }
     }
 
-    private void populateWithSmallCircles(ArrayList<Shape> entities, int num, long seed) {
+    private void populateWithSmallCircles(World world, int num, long seed) {
 
         Shape s;
         double radius = 10;
         Vec2D[] pos = MiscTools.genRandVecs(num, new Vec2D(20, 20), new Vec2D(970, 970), seed);
         Vec2D[] vel = MiscTools.genRandVecs(num, new Vec2D(-250, -250), new Vec2D(250, 250), seed);
         Material m = Material.REF80;
+        ShapeTemplate circle = ShapeTemplate.circle(radius); // shared by all of them
 
         for (int i = 0; i < num; i++) {
-            s = new Circle(pos[i], radius);
-            s.setMaterial(m);
+            s = new Circle(circle, pos[i], m);
             s.setVelocity(vel[i]);
-            entities.add(s);
+            world.add(s);
         }
     }
 
@@ -180,14 +193,14 @@ public class Phys2DPane extends AnimatedPane {
      * Generates num random polygons of the given complexity and of
      * approximately the given radius.
      * 
-     * @param entities the list of all entities in the world.
+     * @param world the world to add them to.
      * @param num the number of polygons to generate.
      * @param radius the approximate radius of the polygons
      * @param complexity the number of vertices in the polygons. <b>Must be
      *            greater than 2.</b>
      * @param seed the random generation seed.
      */
-    public void populateWithRandomPolys(ArrayList<Shape> entities, int num, int radius, int complexity) {
+    public void populateWithRandomPolys(World world, int num, int radius, int complexity) {
         if (complexity <= 2) {
             throw new RuntimeException("Complexity must be greater than 2!");
         }
@@ -209,8 +222,7 @@ public class Phys2DPane extends AnimatedPane {
 
             s = new Polygon(polyPts);
             System.out.println(s);
-            entities.add(s);
-            System.out.println(entities.get(entities.size() - 1));
+            world.add(s);
         }
 
     }
@@ -219,37 +231,37 @@ public class Phys2DPane extends AnimatedPane {
         Shape s;
         s = new Square(new Vec2D(50, height), 40, 0);
         s.setMaterial(Material.INERTIUM);
-        entities.add(s);
+        world.add(s);
         s = new Square(new Vec2D(100, height), 40, 0);
         s.setMaterial(Material.REF10);
-        entities.add(s);
+        world.add(s);
         s = new Square(new Vec2D(150, height), 40, 0);
         s.setMaterial(Material.REF20);
-        entities.add(s);
+        world.add(s);
         s = new Square(new Vec2D(200, height), 40, 0);
         s.setMaterial(Material.REF30);
-        entities.add(s);
+        world.add(s);
         s = new Square(new Vec2D(250, height), 40, 0);
         s.setMaterial(Material.REF40);
-        entities.add(s);
+        world.add(s);
         s = new Square(new Vec2D(300, height), 40, 0);
         s.setMaterial(Material.REF50);
-        entities.add(s);
+        world.add(s);
         s = new Square(new Vec2D(350, height), 40, 0);
         s.setMaterial(Material.REF60);
-        entities.add(s);
+        world.add(s);
         s = new Square(new Vec2D(400, height), 40, 0);
         s.setMaterial(Material.REF70);
-        entities.add(s);
+        world.add(s);
         s = new Square(new Vec2D(450, height), 40, 0);
         s.setMaterial(Material.REF80);
-        entities.add(s);
+        world.add(s);
         s = new Square(new Vec2D(500, height), 40, 0);
         s.setMaterial(Material.REF90);
-        entities.add(s);
+        world.add(s);
         s = new Square(new Vec2D(550, height), 40, 0);
         s.setMaterial(Material.REFLECTIUM);
-        entities.add(s);
+        world.add(s);
     }
 
     private Color randCol() {
@@ -0,0 +1,165 @@
+package phys2d;
+
+import java.util.ArrayList;
+
+import phys2d.collisionLogic.collisionManagers.CollisionManager;
+import phys2d.collisionLogic.collisionManagers.TiledManager;
+import phys2d.collisionLogic.forceFields.NBodyField;
+import phys2d.collisionLogic.integrators.Integrator;
+import phys2d.collisionLogic.tools.MiscTools;
+import phys2d.entities.Material;
+import phys2d.entities.Vec2D;
+import phys2d.entities.shapes.Circle;
+import phys2d.entities.shapes.Shape;
+import phys2d.entities.shapes.ShapeTemplate;
+import phys2d.entities.shapes.polygons.Square;
+import phys2d.entities.shapes.polygons.WorldBound;
+
+/**
+ * Runs a box of randomly placed circles and squares through a manager, and
+ * prints how long a tick took and the final state hash. Two builds which
+ * print the same hash for the same arguments moved every shape identically.
+ * <br>
+ * Usage: Harness [manager] [shapes] [gravity] [ticks], where manager is the
+ * simple name of a class in phys2d.collisionLogic.collisionManagers. The
+ * defaults are SpeculativeManager2, 50 shapes, -100 and 1000 ticks. <br>
+ * System properties:
+ * <ul>
+ * <li>tiles=N: use a TiledManager with NxN tiles instead.</li>
+ * <li>lod=R: add a region of interest of radius R in the middle.</li>
+ * <li>field=nbody: add an n-body field (with G from the G property).</li>
+ * <li>integrator=Name: use a class from phys2d.collisionLogic.integrators.</li>
+ * <li>template=true: make the shapes from shared templates.</li>
+ * <li>bullets=true: make every shape a bullet.</li>
+ * <li>vscale=S: scale the starting velocities.</li>
+ * <li>setColoring, setParallelIslands, setWarmStarting,
+ * setSpeculativeContacts, setDeterministic: passed to the setter of the same
+ * name, if the manager has it.</li>
+ * </ul>
+ *
+ * @author afsheen
+ */
+public class Harness {
+
+    private static final long SEED = 3801484226869149488l;
+
+    public static void main(String[] args) throws Exception {
+        double dt = 1.0 / 50;
+        String which = args.length > 0 ? args[0] : "SpeculativeManager2";
+        int n = args.length > 1 ? Integer.parseInt(args[1]) : 50;
+        double g = args.length > 2 ? Double.parseDouble(args[2]) : -100;
+        int ticks = args.length > 3 ? Integer.parseInt(args[3]) : 1000;
+
+        CollisionManager manager;
+
+        if (System.getProperty("tiles") != null) {
+            int tiles = Integer.getInteger("tiles");
+            manager = new TiledManager(dt, tiles, tiles);
+        }
+        else {
+            manager = (CollisionManager) Class.forName("phys2d.collisionLogic.collisionManagers." + which)
+                    .getConstructor(double.class).newInstance(dt);
+        }
+
+        ArrayList<Shape> entities = new ArrayList<Shape>();
+
+        WorldBound[] bounds = { new WorldBound(new Vec2D(-1500, -20), new Vec2D(10, 1020)),
+                new WorldBound(new Vec2D(10, -1500), new Vec2D(990, 40)),
+                new WorldBound(new Vec2D(985, -20), new Vec2D(1500, 1020)),
+                new WorldBound(new Vec2D(-10, 990), new Vec2D(1010, 1500)) };
+
+        for (WorldBound bound : bounds) {
+            entities.add(bound);
+            manager.addStaticShape(bound);
+        }
+
+        Vec2D[] pos = MiscTools.genRandVecs(n, new Vec2D(20, 20), new Vec2D(970, 970), SEED);
+        Vec2D[] vel = MiscTools.genRandVecs(n, new Vec2D(-250, -250), new Vec2D(250, 250), SEED);
+        double vscale = Double.parseDouble(System.getProperty("vscale", "1"));
+        boolean template = Boolean.getBoolean("template");
+
+        for (int i = 0; i < n; i++) {
+            Shape s;
+
+            if (i % 2 == 0)
+                s = template ? new Circle(ShapeTemplate.circle(10), pos[i], Material.REF80) : new Circle(pos[i], 10);
+            else
+                s = template ? new Square(ShapeTemplate.rectangle(20, 20), pos[i], 0, Material.REF80)
+                        : new Square(pos[i], 20, 0);
+
+            s.setMaterial(Material.REF80);
+            s.setVelocity(vel[i].getScaled(vscale));
+            if (Boolean.getBoolean("bullets"))
+                s.setBullet(true);
+
+            entities.add(s);
+        }
+
+        manager.setForceOfGravity(g);
+
+        for (String setter : new String[] { "setColoring", "setParallelIslands", "setWarmStarting",
+                "setSpeculativeContacts", "setDeterministic" }) {
+            String value = System.getProperty(setter);
+
+            if (value == null)
+                continue;
+
+            try {
+                manager.getClass().getMethod(setter, boolean.class).invoke(manager, Boolean.parseBoolean(value));
+            }
+            catch (NoSuchMethodException e) {
+                System.out.println(which + " has no " + setter + ", ignored");
+            }
+        }
+
+        if (System.getProperty("lod") != null)
+            manager.getLevelOfDetail().addRegionOfInterest(new Vec2D(500, 500),
+                    Double.parseDouble(System.getProperty("lod")));
+
+        if ("nbody".equals(System.getProperty("field")))
+            manager.setAccelerationField(new NBodyField(Double.parseDouble(System.getProperty("G", "50")), 0.5, 10));
+
+        if (System.getProperty("integrator") != null)
+            manager.setIntegrator((Integrator) Class
+                    .forName("phys2d.collisionLogic.integrators." + System.getProperty("integrator"))
+                    .getConstructor().newInstance());
+
+        long start = System.nanoTime();
+
+        for (int k = 0; k < ticks; k++) {
+            manager.runManager(entities);
+
+            if (k % 200 == 0 || k == ticks - 1)
+                printStats(k, entities, n);
+        }
+
+        System.out.printf("%.3f ms/tick hash=%x%n", (System.nanoTime() - start) / 1e6 / ticks,
+                manager.getStateHash());
+    }
+
+    /**
+     * Print how many shapes escaped the box, how many are asleep, and their
+     * mean squared speed.
+     */
+    private static void printStats(int tick, ArrayList<Shape> entities, int n) {
+        int out = 0, asleep = 0;
+        double speed2 = 0;
+
+        for (Shape s : entities) {
+            if (s instanceof WorldBound)
+                continue;
+
+            Vec2D c = s.getCOM();
+
+            if (c.getX() < 0 || c.getX() > 1000 || c.getY() < 0 || c.getY() > 1000 || Double.isNaN(c.getX()))
+                out++;
+            if (s.isAsleep())
+                asleep++;
+
+            speed2 += s.getVelocity().getSquaredLength();
+        }
+
+        System.out.printf("tick %d out=%d asleep=%d avgSpeed2=%.2f%n", tick, out, asleep, speed2 / n);
+    }
+
+}
@@ -0,0 +1,141 @@
+package phys2d.collisionLogic.collisionManagers;
+
+import phys2d.collisionLogic.forceFields.UniformField;
+import phys2d.entities.Vec2D;
+import phys2d.entities.World;
+import phys2d.entities.shapes.Circle;
+import phys2d.entities.shapes.Shape;
+import phys2d.entities.shapes.polygons.Square;
+import phys2d.entities.shapes.polygons.WorldBound;
+
+/**
+ * Checks for the update rate tiers the level of detail puts shapes in. Run
+ * with assertions off or on, the checks throw either way.
+ *
+ * @author afsheen
+ */
+public class CollisionManagerTest {
+
+    private static final double DT = 1 / 60.0;
+
+    public static void main(String[] args) {
+        slowTiersKeepTheirForces();
+        slowTiersDontPassThroughEachOther();
+        slowTiersDontFallThroughThinFloors();
+
+        System.out.println("CollisionManagerTest passed");
+    }
+
+    /**
+     * A lone shape far from the region of interest is only stepped every 4th
+     * tick, but by 4 ticks at a time, so by the end of an interval it has
+     * picked up the same gravity and field as a shape stepped every tick.
+     */
+    private static void slowTiersKeepTheirForces() {
+        ImpulseManager manager = new ImpulseManager(DT);
+        manager.setForceOfGravity(-100);
+        manager.setAccelerationField(new UniformField(30, 0));
+        manager.getLevelOfDetail().addRegionOfInterest(new Vec2D(0, 0), 10);
+
+        World world = new World(manager);
+
+        Shape circle = new Circle(new Vec2D(300, 800), 10);
+        circle.setVelocity(new Vec2D(120, 0));
+        world.add(circle);
+
+        // Its first longer step is on tick 4, and the last one, on tick 60,
+        // steps it to the end of tick 63.
+        for (int tick = 1; tick <= 60; tick++) {
+            Vec2D before = circle.getCOM().getCopy();
+            world.step();
+
+            if (tick > 4 && tick % 4 != 0 && !circle.getCOM().equals(before))
+                throw new AssertionError("circle moved on tick " + tick + ", which it should sit out");
+        }
+
+        double time = 63 * DT;
+        Vec2D velocity = circle.getVelocity();
+
+        if (Math.abs(velocity.getX() - (120 + (30 * time))) > 1e-9
+                || Math.abs(velocity.getY() - (-100 * time)) > 1e-9)
+            throw new AssertionError("circle's velocity is " + velocity + " after " + time + "s");
+    }
+
+    /**
+     * Two shapes heading straight at each other, both far from the region of
+     * interest, have to hit instead of jumping past each other. Once with both
+     * in the same tier, and once with one stepped every 2nd tick and the
+     * other every 4th.
+     */
+    private static void slowTiersDontPassThroughEachOther() {
+        for (int i = 0; i < 20; i++) {
+            ImpulseManager manager = new ImpulseManager(DT);
+            manager.setForceOfGravity(0);
+            manager.getLevelOfDetail().addRegionOfInterest(new Vec2D(0, 0), 10);
+
+            World world = new World(manager);
+
+            Shape left = new Circle(new Vec2D(300 + (i * 0.5), 500), 10);
+            Shape right = new Circle(new Vec2D(700, 500), 10);
+            left.setVelocity(new Vec2D(900, 0));
+            right.setVelocity(new Vec2D(-900, 0));
+            world.add(left);
+            world.add(right);
+
+            for (int k = 0; k < 60; k++)
+                world.step();
+
+            if (left.getCOM().getX() > right.getCOM().getX())
+                throw new AssertionError("circles starting at offset " + i + " passed through each other");
+        }
+
+        for (int i = 0; i < 20; i++) {
+            ImpulseManager manager = new ImpulseManager(DT);
+            manager.setForceOfGravity(0);
+            manager.getLevelOfDetail().addRegionOfInterest(new Vec2D(500, 500), 100);
+
+            World world = new World(manager);
+
+            Shape near = new Circle(new Vec2D(500, 350 + (i * 0.7)), 10);
+            Shape far = new Circle(new Vec2D(500, 50), 10);
+            near.setVelocity(new Vec2D(0, -700));
+            far.setVelocity(new Vec2D(0, 700));
+            world.add(near);
+            world.add(far);
+
+            for (int k = 0; k < 40; k++)
+                world.step();
+
+            if (near.getCOM().getY() < far.getCOM().getY())
+                throw new AssertionError("circles of different tiers starting at offset " + i
+                        + " passed through each other");
+        }
+    }
+
+    /**
+     * A square falling under strong gravity, far from the region of interest,
+     * has to land on a thin floor. The look ahead before each longer step has
+     * to count how much faster the square gets during it.
+     */
+    private static void slowTiersDontFallThroughThinFloors() {
+        for (int i = 0; i < 20; i++) {
+            ImpulseManager manager = new ImpulseManager(DT);
+            manager.setForceOfGravity(-3000);
+            manager.getLevelOfDetail().addRegionOfInterest(new Vec2D(0, 0), 10);
+
+            World world = new World(manager);
+            world.addStatic(new WorldBound(new Vec2D(0, 400), new Vec2D(1000, 402)));
+
+            Shape square = new Square(new Vec2D(500, 600 + (i * 1.3)), 20, 0);
+            world.add(square);
+
+            for (int k = 0; k < 120; k++)
+                world.step();
+
+            if (square.getCOM().getY() < 400)
+                throw new AssertionError("square starting at offset " + i + " fell through the floor, now at "
+                        + square.getCOM());
+        }
+    }
+
+}
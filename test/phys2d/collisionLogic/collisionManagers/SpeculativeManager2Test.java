@@ -0,0 +1,56 @@
+package phys2d.collisionLogic.collisionManagers;
+
+import phys2d.entities.Vec2D;
+import phys2d.entities.World;
+import phys2d.entities.shapes.Shape;
+import phys2d.entities.shapes.polygons.Square;
+import phys2d.entities.shapes.polygons.WorldBound;
+
+/**
+ * Checks for the speculative manager. Run with assertions off or on, the
+ * checks throw either way.
+ *
+ * @author afsheen
+ */
+public class SpeculativeManager2Test {
+
+    public static void main(String[] args) {
+        noTunnellingThroughThinWalls();
+
+        System.out.println("SpeculativeManager2Test passed");
+    }
+
+    /**
+     * A square which moves less than the continuous threshold of its own size
+     * per tick, but much further than a thin static wall is thick, has to
+     * stop at the wall. The wall is what decides whether the pair needs the
+     * swept path. It's tried from a range of starting offsets, since whether
+     * the discrete path catches it depends on where the square is on the tick
+     * it reaches the wall.
+     */
+    private static void noTunnellingThroughThinWalls() {
+        double dt = 1 / 60.0;
+        double speed = 1500; // 25 px a tick, against a 20 px square and a 1 px wall
+
+        for (int i = 0; i < 20; i++) {
+            SpeculativeManager2 manager = new SpeculativeManager2(dt);
+            manager.setForceOfGravity(0);
+            manager.setContinuousThreshold(1.5);
+
+            World world = new World(manager);
+            world.addStatic(new WorldBound(new Vec2D(500, 0), new Vec2D(501, 1000)));
+
+            Shape square = new Square(new Vec2D(300 + (i * speed * dt / 20), 500), 20, 0);
+            square.setVelocity(new Vec2D(speed, 0));
+            world.add(square);
+
+            for (int k = 0; k < 60; k++)
+                world.step();
+
+            if (square.getCOM().getX() > 500)
+                throw new AssertionError("square starting at offset " + i + " went through the wall, now at "
+                        + square.getCOM());
+        }
+    }
+
+}
@@ -0,0 +1,43 @@
+package phys2d.collisionLogic.particles;
+
+import phys2d.entities.Material;
+import phys2d.entities.Vec2D;
+import phys2d.entities.shapes.Circle;
+
+/**
+ * Checks for the particle system. Run with assertions off or on, the checks
+ * throw either way.
+ *
+ * @author afsheen
+ */
+public class ParticleSystemTest {
+
+    public static void main(String[] args) {
+        grainMatchesCircleMass();
+
+        System.out.println("ParticleSystemTest passed");
+    }
+
+    /**
+     * A grain has to weigh the same as a circle of the same radius and
+     * material, or impulses between them come out wrong.
+     */
+    private static void grainMatchesCircleMass() {
+        for (Material material : Material.values()) {
+            for (double r : new double[] { 1, 2.5, 4 }) {
+                ParticleSystem particles = new ParticleSystem(material, 4);
+                particles.addParticle(0, 0, 0, 0, r);
+
+                Circle circle = new Circle(new Vec2D[] { new Vec2D(0, 0) }, r, material);
+
+                double grain = particles.getMass(0);
+                double expected = circle.getMass();
+
+                if (Math.abs(grain - expected) > 1e-12 * expected)
+                    throw new AssertionError(material + " r=" + r + ": grain mass " + grain + ", circle mass "
+                            + expected);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,81 @@
+package phys2d.entities;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+
+import phys2d.collisionLogic.collisionManagers.ImpulseManager;
+import phys2d.entities.shapes.Circle;
+import phys2d.entities.shapes.Shape;
+import phys2d.entities.shapes.ShapeTemplate;
+import phys2d.entities.shapes.polygons.WorldBound;
+
+/**
+ * Checks for the world. Run with assertions off or on, the checks throw
+ * either way.
+ *
+ * @author afsheen
+ */
+public class WorldTest {
+
+    public static void main(String[] args) {
+        dormantShapesCanBeCollected();
+
+        System.out.println("WorldTest passed");
+    }
+
+    /**
+     * Once a sleeping island goes dormant, nothing in the world or the manager
+     * should keep its old shapes alive. Only the packed copies are kept.
+     */
+    private static void dormantShapesCanBeCollected() {
+        World world = new World(new ImpulseManager(1 / 60.0));
+        world.setDormancyDelay(30);
+        world.addStatic(new WorldBound(new Vec2D(0, -20), new Vec2D(1000, 10)));
+
+        ShapeTemplate ball = ShapeTemplate.circle(10);
+        ArrayList<WeakReference<Shape>> refs = new ArrayList<WeakReference<Shape>>();
+
+        for (int i = 0; i < 5; i++) {
+            Shape s = new Circle(ball, new Vec2D(100 + (i * 40), 25), Material.REF80);
+            world.add(s);
+            refs.add(new WeakReference<Shape>(s));
+        }
+
+        for (int i = 0; i < 600 && world.getDormantCount() < refs.size(); i++)
+            world.step();
+
+        if (world.getDormantCount() != refs.size())
+            throw new AssertionError("only " + world.getDormantCount() + " of " + refs.size()
+                    + " shapes went dormant");
+
+        // A few more ticks, so nothing from the tick they went dormant in is
+        // still lying around in the manager's buffers.
+        for (int i = 0; i < 5; i++)
+            world.step();
+
+        for (int i = 0; i < 20 && alive(refs) > 0; i++) {
+            System.gc();
+
+            try {
+                Thread.sleep(10);
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        if (alive(refs) > 0)
+            throw new AssertionError(alive(refs) + " dormant shapes are still reachable");
+    }
+
+    private static int alive(ArrayList<WeakReference<Shape>> refs) {
+        int n = 0;
+
+        for (WeakReference<Shape> ref : refs) {
+            if (ref.get() != null)
+                n++;
+        }
+        return n;
+    }
+
+}